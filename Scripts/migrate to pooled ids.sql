@@ -0,0 +1,27 @@
+-- Moves an existing database from AUTO_INCREMENT ids to the 'id_generator' table used by PojoBase.
+-- Run once, with the application stopped.  Afterwards ids are restarted by updating `id_generator`
+-- rows, as 'reset auto increment.sql' does.
+USE `acmemedical`;
+
+CREATE TABLE IF NOT EXISTS `id_generator` (
+  `segment_name` VARCHAR(255) NOT NULL,
+  `next_val` BIGINT NOT NULL,
+  PRIMARY KEY (`segment_name`)
+);
+
+-- the next block starts after the largest id already in use
+REPLACE INTO `id_generator` (`segment_name`, `next_val`)
+  SELECT 'physician', COALESCE(MAX(`id`), 0) + 1 FROM `physician`
+  UNION ALL SELECT 'medical_school', COALESCE(MAX(`school_id`), 0) + 1 FROM `medical_school`
+  UNION ALL SELECT 'medical_training', COALESCE(MAX(`training_id`), 0) + 1 FROM `medical_training`
+  UNION ALL SELECT 'medical_certificate', COALESCE(MAX(`certificate_id`), 0) + 1 FROM `medical_certificate`
+  UNION ALL SELECT 'medicine', COALESCE(MAX(`medicine_id`), 0) + 1 FROM `medicine`
+  UNION ALL SELECT 'patient', COALESCE(MAX(`patient_id`), 0) + 1 FROM `patient`;
+
+-- Hibernate supplies the ids now;  dropping AUTO_INCREMENT makes sure nothing else does
+ALTER TABLE `physician` MODIFY `id` INT NOT NULL;
+ALTER TABLE `medical_school` MODIFY `school_id` INT NOT NULL;
+ALTER TABLE `medical_training` MODIFY `training_id` INT NOT NULL;
+ALTER TABLE `medical_certificate` MODIFY `certificate_id` INT NOT NULL;
+ALTER TABLE `medicine` MODIFY `medicine_id` INT NOT NULL;
+ALTER TABLE `patient` MODIFY `patient_id` INT NOT NULL;
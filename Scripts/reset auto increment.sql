@@ -1,9 +1,8 @@
 -- This might be useful
+-- Restarts the ids of every table, e.g. after emptying them.  Ids no longer come from AUTO_INCREMENT but
+-- from the 'id_generator' table (one row per table, see PojoBase and 'migrate to pooled ids.sql').
+-- Run with the application stopped:  it holds the rest of an already reserved block of ids in memory.
 USE `acmemedical`;
-ALTER TABLE physician AUTO_INCREMENT = 1;
-ALTER TABLE medical_school AUTO_INCREMENT = 1;
-ALTER TABLE medical_training AUTO_INCREMENT = 1;
-ALTER TABLE medical_certificate AUTO_INCREMENT = 1;
-ALTER TABLE medicine AUTO_INCREMENT = 1;
-ALTER TABLE patient AUTO_INCREMENT = 1;
--- Note:  No auto_increment on prescription table as it has a composite primary key
\ No newline at end of file
+UPDATE `id_generator` SET `next_val` = 1
+  WHERE `segment_name` IN ('physician', 'medical_school', 'medical_training', 'medical_certificate', 'medicine', 'patient');
+-- Note:  No generated ids on prescription table as it has a composite primary key
@@ -0,0 +1,54 @@
+/********************************************************************************************************
+ * File:  BasicAuthorizationBenchmark.java
+ * Course Materials CST 8277
+ *
+ * Note:  run with the 'jmh' profile, see pom.xml
+ *
+ */
+package acmemedical.benchmark;
+
+import static acmemedical.utility.MyConstants.DEFAULT_USER;
+import static acmemedical.utility.MyConstants.DEFAULT_USER_PASSWORD;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import acmemedical.security.CustomAuthenticationMechanism;
+
+/**
+ * Parsing of the Basic Authorization header, done by {@link CustomAuthenticationMechanism} on every
+ * request that does not send a bearer token
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BasicAuthorizationBenchmark {
+
+    private String basicHeader;
+
+    @Setup
+    public void setUp() {
+        String token = DEFAULT_USER + ":" + DEFAULT_USER_PASSWORD;
+        basicHeader = "Basic " + Base64.getEncoder().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public String[] parseBasicAuthorization() {
+        return CustomAuthenticationMechanism.parseBasicAuthorization(basicHeader);
+    }
+}
@@ -0,0 +1,179 @@
+/********************************************************************************************************
+ * File:  EntitySerializationBenchmark.java
+ * Course Materials CST 8277
+ *
+ * Note:  run with the 'jmh' profile, see pom.xml
+ *
+ */
+package acmemedical.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import acmemedical.entity.DurationAndStatus;
+import acmemedical.entity.MedicalCertificate;
+import acmemedical.entity.MedicalSchool;
+import acmemedical.entity.MedicalTraining;
+import acmemedical.entity.Medicine;
+import acmemedical.entity.Patient;
+import acmemedical.entity.Physician;
+import acmemedical.entity.Prescription;
+import acmemedical.entity.PublicSchool;
+import acmemedical.entity.SecurityRole;
+import acmemedical.rest.ConfigureJacksonObjectMapper;
+import acmemedical.rest.serializer.SecurityRoleSerializer;
+
+/**
+ * Jackson serialization of each entity with the ObjectMapper the application registers
+ * ({@link ConfigureJacksonObjectMapper}), and of a user's roles through {@link SecurityRoleSerializer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntitySerializationBenchmark {
+
+    private ObjectMapper mapper;
+    private Physician physician;
+    private Patient patient;
+    private Medicine medicine;
+    private MedicalSchool medicalSchool;
+    private MedicalTraining medicalTraining;
+    private MedicalCertificate medicalCertificate;
+    private Prescription prescription;
+    private Set<SecurityRole> roles;
+    private SecurityRoleSerializer roleSerializer;
+
+    @Setup
+    public void setUp() {
+        mapper = new ConfigureJacksonObjectMapper().getContext(ObjectMapper.class);
+        LocalDateTime now = LocalDateTime.now();
+
+        physician = new Physician();
+        physician.setId(1);
+        physician.setFullName("Teddy", "Yap");
+        physician.setCreated(now);
+        physician.setUpdated(now);
+
+        patient = new Patient();
+        patient.setId(1);
+        patient.setFirstName("Charles");
+        patient.setLastName("Xavier");
+        patient.setYear(1975);
+        patient.setAddress("123 Main Street");
+        patient.setHeight(175);
+        patient.setWeight(80);
+        patient.setSmoker((byte) 0);
+        patient.setCreated(now);
+        patient.setUpdated(now);
+
+        medicine = new Medicine();
+        medicine.setId(1);
+        medicine.setMedicine("Thalidomide", "ABC Medicine", "Take as needed");
+        medicine.setChemicalName("C13H10N2O4");
+        medicine.setGenericName("Thalomid");
+        medicine.setCreated(now);
+        medicine.setUpdated(now);
+
+        medicalSchool = new PublicSchool();
+        medicalSchool.setId(1);
+        medicalSchool.setName("University of Ottawa");
+        medicalSchool.setCreated(now);
+        medicalSchool.setUpdated(now);
+
+        DurationAndStatus durationAndStatus = new DurationAndStatus();
+        durationAndStatus.setDurationAndStatus(now.minusYears(1), now, "+");
+        medicalTraining = new MedicalTraining();
+        medicalTraining.setId(1);
+        medicalTraining.setMedicalSchool(medicalSchool);
+        medicalTraining.setDurationAndStatus(durationAndStatus);
+        medicalTraining.setCreated(now);
+        medicalTraining.setUpdated(now);
+
+        medicalCertificate = new MedicalCertificate(medicalTraining, physician, (byte) 1);
+        medicalCertificate.setId(1);
+        medicalCertificate.setCreated(now);
+        medicalCertificate.setUpdated(now);
+
+        prescription = new Prescription();
+        prescription.setPhysician(physician);
+        prescription.setPatient(patient);
+        prescription.setMedicine(medicine);
+        prescription.setNumberOfRefills(2);
+        prescription.setPrescriptionInformation("Take with food");
+
+        roles = new HashSet<>();
+        for (String roleName : new String[] {"ADMIN_ROLE", "USER_ROLE"}) {
+            SecurityRole role = new SecurityRole();
+            role.setId(roles.size() + 1);
+            role.setRoleName(roleName);
+            roles.add(role);
+        }
+        roleSerializer = new SecurityRoleSerializer();
+    }
+
+    @Benchmark
+    public byte[] physician() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(physician);
+    }
+
+    @Benchmark
+    public byte[] patient() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(patient);
+    }
+
+    @Benchmark
+    public byte[] medicine() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(medicine);
+    }
+
+    @Benchmark
+    public byte[] medicalSchool() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(medicalSchool);
+    }
+
+    @Benchmark
+    public byte[] medicalTraining() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(medicalTraining);
+    }
+
+    @Benchmark
+    public byte[] medicalCertificate() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(medicalCertificate);
+    }
+
+    @Benchmark
+    public byte[] prescription() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(prescription);
+    }
+
+    @Benchmark
+    public byte[] securityRoles() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            roleSerializer.serialize(roles, generator, mapper.getSerializerProviderInstance());
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,70 @@
+/********************************************************************************************************
+ * File:  PasswordHashBenchmark.java
+ * Course Materials CST 8277
+ *
+ * Note:  run with the 'jmh' profile, see pom.xml
+ *
+ */
+package acmemedical.benchmark;
+
+import static acmemedical.utility.MyConstants.DEFAULT_KEY_SIZE;
+import static acmemedical.utility.MyConstants.DEFAULT_PROPERTY_ALGORITHM;
+import static acmemedical.utility.MyConstants.DEFAULT_PROPERTY_ITERATIONS;
+import static acmemedical.utility.MyConstants.DEFAULT_SALT_SIZE;
+import static acmemedical.utility.MyConstants.DEFAULT_USER_PASSWORD;
+import static acmemedical.utility.MyConstants.PROPERTY_ALGORITHM;
+import static acmemedical.utility.MyConstants.PROPERTY_ITERATIONS;
+import static acmemedical.utility.MyConstants.PROPERTY_KEY_SIZE;
+import static acmemedical.utility.MyConstants.PROPERTY_SALT_SIZE;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.soteria.identitystores.hash.Pbkdf2PasswordHashImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code Pbkdf2PasswordHash.verify} with the parameters of acmemedical.security.PasswordHashingService
+ * (DEFAULT_PROPERTY_ITERATIONS iterations):  the cost of every password check that misses the
+ * VerifiedCredentialCache
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordHashBenchmark {
+
+    private Pbkdf2PasswordHashImpl pbAndjPasswordHash;
+    private char[] password;
+    private String pwHash;
+
+    @Setup
+    public void setUp() {
+        Map<String, String> pbAndjProperties = new HashMap<>();
+        pbAndjProperties.put(PROPERTY_ALGORITHM, DEFAULT_PROPERTY_ALGORITHM);
+        pbAndjProperties.put(PROPERTY_ITERATIONS, DEFAULT_PROPERTY_ITERATIONS);
+        pbAndjProperties.put(PROPERTY_SALT_SIZE, DEFAULT_SALT_SIZE);
+        pbAndjProperties.put(PROPERTY_KEY_SIZE, DEFAULT_KEY_SIZE);
+        pbAndjPasswordHash = new Pbkdf2PasswordHashImpl();
+        pbAndjPasswordHash.initialize(pbAndjProperties);
+        password = DEFAULT_USER_PASSWORD.toCharArray();
+        pwHash = pbAndjPasswordHash.generate(password);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return pbAndjPasswordHash.verify(password, pwHash);
+    }
+}
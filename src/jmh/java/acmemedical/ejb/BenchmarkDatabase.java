@@ -0,0 +1,231 @@
+/********************************************************************************************************
+ * File:  BenchmarkDatabase.java
+ * Course Materials CST 8277
+ *
+ * Note:  used by the persistence benchmarks (run with the 'jmh' profile, see pom.xml)
+ *
+ */
+package acmemedical.ejb;
+
+import java.time.LocalDateTime;
+import java.util.function.Supplier;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.Persistence;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import acmemedical.entity.DurationAndStatus;
+import acmemedical.entity.MedicalCertificate;
+import acmemedical.entity.MedicalSchool;
+import acmemedical.entity.MedicalTraining;
+import acmemedical.entity.Medicine;
+import acmemedical.entity.Patient;
+import acmemedical.entity.Physician;
+import acmemedical.entity.PojoBase;
+import acmemedical.entity.Prescription;
+import acmemedical.entity.PrivateSchool;
+import acmemedical.entity.PublicSchool;
+
+/**
+ * The real {@link ACMEMedicalService} (and its {@link ChunkedBulkUpdate}) on an in-process H2 database
+ * ('acmemedical-bench-PU'), with {@code rows} generated rows in every entity table.
+ * <p>
+ * Outside the container nothing honours {@code @Transactional}:  {@link #inTransaction} and {@link #read}
+ * stand in for it - one resource-local transaction, and a persistence context that is cleared afterwards
+ * as a transaction-scoped one would be.  The chunks of ChunkedBulkUpdate run in the caller's transaction.
+ * <p>
+ * The seed data is generated and inserted with a StatelessSession in JDBC batches, one table at a time
+ * (acmemedical-data.sql would be far too slow for a million rows).  Row {@code i} of every table belongs
+ * together:  prescription {@code i} is physician {@code i}'s for patient {@code i}, certificate {@code i}
+ * is physician {@code i}'s from training {@code i} of school {@code i}.
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+
+    static final String BENCH_PU_NAME = "acmemedical-bench-PU";
+
+    static final int SEED_CHUNK_SIZE = 10_000;
+
+    protected final EntityManagerFactory emf;
+    protected final EntityManager em;
+    protected final ACMEMedicalService service;
+
+    protected final int[] physicianIds;
+    protected final int[] patientIds;
+    protected final int[] medicineIds;
+    protected final int[] schoolIds;
+    protected final int[] trainingIds;
+    protected final int[] certificateIds;
+
+    public BenchmarkDatabase(int rows) {
+        emf = Persistence.createEntityManagerFactory(BENCH_PU_NAME);
+        physicianIds = new int[rows];
+        patientIds = new int[rows];
+        medicineIds = new int[rows];
+        schoolIds = new int[rows];
+        trainingIds = new int[rows];
+        certificateIds = new int[rows];
+        seed(rows);
+
+        em = emf.createEntityManager();
+        ChunkedBulkUpdate chunkedBulkUpdate = new ChunkedBulkUpdate();
+        chunkedBulkUpdate.em = em;
+        service = new ACMEMedicalService();
+        service.em = em;
+        service.chunkedBulkUpdate = chunkedBulkUpdate;
+    }
+
+    public ACMEMedicalService getService() {
+        return service;
+    }
+
+    public int rows() {
+        return physicianIds.length;
+    }
+
+    public int physicianId(int row) {
+        return physicianIds[row];
+    }
+
+    public int patientId(int row) {
+        return patientIds[row];
+    }
+
+    public int medicineId(int row) {
+        return medicineIds[row];
+    }
+
+    public int schoolId(int row) {
+        return schoolIds[row];
+    }
+
+    public int trainingId(int row) {
+        return trainingIds[row];
+    }
+
+    public int certificateId(int row) {
+        return certificateIds[row];
+    }
+
+    /**
+     * Run service calls as one transaction of a {@code @Transactional} method would
+     */
+    public <T> T inTransaction(Supplier<T> work) {
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        try {
+            T result = work.get();
+            tx.commit();
+            return result;
+        }
+        finally {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            em.clear();
+        }
+    }
+
+    /**
+     * Run a read-only service call (no transaction, as from a resource)
+     */
+    public <T> T read(Supplier<T> work) {
+        try {
+            return work.get();
+        }
+        finally {
+            em.clear();
+        }
+    }
+
+    protected void seed(int rows) {
+        LocalDateTime now = LocalDateTime.now();
+        try (StatelessSession session = emf.unwrap(SessionFactory.class).openStatelessSession()) {
+            insertAll(session, rows, i -> {
+                Physician physician = new Physician();
+                physician.setFullName("First" + i, "Last" + i);
+                physicianIds[i] = (Integer) session.insert(physician);
+            });
+            insertAll(session, rows, i -> {
+                Patient patient = new Patient();
+                patient.setFirstName("First" + i);
+                patient.setLastName("Last" + i);
+                patient.setYear(1940 + i % 80);
+                patient.setAddress(i + " Main Street");
+                patient.setHeight(150 + i % 50);
+                patient.setWeight(50 + i % 70);
+                patient.setSmoker((byte) (i % 5 == 0 ? 1 : 0));
+                patientIds[i] = (Integer) session.insert(patient);
+            });
+            insertAll(session, rows, i -> {
+                Medicine medicine = new Medicine();
+                medicine.setMedicine("Drug" + i, "Manufacturer" + i % 100, "Twice a day");
+                medicineIds[i] = (Integer) session.insert(medicine);
+            });
+            insertAll(session, rows, i -> {
+                MedicalSchool school = i % 2 == 0 ? new PublicSchool() : new PrivateSchool();
+                school.setName("School" + i);
+                schoolIds[i] = (Integer) session.insert(school);
+            });
+            insertAll(session, rows, i -> {
+                DurationAndStatus durationAndStatus = new DurationAndStatus();
+                durationAndStatus.setDurationAndStatus(now.minusYears(1), now, i % 3 == 0 ? "-" : "+");
+                MedicalTraining training = new MedicalTraining();
+                training.setMedicalSchool(reference(new PublicSchool(), schoolIds[i]));
+                training.setDurationAndStatus(durationAndStatus);
+                trainingIds[i] = (Integer) session.insert(training);
+            });
+            insertAll(session, rows, i -> {
+                MedicalTraining training = reference(new MedicalTraining(), trainingIds[i]);
+                MedicalCertificate certificate = new MedicalCertificate(training, reference(new Physician(), physicianIds[i]), (byte) 1);
+                certificateIds[i] = (Integer) session.insert(certificate);
+            });
+            insertAll(session, rows, i -> {
+                Prescription prescription = new Prescription();
+                prescription.setPhysician(reference(new Physician(), physicianIds[i]));
+                prescription.setPatient(reference(new Patient(), patientIds[i]));
+                prescription.setMedicine(reference(new Medicine(), medicineIds[i]));
+                prescription.setNumberOfRefills(i % 4);
+                prescription.setPrescriptionInformation("Take with food");
+                session.insert(prescription);
+            });
+        }
+    }
+
+    protected interface RowInserter {
+        void insert(int row);
+    }
+
+    /**
+     * Rows of one table, SEED_CHUNK_SIZE rows per transaction
+     */
+    protected static void insertAll(StatelessSession session, int rows, RowInserter inserter) {
+        for (int start = 0; start < rows; start += SEED_CHUNK_SIZE) {
+            Transaction tx = session.beginTransaction();
+            for (int i = start; i < Math.min(rows, start + SEED_CHUNK_SIZE); i++) {
+                inserter.insert(i);
+            }
+            ((SharedSessionContractImplementor) session).getJdbcCoordinator().executeBatch();
+            tx.commit();
+        }
+    }
+
+    /**
+     * @return a detached stand-in for an existing row, good enough to be referenced by a foreign key
+     */
+    protected static <T extends PojoBase> T reference(T entity, int id) {
+        entity.setId(id);
+        return entity;
+    }
+
+    @Override
+    public void close() {
+        em.close();
+        emf.close();
+    }
+}
@@ -0,0 +1,178 @@
+/********************************************************************************************************
+ * File:  ServiceDeleteBenchmark.java
+ * Course Materials CST 8277
+ *
+ * Note:  run with the 'jmh' profile, see pom.xml
+ *
+ */
+package acmemedical.ejb;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import acmemedical.entity.DurationAndStatus;
+import acmemedical.entity.MedicalCertificate;
+import acmemedical.entity.MedicalSchool;
+import acmemedical.entity.MedicalTraining;
+import acmemedical.entity.Patient;
+import acmemedical.entity.Physician;
+import acmemedical.entity.Prescription;
+import acmemedical.entity.PublicSchool;
+
+/**
+ * The delete cascades of {@link ACMEMedicalService} (physician, patient, medical school), each deleting a
+ * parent with {@code children} prescriptions / certificates / trainings, in tables of {@code rows} rows.
+ * <p>
+ * Every benchmark has a state of its own that creates (outside of the measurement) only the parent it
+ * deletes before every call - nothing is left behind to grow the tables while it runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ServiceDeleteBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"100"})
+    public int children;
+
+    private BenchmarkDatabase db;
+    private ACMEMedicalService service;
+    private int sequence;
+
+    @Setup
+    public void setUp() {
+        db = new BenchmarkDatabase(rows);
+        service = db.getService();
+    }
+
+    @TearDown
+    public void tearDown() {
+        db.close();
+    }
+
+    /**
+     * A physician with {@code children} prescriptions (for seeded patients) and certificates (from seeded
+     * trainings)
+     */
+    @State(Scope.Benchmark)
+    public static class DoomedPhysician {
+        int id;
+
+        @Setup(Level.Invocation)
+        public void create(ServiceDeleteBenchmark benchmark) {
+            BenchmarkDatabase db = benchmark.db;
+            ACMEMedicalService service = benchmark.service;
+            id = db.inTransaction(() -> {
+                Physician physician = new Physician();
+                physician.setFullName("Doomed", "Physician");
+                service.persistPhysician(physician);
+                for (int i = 0; i < benchmark.children; i++) {
+                    Prescription prescription = new Prescription();
+                    prescription.setPhysician(physician);
+                    prescription.setPatient(db.em.getReference(Patient.class, db.patientId(i)));
+                    service.persistPrescription(prescription);
+                    service.persistMedicalCertificate(new MedicalCertificate(
+                        db.em.getReference(MedicalTraining.class, db.trainingId(i)), physician, (byte) 1));
+                }
+                return physician.getId();
+            });
+        }
+    }
+
+    /**
+     * A patient with {@code children} prescriptions (from seeded physicians)
+     */
+    @State(Scope.Benchmark)
+    public static class DoomedPatient {
+        int id;
+
+        @Setup(Level.Invocation)
+        public void create(ServiceDeleteBenchmark benchmark) {
+            BenchmarkDatabase db = benchmark.db;
+            ACMEMedicalService service = benchmark.service;
+            id = db.inTransaction(() -> {
+                Patient patient = new Patient();
+                patient.setFirstName("Doomed");
+                patient.setLastName("Patient");
+                patient.setYear(1990);
+                patient.setAddress("1 Doomed Street");
+                patient.setHeight(170);
+                patient.setWeight(70);
+                patient.setSmoker((byte) 0);
+                service.persistPatient(patient);
+                for (int i = 0; i < benchmark.children; i++) {
+                    Prescription prescription = new Prescription();
+                    prescription.setPhysician(db.em.getReference(Physician.class, db.physicianId(i)));
+                    prescription.setPatient(patient);
+                    service.persistPrescription(prescription);
+                }
+                return patient.getId();
+            });
+        }
+    }
+
+    /**
+     * A school with {@code children} trainings, each with a certificate (of a seeded physician)
+     */
+    @State(Scope.Benchmark)
+    public static class DoomedSchool {
+        int id;
+
+        @Setup(Level.Invocation)
+        public void create(ServiceDeleteBenchmark benchmark) {
+            BenchmarkDatabase db = benchmark.db;
+            ACMEMedicalService service = benchmark.service;
+            LocalDateTime now = LocalDateTime.now();
+            id = db.inTransaction(() -> {
+                MedicalSchool school = new PublicSchool();
+                school.setName("Doomed school " + benchmark.sequence++);
+                service.persistMedicalSchool(school);
+                for (int i = 0; i < benchmark.children; i++) {
+                    DurationAndStatus durationAndStatus = new DurationAndStatus();
+                    durationAndStatus.setDurationAndStatus(now.minusYears(1), now, "+");
+                    MedicalTraining training = new MedicalTraining();
+                    training.setMedicalSchool(school);
+                    training.setDurationAndStatus(durationAndStatus);
+                    service.persistMedicalTraining(training);
+                    service.persistMedicalCertificate(new MedicalCertificate(
+                        training, db.em.getReference(Physician.class, db.physicianId(i)), (byte) 1));
+                }
+                return school.getId();
+            });
+        }
+    }
+
+    @Benchmark
+    public Physician deletePhysician(DoomedPhysician physician) {
+        return db.inTransaction(() -> service.deletePhysicianById(physician.id));
+    }
+
+    @Benchmark
+    public Patient deletePatient(DoomedPatient patient) {
+        return db.inTransaction(() -> service.deletePatient(patient.id));
+    }
+
+    @Benchmark
+    public MedicalSchool deleteMedicalSchool(DoomedSchool school) {
+        return db.inTransaction(() -> service.deleteMedicalSchool(school.id));
+    }
+}
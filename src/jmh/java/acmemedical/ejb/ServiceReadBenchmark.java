@@ -0,0 +1,104 @@
+/********************************************************************************************************
+ * File:  ServiceReadBenchmark.java
+ * Course Materials CST 8277
+ *
+ * Note:  run with the 'jmh' profile, see pom.xml
+ *
+ */
+package acmemedical.ejb;
+
+import static acmemedical.utility.MyConstants.DEFAULT_PAGE_SIZE;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import acmemedical.entity.MedicalCertificate;
+import acmemedical.entity.MedicalSchool;
+import acmemedical.entity.MedicalTraining;
+import acmemedical.entity.Medicine;
+import acmemedical.entity.Patient;
+import acmemedical.entity.Physician;
+import acmemedical.entity.Prescription;
+import acmemedical.entity.PrescriptionPK;
+
+/**
+ * The {@code getAll*} methods of {@link ACMEMedicalService}:  one page of DEFAULT_PAGE_SIZE rows from the
+ * middle of tables of 10k, 100k and 1M rows.  With keyset paging the time per page should not grow with
+ * the size of the table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ServiceReadBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private BenchmarkDatabase db;
+    private ACMEMedicalService service;
+    private int middle;
+
+    @Setup
+    public void setUp() {
+        db = new BenchmarkDatabase(rows);
+        service = db.getService();
+        middle = rows / 2;
+    }
+
+    @TearDown
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    public List<Physician> getAllPhysicians() {
+        return db.read(() -> service.getAllPhysicians(db.physicianId(middle), DEFAULT_PAGE_SIZE));
+    }
+
+    @Benchmark
+    public List<Patient> getAllPatients() {
+        return db.read(() -> service.getAllPatients(db.patientId(middle), DEFAULT_PAGE_SIZE));
+    }
+
+    @Benchmark
+    public List<Medicine> getAllMedicines() {
+        return db.read(() -> service.getAllMedicines(db.medicineId(middle), DEFAULT_PAGE_SIZE));
+    }
+
+    @Benchmark
+    public List<MedicalSchool> getAllMedicalSchools() {
+        return db.read(() -> service.getAllMedicalSchools(db.schoolId(middle), DEFAULT_PAGE_SIZE));
+    }
+
+    @Benchmark
+    public List<MedicalTraining> getAllMedicalTrainings() {
+        return db.read(() -> service.getAllMedicalTrainings(db.trainingId(middle), DEFAULT_PAGE_SIZE));
+    }
+
+    @Benchmark
+    public List<MedicalCertificate> getAllMedicalCertificates() {
+        return db.read(() -> service.getAllMedicalCertificates(db.certificateId(middle), DEFAULT_PAGE_SIZE));
+    }
+
+    @Benchmark
+    public List<Prescription> getAllPrescriptions() {
+        PrescriptionPK after = new PrescriptionPK(db.physicianId(middle), db.patientId(middle));
+        return db.read(() -> service.getAllPrescriptions(after, DEFAULT_PAGE_SIZE));
+    }
+}
@@ -0,0 +1,140 @@
+/********************************************************************************************************
+ * File:  ServiceWriteBenchmark.java
+ * Course Materials CST 8277
+ *
+ * Note:  run with the 'jmh' profile, see pom.xml
+ *
+ */
+package acmemedical.ejb;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import acmemedical.entity.DurationAndStatus;
+import acmemedical.entity.MedicalSchool;
+import acmemedical.entity.MedicalTraining;
+import acmemedical.entity.Medicine;
+import acmemedical.entity.Patient;
+import acmemedical.entity.Physician;
+import acmemedical.entity.Prescription;
+import acmemedical.entity.PublicSchool;
+
+/**
+ * The {@code persist*} and {@code update*} methods of {@link ACMEMedicalService}, each call in its own
+ * transaction;  updates are unconditional (no If-Match version) and hit a random row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ServiceWriteBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private BenchmarkDatabase db;
+    private ACMEMedicalService service;
+    private int sequence;
+
+    @Setup
+    public void setUp() {
+        db = new BenchmarkDatabase(rows);
+        service = db.getService();
+    }
+
+    @TearDown
+    public void tearDown() {
+        db.close();
+    }
+
+    private int randomRow() {
+        return ThreadLocalRandom.current().nextInt(rows);
+    }
+
+    @Benchmark
+    public Physician persistPhysician() {
+        Physician physician = new Physician();
+        physician.setFullName("New", "Physician");
+        return db.inTransaction(() -> service.persistPhysician(physician));
+    }
+
+    @Benchmark
+    public Patient persistPatient() {
+        Patient patient = new Patient();
+        patient.setFirstName("New");
+        patient.setLastName("Patient");
+        patient.setYear(1990);
+        patient.setAddress("1 New Street");
+        patient.setHeight(170);
+        patient.setWeight(70);
+        patient.setSmoker((byte) 0);
+        return db.inTransaction(() -> service.persistPatient(patient));
+    }
+
+    @Benchmark
+    public Medicine persistMedicine() {
+        Medicine medicine = new Medicine();
+        medicine.setMedicine("New drug", "New manufacturer", "Once a day");
+        return db.inTransaction(() -> service.persistMedicine(medicine));
+    }
+
+    @Benchmark
+    public MedicalSchool persistMedicalSchool() {
+        MedicalSchool school = new PublicSchool();
+        // names are unique
+        school.setName("New school " + sequence++);
+        return db.inTransaction(() -> service.persistMedicalSchool(school));
+    }
+
+    @Benchmark
+    public int updatePhysician() {
+        Physician updates = new Physician();
+        updates.setFullName("Updated", "Physician");
+        int id = db.physicianId(randomRow());
+        return db.inTransaction(() -> service.updatePhysicianById(id, null, updates));
+    }
+
+    @Benchmark
+    public int updateMedicalSchool() {
+        MedicalSchool updates = new PublicSchool();
+        updates.setName("Updated school " + sequence++);
+        int id = db.schoolId(randomRow());
+        return db.inTransaction(() -> service.updateMedicalSchool(id, null, updates));
+    }
+
+    @Benchmark
+    public int updateMedicalTraining() {
+        LocalDateTime now = LocalDateTime.now();
+        DurationAndStatus durationAndStatus = new DurationAndStatus();
+        durationAndStatus.setDurationAndStatus(now.minusMonths(6), now, "+");
+        MedicalTraining updates = new MedicalTraining();
+        updates.setDurationAndStatus(durationAndStatus);
+        int id = db.trainingId(randomRow());
+        return db.inTransaction(() -> service.updateMedicalTraining(id, null, updates));
+    }
+
+    @Benchmark
+    public int updatePrescription() {
+        Prescription updates = new Prescription();
+        updates.setNumberOfRefills(3);
+        updates.setPrescriptionInformation("Updated");
+        int row = randomRow();
+        return db.inTransaction(() -> service.updatePrescription(db.physicianId(row), db.patientId(row), null, updates));
+    }
+}
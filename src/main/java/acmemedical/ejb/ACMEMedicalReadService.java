@@ -0,0 +1,284 @@
+/********************************************************************************************************
+ * File:  ACMEMedicalReadService.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb;
+
+import static acmemedical.utility.MyConstants.PARAM1;
+import static acmemedical.utility.MyConstants.PARAM2;
+import static acmemedical.utility.MyConstants.PU_NAME;
+import static acmemedical.utility.MyConstants.STREAM_BATCH_SIZE;
+import static acmemedical.utility.MyConstants.STREAM_FETCH_SIZE;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Lock;
+import jakarta.ejb.LockType;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import org.hibernate.FlushMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.query.Query;
+
+import acmemedical.ejb.projection.EntityVersion;
+import acmemedical.ejb.projection.ExportKey;
+import acmemedical.ejb.projection.MedicalTrainingView;
+import acmemedical.ejb.projection.MedicineView;
+import acmemedical.ejb.projection.PatientView;
+import acmemedical.ejb.projection.PhysicianView;
+import acmemedical.ejb.projection.PrescriptionView;
+import acmemedical.entity.PrescriptionPK;
+
+/**
+ * Read path of the GET endpoints:  the {@code view*} named queries select exactly the columns a
+ * resource renders into immutable records with JPQL constructor expressions.  No entity is
+ * instantiated, registered in a persistence context or snapshotted for dirty checking, and no
+ * proxies are created.
+ * <p>
+ * The queries run without a transaction (SUPPORTS) and with Hibernate's read-only and MANUAL flush
+ * hints, so that a caller that does have a transaction open does not pay for an auto-flush either.
+ * Write paths keep using {@link ACMEMedicalService} and its managed entities.
+ * <p>
+ * The {@code get*Version(s)} methods select only ids and versions, so that a conditional GET can be
+ * answered with 304 before what it renders is read.
+ * <p>
+ * The {@code stream*} methods hand every row of the same queries (without a limit) to a
+ * {@link RowConsumer} as it is read from a forward-only cursor, so memory use does not depend on the
+ * number of rows.  They run in a (read-only) transaction of their own, which - with its connection -
+ * lasts until the consumer has taken the last row:  for a download, as long as the client takes to read
+ * it.  The timeout of these transactions is raised (cmt-timeout-in-seconds in glassfish-ejb-jar.xml) well
+ * above the server's default, which a large download to a slow client would otherwise outlive and see
+ * rolled back part way.  A stream joins the caller's transaction (and its timeout) if there is one.
+ * <p>
+ * {@link #streamRange} does the same for one key range of a table, always in a transaction (and on a
+ * connection) of its own, so that {@link PartitionedExport} can read several ranges at once.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.CONTAINER)
+@Lock(LockType.READ)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class ACMEMedicalReadService {
+
+    @PersistenceContext(name = PU_NAME)
+    protected EntityManager em;
+
+    public List<PhysicianView> getPhysicians(int afterId, int limit) {
+        return getPage(QueryRegistry.PHYSICIAN_VIEWS_PAGE, afterId, limit);
+    }
+
+    public PhysicianView getPhysicianById(int id) {
+        return getById(QueryRegistry.PHYSICIAN_VIEW_BY_ID, id);
+    }
+
+    public Integer getPhysicianVersion(int id) {
+        return getById(QueryRegistry.PHYSICIAN_VERSION_BY_ID, id);
+    }
+
+    public List<EntityVersion> getPhysicianVersions(int afterId, int limit) {
+        return getPage(QueryRegistry.PHYSICIAN_VERSIONS_PAGE, afterId, limit);
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    public void streamPhysicians(int afterId, RowConsumer<PhysicianView> consumer) throws IOException {
+        stream(QueryRegistry.PHYSICIAN_VIEWS_PAGE.create(em).setParameter(PARAM1, afterId), consumer);
+    }
+
+    public List<PatientView> getPatients(int afterId, int limit) {
+        return getPage(QueryRegistry.PATIENT_VIEWS_PAGE, afterId, limit);
+    }
+
+    public PatientView getPatientById(int id) {
+        return getById(QueryRegistry.PATIENT_VIEW_BY_ID, id);
+    }
+
+    public Integer getPatientVersion(int id) {
+        return getById(QueryRegistry.PATIENT_VERSION_BY_ID, id);
+    }
+
+    public List<EntityVersion> getPatientVersions(int afterId, int limit) {
+        return getPage(QueryRegistry.PATIENT_VERSIONS_PAGE, afterId, limit);
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    public void streamPatients(int afterId, RowConsumer<PatientView> consumer) throws IOException {
+        stream(QueryRegistry.PATIENT_VIEWS_PAGE.create(em).setParameter(PARAM1, afterId), consumer);
+    }
+
+    public List<MedicineView> getMedicines(int afterId, int limit) {
+        return getPage(QueryRegistry.MEDICINE_VIEWS_PAGE, afterId, limit);
+    }
+
+    public MedicineView getMedicineById(int id) {
+        return getById(QueryRegistry.MEDICINE_VIEW_BY_ID, id);
+    }
+
+    public Integer getMedicineVersion(int id) {
+        return getById(QueryRegistry.MEDICINE_VERSION_BY_ID, id);
+    }
+
+    public List<EntityVersion> getMedicineVersions(int afterId, int limit) {
+        return getPage(QueryRegistry.MEDICINE_VERSIONS_PAGE, afterId, limit);
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    public void streamMedicines(int afterId, RowConsumer<MedicineView> consumer) throws IOException {
+        stream(QueryRegistry.MEDICINE_VIEWS_PAGE.create(em).setParameter(PARAM1, afterId), consumer);
+    }
+
+    public List<MedicalTrainingView> getMedicalTrainings(int afterId, int limit) {
+        return getPage(QueryRegistry.MEDICAL_TRAINING_VIEWS_PAGE, afterId, limit);
+    }
+
+    public MedicalTrainingView getMedicalTrainingById(int id) {
+        return getById(QueryRegistry.MEDICAL_TRAINING_VIEW_BY_ID, id);
+    }
+
+    public Integer getMedicalTrainingVersion(int id) {
+        return getById(QueryRegistry.MEDICAL_TRAINING_VERSION_BY_ID, id);
+    }
+
+    public List<EntityVersion> getMedicalTrainingVersions(int afterId, int limit) {
+        return getPage(QueryRegistry.MEDICAL_TRAINING_VERSIONS_PAGE, afterId, limit);
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    public void streamMedicalTrainings(int afterId, RowConsumer<MedicalTrainingView> consumer) throws IOException {
+        stream(QueryRegistry.MEDICAL_TRAINING_VIEWS_PAGE.create(em).setParameter(PARAM1, afterId), consumer);
+    }
+
+    /**
+     * @param after key of the last prescription of the previous page, null for the first page
+     */
+    public List<PrescriptionView> getPrescriptions(PrescriptionPK after, int limit) {
+        TypedQuery<PrescriptionView> pageQuery = readOnly(QueryRegistry.PRESCRIPTION_VIEWS_PAGE.create(em));
+        // (0, 0) sorts before every real key
+        pageQuery.setParameter(PARAM1, after == null ? 0 : after.getPhysicianId());
+        pageQuery.setParameter(PARAM2, after == null ? 0 : after.getPatientId());
+        return pageQuery.setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * @param after key of the last prescription not to stream, null for all of them
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    public void streamPrescriptions(PrescriptionPK after, RowConsumer<PrescriptionView> consumer) throws IOException {
+        TypedQuery<PrescriptionView> query = QueryRegistry.PRESCRIPTION_VIEWS_PAGE.create(em);
+        query.setParameter(PARAM1, after == null ? 0 : after.getPhysicianId());
+        query.setParameter(PARAM2, after == null ? 0 : after.getPatientId());
+        stream(query, consumer);
+    }
+
+    public PrescriptionView getPrescriptionByPhysicianAndPatient(int physicianId, int patientId) {
+        TypedQuery<PrescriptionView> query = readOnly(QueryRegistry.PRESCRIPTION_VIEW_BY_PHYSICIAN_PATIENT.create(em));
+        query.setParameter(PARAM1, physicianId);
+        query.setParameter(PARAM2, patientId);
+        return first(query.getResultList());
+    }
+
+    public Integer getPrescriptionVersion(int physicianId, int patientId) {
+        TypedQuery<Integer> query = readOnly(QueryRegistry.PRESCRIPTION_VERSION_BY_PHYSICIAN_PATIENT.create(em));
+        query.setParameter(PARAM1, physicianId);
+        query.setParameter(PARAM2, patientId);
+        return first(query.getResultList());
+    }
+
+    /**
+     * Scan the keys of the table - in key order, and nothing but the keys - for those that split it into
+     * partitions of (about) equal row counts, however the key values are distributed
+     *
+     * @return the last key of every partition but the last one (whose rows run to the end of the table);
+     * fewer if the table has fewer rows than partitions
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    public List<ExportKey> getPartitionSplitKeys(ExportTable<?> table, int partitions) {
+        long rows = readOnly(table.getKeyCountQuery().create(em)).getSingleResult();
+        int count = (int) Math.min(partitions, rows);
+        List<ExportKey> splitKeys = new ArrayList<>(Math.max(count - 1, 0));
+        if (count <= 1) {
+            return splitKeys;
+        }
+        long[] read = new long[1];
+        // the last row of partition i (1-based) is row rows * i / count;  the rows of the last one are not needed
+        TypedQuery<ExportKey> keysQuery = table.getKeysQuery().create(em).setMaxResults((int) (rows * (count - 1) / count));
+        try {
+            stream(keysQuery, key -> {
+                if (++read[0] == rows * (splitKeys.size() + 1) / count) {
+                    splitKeys.add(key);
+                }
+            });
+        }
+        catch (IOException e) {
+            // the consumer does no I/O
+            throw new UncheckedIOException(e);
+        }
+        return splitKeys;
+    }
+
+    /**
+     * @param after key of the last row not to stream
+     * @param last key of the last row to stream
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public <T> void streamRange(ExportTable<T> table, ExportKey after, ExportKey last, RowConsumer<T> consumer)
+        throws IOException {
+        stream(table.createRangeQuery(em, after, last), consumer);
+    }
+
+    /**
+     * Keyset paging, as {@link ACMEMedicalService#getPage}
+     */
+    protected <T> List<T> getPage(QueryDefinition<T> namedQuery, int afterId, int limit) {
+        TypedQuery<T> pageQuery = readOnly(namedQuery.create(em));
+        pageQuery.setParameter(PARAM1, afterId);
+        return pageQuery.setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * @return the single row for the id, or null if there is none
+     */
+    protected <T> T getById(QueryDefinition<T> namedQuery, int id) {
+        TypedQuery<T> query = readOnly(namedQuery.create(em));
+        query.setParameter(PARAM1, id);
+        return first(query.getResultList());
+    }
+
+    /**
+     * Scroll forward through the results (streamed by the JDBC driver), clearing the persistence context
+     * every {@code STREAM_BATCH_SIZE} rows - should the query ever select entities they do not pile up
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> void stream(TypedQuery<T> query, RowConsumer<T> consumer) throws IOException {
+        Query<T> scrolledQuery = readOnly(query).unwrap(Query.class);
+        scrolledQuery.setCacheable(false).setFetchSize(STREAM_FETCH_SIZE);
+        int rows = 0;
+        try (ScrollableResults results = scrolledQuery.scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                consumer.accept((T) results.get(0));
+                if (++rows % STREAM_BATCH_SIZE == 0) {
+                    em.clear();
+                    consumer.batchDone();
+                }
+            }
+        }
+    }
+
+    protected static <T> TypedQuery<T> readOnly(TypedQuery<T> query) {
+        return query.setHint(QueryHints.HINT_READONLY, true).setHint(QueryHints.HINT_FLUSH_MODE, FlushMode.MANUAL);
+    }
+
+    protected static <T> T first(List<T> rows) {
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+}
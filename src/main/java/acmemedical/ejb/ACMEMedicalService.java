@@ -7,46 +7,42 @@
  */
 package acmemedical.ejb;
 
-import static acmemedical.utility.MyConstants.DEFAULT_KEY_SIZE;
-import static acmemedical.utility.MyConstants.DEFAULT_PROPERTY_ALGORITHM;
-import static acmemedical.utility.MyConstants.DEFAULT_PROPERTY_ITERATIONS;
-import static acmemedical.utility.MyConstants.DEFAULT_SALT_SIZE;
-import static acmemedical.utility.MyConstants.DEFAULT_USER_PASSWORD;
+import static acmemedical.utility.MyConstants.BULK_UPDATE_MAX_KEYS;
 import static acmemedical.utility.MyConstants.DEFAULT_USER_PREFIX;
+import static acmemedical.utility.MyConstants.ID_BLOCK_SIZE;
 import static acmemedical.utility.MyConstants.PARAM1;
-import static acmemedical.utility.MyConstants.PROPERTY_ALGORITHM;
-import static acmemedical.utility.MyConstants.PROPERTY_ITERATIONS;
-import static acmemedical.utility.MyConstants.PROPERTY_KEY_SIZE;
-import static acmemedical.utility.MyConstants.PROPERTY_SALT_SIZE;
+import static acmemedical.utility.MyConstants.PARAM2;
+import static acmemedical.utility.MyConstants.PARAM3;
+import static acmemedical.utility.MyConstants.PARAM4;
+import static acmemedical.utility.MyConstants.PARAM5;
+import static acmemedical.utility.MyConstants.PARAM6;
 import static acmemedical.utility.MyConstants.PU_NAME;
 import static acmemedical.utility.MyConstants.USER_ROLE;
-import static acmemedical.entity.Physician.ALL_PHYSICIANS_QUERY_NAME;
-import static acmemedical.entity.MedicalSchool.ALL_MEDICAL_SCHOOLS_QUERY_NAME;
-import static acmemedical.entity.MedicalSchool.IS_DUPLICATE_QUERY_NAME;
-import static acmemedical.entity.MedicalSchool.SPECIFIC_MEDICAL_SCHOOL_QUERY_NAME;
 
 import java.io.Serializable;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Lock;
+import jakarta.ejb.LockType;
 import jakarta.ejb.Singleton;
 import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
-import jakarta.persistence.criteria.CriteriaBuilder;
-import jakarta.persistence.criteria.CriteriaQuery;
-import jakarta.persistence.criteria.Root;
-import jakarta.security.enterprise.identitystore.Pbkdf2PasswordHash;
 import jakarta.transaction.Transactional;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.hibernate.graph.GraphSemantic;
 
+import acmemedical.entity.DurationAndStatus;
 import acmemedical.entity.MedicalTraining;
 import acmemedical.entity.Patient;
 import acmemedical.entity.MedicalCertificate;
@@ -56,14 +52,24 @@ import acmemedical.entity.PrescriptionPK;
 import acmemedical.entity.SecurityRole;
 import acmemedical.entity.SecurityUser;
 import acmemedical.entity.Physician;
+import acmemedical.entity.PojoBase;
 import acmemedical.entity.MedicalSchool;
+import acmemedical.security.CustomIdentityStore;
 
 @SuppressWarnings("unused")
 
 /**
  * Stateless Singleton EJB Bean - ACMEMedicalService
+ * <p>
+ * The bean holds no mutable state of its own:  the container-injected EntityManager is a
+ * transaction-scoped proxy and every business method works against its own persistence context.
+ * The default container-managed WRITE lock would therefore only serialize every REST call
+ * through this one instance, so all methods run under a READ lock and concurrent writers are
+ * left to the database (row locks + the optimistic {@code @Version} checks on each entity).
  */
 @Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.CONTAINER)
+@Lock(LockType.READ)
 public class ACMEMedicalService implements Serializable {
     private static final long serialVersionUID = 1L;
     
@@ -71,15 +77,15 @@ public class ACMEMedicalService implements Serializable {
     
     @PersistenceContext(name = PU_NAME)
     protected EntityManager em;
-    
+
     @Inject
-    protected Pbkdf2PasswordHash pbAndjPasswordHash;
+    protected ChunkedBulkUpdate chunkedBulkUpdate;
 
-    public List<Physician> getAllPhysicians() {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Physician> cq = cb.createQuery(Physician.class);
-        cq.select(cq.from(Physician.class));
-        return em.createQuery(cq).getResultList();
+    @Inject
+    protected CustomIdentityStore identityStore;
+    
+    public List<Physician> getAllPhysicians(int afterId, int limit) {
+        return getPage(QueryRegistry.PHYSICIANS_PAGE, afterId, limit);
     }
 
     public Physician getPhysicianById(int id) {
@@ -92,132 +98,236 @@ public class ACMEMedicalService implements Serializable {
         return newPhysician;
     }
 
+    /**
+     * Persist a chunk of new entities in one transaction.  Ids come in blocks (see PojoBase), so the
+     * INSERTs are sent as JDBC batches;  the persistence context is flushed and cleared after every
+     * batch so it never holds more than one batch of entities.
+     * 
+     * @param newEntities - new entities, all of the same type
+     * @return number of entities persisted
+     */
     @Transactional
-    public void buildUserForNewPhysician(Physician newPhysician) {
+    public <T extends PojoBase> int persistAll(List<T> newEntities) {
+        int batchSize = Integer.parseInt(ID_BLOCK_SIZE);
+        int count = 0;
+        for (T newEntity : newEntities) {
+            em.persist(newEntity);
+            if (++count % batchSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+        return count;
+    }
+
+    /**
+     * @param pwHash the already generated (see {@link acmemedical.security.PasswordHashingService})
+     * PBKDF2 hash of the new user's password - no hashing is done inside this transaction
+     */
+    @Transactional
+    public void buildUserForNewPhysician(Physician newPhysician, String pwHash) {
         SecurityUser userForNewPhysician = new SecurityUser();
         userForNewPhysician.setUsername(
             DEFAULT_USER_PREFIX + "_" + newPhysician.getFirstName() + "." + newPhysician.getLastName());
-        Map<String, String> pbAndjProperties = new HashMap<>();
-        pbAndjProperties.put(PROPERTY_ALGORITHM, DEFAULT_PROPERTY_ALGORITHM);
-        pbAndjProperties.put(PROPERTY_ITERATIONS, DEFAULT_PROPERTY_ITERATIONS);
-        pbAndjProperties.put(PROPERTY_SALT_SIZE, DEFAULT_SALT_SIZE);
-        pbAndjProperties.put(PROPERTY_KEY_SIZE, DEFAULT_KEY_SIZE);
-        pbAndjPasswordHash.initialize(pbAndjProperties);
-        String pwHash = pbAndjPasswordHash.generate(DEFAULT_USER_PASSWORD.toCharArray());
         userForNewPhysician.setPwHash(pwHash);
         userForNewPhysician.setPhysician(newPhysician);
-        SecurityRole userRole = em.createNamedQuery("SecurityRole.USER_ROLE", SecurityRole.class).getSingleResult();
+        SecurityRole userRole = QueryRegistry.USER_ROLE.create(em).getSingleResult();
         userForNewPhysician.getRoles().add(userRole);
         userRole.getUsers().add(userForNewPhysician);
         em.persist(userForNewPhysician);
+        // the name may have been remembered as unknown (see LoginThrottle) before it existed
+        identityStore.invalidateAfterCompletion(userForNewPhysician.getUsername());
     }
 
+    /**
+     * Give the prescription of a physician for a patient new medicine information:  the prescription's
+     * medicine is updated in place if it has one, otherwise the new medicine is stored and linked to it.
+     * <p>
+     * The prescription is found directly by its primary key - no walking of the physician's prescriptions.
+     * 
+     * @return the (managed) medicine of the prescription, or null if there is no such prescription
+     */
     @Transactional
     public Medicine setMedicineForPhysicianPatient(int physicianId, int patientId, Medicine newMedicine) {
-        Physician physicianToBeUpdated = em.find(Physician.class, physicianId);
-        if (physicianToBeUpdated != null) { // Physician exists
-            Set<Prescription> prescriptions = physicianToBeUpdated.getPrescriptions();
-            prescriptions.forEach(p -> {
-                if (p.getPatient().getId() == patientId) {
-                    if (p.getMedicine() != null) { // Medicine exists
-                        Medicine medicine = em.find(Medicine.class, p.getMedicine().getId());
-                        medicine.setMedicine(newMedicine.getDrugName(),
-                        				  newMedicine.getManufacturerName(),
-                        				  newMedicine.getDosageInformation());
-                        em.merge(medicine);
-                    }
-                    else { // Medicine does not exist
-                        p.setMedicine(newMedicine);
-                        em.merge(physicianToBeUpdated);
-                    }
-                }
-            });
-            return newMedicine;
+        Prescription prescription = em.find(Prescription.class, new PrescriptionPK(physicianId, patientId));
+        if (prescription == null) {
+            return null;
+        }
+        Medicine medicine = prescription.getMedicine();
+        if (medicine != null) { // Medicine exists - changes are flushed on commit
+            medicine.setMedicine(newMedicine.getDrugName(),
+                newMedicine.getManufacturerName(),
+                newMedicine.getDosageInformation());
         }
-        else return null;  // Physician doesn't exists
+        else { // Medicine does not exist
+            medicine = em.merge(newMedicine);
+            prescription.setMedicine(medicine);
+        }
+        return medicine;
+    }
+
+    /**
+     * Point many prescriptions at the same (existing) medicine with set-based UPDATEs - one statement per
+     * {@code BULK_UPDATE_MAX_KEYS} prescriptions instead of loading and merging each of them.
+     * <p>
+     * Bulk updates bypass the persistence context:  prescriptions already loaded in this transaction
+     * are not refreshed.
+     * 
+     * @param medicineId - id of the medicine
+     * @param prescriptionIds - keys of the prescriptions to change;  unknown keys are ignored
+     * @return number of prescriptions updated
+     */
+    @Transactional
+    public int setMedicineForPrescriptions(int medicineId, List<PrescriptionPK> prescriptionIds) {
+        Medicine medicine = em.getReference(Medicine.class, medicineId);
+        int updated = 0;
+        for (int from = 0; from < prescriptionIds.size(); from += BULK_UPDATE_MAX_KEYS) {
+            List<PrescriptionPK> keys = prescriptionIds.subList(from, Math.min(from + BULK_UPDATE_MAX_KEYS, prescriptionIds.size()));
+            updated += em.createNamedQuery(Prescription.SET_MEDICINE_QUERY_NAME)
+                .setParameter(PARAM1, medicine)
+                .setParameter(PARAM2, keys)
+                .executeUpdate();
+        }
+        return updated;
     }
 
     /**
-     * To update a physician
+     * To update a physician with a single {@code UPDATE ... WHERE id = ? AND version = ?} - nothing is
+     * loaded first.  The other update methods work the same way.
      * 
      * @param id - id of entity to update
+     * @param expectedVersion - the version the client last saw (its If-Match), null to update unconditionally
      * @param physicianWithUpdates - entity with updated information
-     * @return Entity with updated information
+     * @return 1 if updated, 0 if there is no such physician or its version is no longer expectedVersion
      */
     @Transactional
-    public Physician updatePhysicianById(int id, Physician physicianWithUpdates) {
-    	Physician physicianToBeUpdated = getPhysicianById(id);
-        if (physicianToBeUpdated != null) {
-            em.refresh(physicianToBeUpdated);
-            em.merge(physicianWithUpdates);
-            em.flush();
-        }
-        return physicianToBeUpdated;
+    public int updatePhysicianById(int id, Integer expectedVersion, Physician physicianWithUpdates) {
+        return em.createNamedQuery(Physician.UPDATE_QUERY_NAME)
+            .setParameter(PARAM1, id)
+            .setParameter(PARAM2, expectedVersion)
+            .setParameter(PARAM3, physicianWithUpdates.getFirstName())
+            .setParameter(PARAM4, physicianWithUpdates.getLastName())
+            .executeUpdate();
     }
 
     /**
-     * To delete a physician by id
+     * To delete a physician by id, together with the physician's prescriptions, medical certificates
+     * and security user.
+     * <p>
+     * Prescriptions and certificates are deleted with chunked set-based statements (see
+     * {@link ChunkedBulkUpdate}), so nothing is loaded into memory, all in this one transaction.  Patients
+     * and medicines of the prescriptions are <i>not</i> deleted.
      * 
      * @param id - physician id to delete
+     * @return the deleted physician, or null if there is none with that id
      */
     @Transactional
-    public void deletePhysicianById(int id) {
+    public Physician deletePhysicianById(int id) {
         Physician physician = getPhysicianById(id);
         if (physician != null) {
-            em.refresh(physician);
-            TypedQuery<SecurityUser> findUser = em.createNamedQuery("SecurityUser.findByPhysician", SecurityUser.class);
-            findUser.setParameter("param1", physician);
-            SecurityUser sUser = findUser.getSingleResult();
-            em.remove(sUser);
-            em.remove(physician);
+            runInChunks(QueryRegistry.PRESCRIPTION_KEYS_BY_PHYSICIAN, Prescription.DELETE_BY_KEYS_QUERY_NAME, id);
+            runInChunks(QueryRegistry.MEDICAL_CERTIFICATE_IDS_BY_OWNER, MedicalCertificate.DELETE_BY_IDS_QUERY_NAME, id);
+            // em.remove (not a bulk DELETE) so that the user's roles and cached credentials are cleaned up
+            TypedQuery<SecurityUser> findUser = QueryRegistry.USER_BY_PHYSICIAN.create(em);
+            findUser.setParameter(PARAM1, physician);
+            for (SecurityUser user : findUser.getResultList()) {
+                em.remove(user);
+                // cached verifications of the user must not authenticate anyone after the commit
+                identityStore.invalidateAfterCompletion(user.getUsername());
+            }
+            em.flush();
+            em.detach(physician);
+            em.createNamedQuery(Physician.DELETE_BY_ID_QUERY_NAME).setParameter(PARAM1, id).executeUpdate();
         }
+        return physician;
+    }
+
+    /**
+     * Repeat a chunk of a set-based UPDATE/DELETE over the children of a parent until none are left
+     * 
+     * @return total number of rows changed
+     */
+    protected <K> int runInChunks(QueryDefinition<K> keysQuery, String statementName, int parentId) {
+        int total = 0;
+        for (int changed = chunkedBulkUpdate.runChunk(keysQuery, statementName, parentId); changed > 0;
+            changed = chunkedBulkUpdate.runChunk(keysQuery, statementName, parentId)) {
+            total += changed;
+        }
+        LOG.debug("{}:  {} rows changed for parent {}", statementName, total, parentId);
+        return total;
     }
     
-    public List<MedicalSchool> getAllMedicalSchools() {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<MedicalSchool> cq = cb.createQuery(MedicalSchool.class);
-        cq.select(cq.from(MedicalSchool.class));
-        return em.createQuery(cq).getResultList();
+    /**
+     * A page of medical schools with their trainings (which are rendered):  the (cacheable) page query,
+     * then one more query fetching the trainings of the whole page
+     */
+    public List<MedicalSchool> getAllMedicalSchools(int afterId, int limit) {
+        List<MedicalSchool> page = getPage(QueryRegistry.MEDICAL_SCHOOLS_PAGE, afterId, limit);
+        if (page.isEmpty()) {
+            return page;
+        }
+        return getMedicalSchoolsWithTrainings(page.stream().map(MedicalSchool::getId).collect(Collectors.toList()));
     }
 
-    // Why not use the build-in em.find?  The named query SPECIFIC_MEDICAL_SCHOOL_QUERY_NAME
-    // includes JOIN FETCH that we cannot add to the above API
+    /**
+     * @return the medical school, with its trainings, or null if there is none with that id
+     */
     public MedicalSchool getMedicalSchoolById(int id) {
-        TypedQuery<MedicalSchool> specificMedicalSchoolQuery = em.createNamedQuery(SPECIFIC_MEDICAL_SCHOOL_QUERY_NAME, MedicalSchool.class);
-        specificMedicalSchoolQuery.setParameter(PARAM1, id);
-        return specificMedicalSchoolQuery.getSingleResult();
+        List<MedicalSchool> medicalSchools = getMedicalSchoolsWithTrainings(List.of(id));
+        return medicalSchools.isEmpty() ? null : medicalSchools.get(0);
+    }
+
+    protected List<MedicalSchool> getMedicalSchoolsWithTrainings(List<Integer> ids) {
+        return QueryRegistry.MEDICAL_SCHOOLS_BY_IDS.create(em, MedicalSchool.WITH_TRAININGS_GRAPH)
+            .setParameter(PARAM1, ids)
+            .getResultList();
     }
     
     // These methods are more generic.
 
-    public <T> List<T> getAll(Class<T> entity, String namedQuery) {
-        TypedQuery<T> allQuery = em.createNamedQuery(namedQuery, entity);
+    public <T> List<T> getAll(QueryDefinition<T> namedQuery) {
+        TypedQuery<T> allQuery = namedQuery.create(em);
         return allQuery.getResultList();
     }
     
-    public <T> T getById(Class<T> entity, String namedQuery, int id) {
-        TypedQuery<T> allQuery = em.createNamedQuery(namedQuery, entity);
+    /**
+     * Keyset (not OFFSET) paging:  namedQuery must select the rows with {@code id > :param1} ordered by id
+     *
+     * @param afterId id of the last row of the previous page, 0 for the first page
+     */
+    public <T> List<T> getPage(QueryDefinition<T> namedQuery, int afterId, int limit) {
+        TypedQuery<T> pageQuery = namedQuery.create(em);
+        pageQuery.setParameter(PARAM1, afterId);
+        return pageQuery.setMaxResults(limit).getResultList();
+    }
+
+    public <T> T getById(QueryDefinition<T> namedQuery, int id) {
+        TypedQuery<T> allQuery = namedQuery.create(em);
         allQuery.setParameter(PARAM1, id);
         return allQuery.getSingleResult();
     }
 
+    /**
+     * To delete a medical school and its medical trainings;  medical certificates earned in those
+     * trainings are kept, but no longer linked to a training.
+     * <p>
+     * Certificates are unlinked and trainings deleted with chunked set-based statements (see
+     * {@link ChunkedBulkUpdate}) in this one transaction - no per-training queries or merges.
+     * 
+     * @param id - medical school id to delete
+     * @return the deleted medical school, or null if there is none with that id
+     */
     @Transactional
     public MedicalSchool deleteMedicalSchool(int id) {
-        //MedicalSchool ms = getMedicalSchoolById(id);
-    	MedicalSchool ms = getById(MedicalSchool.class, MedicalSchool.SPECIFIC_MEDICAL_SCHOOL_QUERY_NAME, id);
+        // with its trainings:  they are rendered in the response
+        MedicalSchool ms = getMedicalSchoolById(id);
         if (ms != null) {
-            Set<MedicalTraining> medicalTrainings = ms.getMedicalTrainings();
-            List<MedicalTraining> list = new LinkedList<>();
-            medicalTrainings.forEach(list::add);
-            list.forEach(mt -> {
-                if (mt.getCertificate() != null) {
-                    MedicalCertificate mc = getById(MedicalCertificate.class, MedicalCertificate.ID_CARD_QUERY_NAME, mt.getCertificate().getId());
-                    mc.setMedicalTraining(null);
-                }
-                mt.setCertificate(null);
-                em.merge(mt);
-            });
-            em.remove(ms);
+            runInChunks(QueryRegistry.MEDICAL_CERTIFICATE_IDS_BY_SCHOOL, MedicalCertificate.CLEAR_TRAINING_BY_IDS_QUERY_NAME, id);
+            runInChunks(QueryRegistry.MEDICAL_TRAINING_IDS_BY_SCHOOL, MedicalTraining.DELETE_BY_IDS_QUERY_NAME, id);
+            em.detach(ms);
+            em.createNamedQuery(MedicalSchool.DELETE_BY_ID_QUERY_NAME).setParameter(PARAM1, id).executeUpdate();
             return ms;
         }
         return null;
@@ -226,7 +336,7 @@ public class ACMEMedicalService implements Serializable {
     // Please study & use the methods below in your test suites
     
     public boolean isDuplicated(MedicalSchool newMedicalSchool) {
-        TypedQuery<Long> allMedicalSchoolsQuery = em.createNamedQuery(IS_DUPLICATE_QUERY_NAME, Long.class);
+        TypedQuery<Long> allMedicalSchoolsQuery = QueryRegistry.MEDICAL_SCHOOL_NAME_COUNT.create(em);
         allMedicalSchoolsQuery.setParameter(PARAM1, newMedicalSchool.getName());
         return (allMedicalSchoolsQuery.getSingleResult() >= 1);
     }
@@ -238,17 +348,28 @@ public class ACMEMedicalService implements Serializable {
     }
 
     @Transactional
-    public MedicalSchool updateMedicalSchool(int id, MedicalSchool updatingMedicalSchool) {
-    	MedicalSchool medicalSchoolToBeUpdated = getMedicalSchoolById(id);
-        if (medicalSchoolToBeUpdated != null) {
-            em.refresh(medicalSchoolToBeUpdated);
-            medicalSchoolToBeUpdated.setName(updatingMedicalSchool.getName());
-            em.merge(medicalSchoolToBeUpdated);
-            em.flush();
-        }
-        return medicalSchoolToBeUpdated;
+    public int updateMedicalSchool(int id, Integer expectedVersion, MedicalSchool updatingMedicalSchool) {
+        return em.createNamedQuery(MedicalSchool.UPDATE_QUERY_NAME)
+            .setParameter(PARAM1, id)
+            .setParameter(PARAM2, expectedVersion)
+            .setParameter(PARAM3, updatingMedicalSchool.getName())
+            .executeUpdate();
     }
     
+    /**
+     * @return the medical school, with all its trainings, or null if there is none with that id
+     */
+    @Transactional
+    public MedicalSchool addMedicalTrainingToMedicalSchool(int msId, MedicalTraining newMedicalTraining) {
+        MedicalSchool ms = getMedicalSchoolById(msId);
+        if (ms != null) {
+            newMedicalTraining.setMedicalSchool(ms);
+            ms.getMedicalTrainings().add(newMedicalTraining);
+            em.persist(newMedicalTraining);
+        }
+        return ms;
+    }
+
     @Transactional
     public MedicalTraining persistMedicalTraining(MedicalTraining newMedicalTraining) {
         em.persist(newMedicalTraining);
@@ -256,28 +377,26 @@ public class ACMEMedicalService implements Serializable {
     }
     
     public MedicalTraining getMedicalTrainingById(int mtId) {
-        TypedQuery<MedicalTraining> allMedicalTrainingQuery = em.createNamedQuery(MedicalTraining.FIND_BY_ID, MedicalTraining.class);
+        TypedQuery<MedicalTraining> allMedicalTrainingQuery = QueryRegistry.MEDICAL_TRAINING_BY_ID.create(em);
         allMedicalTrainingQuery.setParameter(PARAM1, mtId);
         return allMedicalTrainingQuery.getSingleResult();
     }
 
     @Transactional
-    public MedicalTraining updateMedicalTraining(int id, MedicalTraining medicalTrainingWithUpdates) {
-    	MedicalTraining medicalTrainingToBeUpdated = getMedicalTrainingById(id);
-        if (medicalTrainingToBeUpdated != null) {
-            em.refresh(medicalTrainingToBeUpdated);
-            em.merge(medicalTrainingWithUpdates);
-            em.flush();
-        }
-        return medicalTrainingToBeUpdated;
+    public int updateMedicalTraining(int id, Integer expectedVersion, MedicalTraining medicalTrainingWithUpdates) {
+        DurationAndStatus durationAndStatus = medicalTrainingWithUpdates.getDurationAndStatus();
+        return em.createNamedQuery(MedicalTraining.UPDATE_QUERY_NAME)
+            .setParameter(PARAM1, id)
+            .setParameter(PARAM2, expectedVersion)
+            .setParameter(PARAM3, durationAndStatus.getStartDate())
+            .setParameter(PARAM4, durationAndStatus.getEndDate())
+            .setParameter(PARAM5, durationAndStatus.getActive())
+            .executeUpdate();
     }
     
     // Patient methods
-    public List<Patient> getAllPatients() {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Patient> cq = cb.createQuery(Patient.class);
-        cq.select(cq.from(Patient.class));
-        return em.createQuery(cq).getResultList();
+    public List<Patient> getAllPatients(int afterId, int limit) {
+        return getPage(QueryRegistry.PATIENTS_PAGE, afterId, limit);
     }
 
     public Patient getPatientById(int id) {
@@ -294,18 +413,18 @@ public class ACMEMedicalService implements Serializable {
     public Patient deletePatient(int id) {
         Patient patient = getPatientById(id);
         if (patient != null) {
-            em.remove(patient);
+            // prescriptions in chunked set-based deletes (see deletePhysicianById), physicians and medicines are kept
+            runInChunks(QueryRegistry.PRESCRIPTION_KEYS_BY_PATIENT, Prescription.DELETE_BY_KEYS_QUERY_NAME, id);
+            em.detach(patient);
+            em.createNamedQuery(Patient.DELETE_BY_ID_QUERY_NAME).setParameter(PARAM1, id).executeUpdate();
             return patient;
         }
         return null;
     }
     
     // Medicine methods
-    public List<Medicine> getAllMedicines() {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Medicine> cq = cb.createQuery(Medicine.class);
-        cq.select(cq.from(Medicine.class));
-        return em.createQuery(cq).getResultList();
+    public List<Medicine> getAllMedicines(int afterId, int limit) {
+        return getPage(QueryRegistry.MEDICINES_PAGE, afterId, limit);
     }
 
     public Medicine getMedicineById(int id) {
@@ -329,15 +448,17 @@ public class ACMEMedicalService implements Serializable {
     }
     
     // MedicalCertificate methods
-    public List<MedicalCertificate> getAllMedicalCertificates() {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<MedicalCertificate> cq = cb.createQuery(MedicalCertificate.class);
-        cq.select(cq.from(MedicalCertificate.class));
-        return em.createQuery(cq).getResultList();
+    // certificates are rendered with their owner:  fetched by the same query (see MedicalCertificate.withOwner)
+    public List<MedicalCertificate> getAllMedicalCertificates(int afterId, int limit) {
+        return QueryRegistry.MEDICAL_CERTIFICATES_PAGE.create(em, MedicalCertificate.WITH_OWNER_GRAPH)
+            .setParameter(PARAM1, afterId)
+            .setMaxResults(limit)
+            .getResultList();
     }
 
     public MedicalCertificate getMedicalCertificateById(int id) {
-        return em.find(MedicalCertificate.class, id);
+        return em.find(MedicalCertificate.class, id,
+            Map.of(GraphSemantic.LOAD.getJpaHintName(), em.getEntityGraph(MedicalCertificate.WITH_OWNER_GRAPH)));
     }
 
     @Transactional
@@ -347,21 +468,16 @@ public class ACMEMedicalService implements Serializable {
     }
 
     @Transactional
-    public MedicalCertificate updateMedicalCertificate(int id, MedicalCertificate medicalCertificateWithUpdates) {
-        MedicalCertificate medicalCertificateToBeUpdated = getMedicalCertificateById(id);
-        if (medicalCertificateToBeUpdated != null) {
-            em.refresh(medicalCertificateToBeUpdated);
-            medicalCertificateToBeUpdated.setSigned(medicalCertificateWithUpdates.getSigned());
-            if (medicalCertificateWithUpdates.getOwner() != null) {
-                medicalCertificateToBeUpdated.setOwner(medicalCertificateWithUpdates.getOwner());
-            }
-            if (medicalCertificateWithUpdates.getMedicalTraining() != null) {
-                medicalCertificateToBeUpdated.setMedicalTraining(medicalCertificateWithUpdates.getMedicalTraining());
-            }
-            em.merge(medicalCertificateToBeUpdated);
-            em.flush();
-        }
-        return medicalCertificateToBeUpdated;
+    public int updateMedicalCertificate(int id, Integer expectedVersion, MedicalCertificate medicalCertificateWithUpdates) {
+        Physician owner = medicalCertificateWithUpdates.getOwner();
+        MedicalTraining medicalTraining = medicalCertificateWithUpdates.getMedicalTraining();
+        return em.createNamedQuery(MedicalCertificate.UPDATE_QUERY_NAME)
+            .setParameter(PARAM1, id)
+            .setParameter(PARAM2, expectedVersion)
+            .setParameter(PARAM3, medicalCertificateWithUpdates.getSigned())
+            .setParameter(PARAM4, owner == null ? null : em.getReference(Physician.class, owner.getId()))
+            .setParameter(PARAM5, medicalTraining == null ? null : em.getReference(MedicalTraining.class, medicalTraining.getId()))
+            .executeUpdate();
     }
 
     @Transactional
@@ -375,11 +491,8 @@ public class ACMEMedicalService implements Serializable {
     }
     
     // MedicalTraining methods
-    public List<MedicalTraining> getAllMedicalTrainings() {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<MedicalTraining> cq = cb.createQuery(MedicalTraining.class);
-        cq.select(cq.from(MedicalTraining.class));
-        return em.createQuery(cq).getResultList();
+    public List<MedicalTraining> getAllMedicalTrainings(int afterId, int limit) {
+        return getPage(QueryRegistry.MEDICAL_TRAININGS_PAGE, afterId, limit);
     }
 
     @Transactional
@@ -393,17 +506,21 @@ public class ACMEMedicalService implements Serializable {
     }
     
     // Prescription methods
-    public List<Prescription> getAllPrescriptions() {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Prescription> cq = cb.createQuery(Prescription.class);
-        cq.select(cq.from(Prescription.class));
-        return em.createQuery(cq).getResultList();
+    /**
+     * @param after key of the last prescription of the previous page, null for the first page
+     */
+    public List<Prescription> getAllPrescriptions(PrescriptionPK after, int limit) {
+        TypedQuery<Prescription> pageQuery = QueryRegistry.PRESCRIPTIONS_PAGE.create(em);
+        // (0, 0) sorts before every real key
+        pageQuery.setParameter(PARAM1, after == null ? 0 : after.getPhysicianId());
+        pageQuery.setParameter(PARAM2, after == null ? 0 : after.getPatientId());
+        return pageQuery.setMaxResults(limit).getResultList();
     }
 
     public Prescription getPrescriptionByPhysicianAndPatient(int physicianId, int patientId) {
-        TypedQuery<Prescription> query = em.createNamedQuery(Prescription.FIND_BY_PHYSICIAN_PATIENT_QUERY_NAME, Prescription.class);
-        query.setParameter("param1", physicianId);
-        query.setParameter("param2", patientId);
+        TypedQuery<Prescription> query = QueryRegistry.PRESCRIPTION_BY_PHYSICIAN_PATIENT.create(em);
+        query.setParameter(PARAM1, physicianId);
+        query.setParameter(PARAM2, patientId);
         try {
             return query.getSingleResult();
         } catch (Exception e) {
@@ -418,19 +535,24 @@ public class ACMEMedicalService implements Serializable {
     }
 
     @Transactional
-    public Prescription updatePrescription(int physicianId, int patientId, Prescription prescriptionWithUpdates) {
-        Prescription prescriptionToBeUpdated = getPrescriptionByPhysicianAndPatient(physicianId, patientId);
-        if (prescriptionToBeUpdated != null) {
-            em.refresh(prescriptionToBeUpdated);
-            prescriptionToBeUpdated.setNumberOfRefills(prescriptionWithUpdates.getNumberOfRefills());
-            prescriptionToBeUpdated.setPrescriptionInformation(prescriptionWithUpdates.getPrescriptionInformation());
-            if (prescriptionWithUpdates.getMedicine() != null) {
-                prescriptionToBeUpdated.setMedicine(prescriptionWithUpdates.getMedicine());
-            }
-            em.merge(prescriptionToBeUpdated);
-            em.flush();
-        }
-        return prescriptionToBeUpdated;
+    public int updatePrescription(int physicianId, int patientId, Integer expectedVersion, Prescription prescriptionWithUpdates) {
+        Medicine medicine = prescriptionWithUpdates.getMedicine();
+        return em.createNamedQuery(Prescription.UPDATE_QUERY_NAME)
+            .setParameter(PARAM1, physicianId)
+            .setParameter(PARAM2, patientId)
+            .setParameter(PARAM3, expectedVersion)
+            .setParameter(PARAM4, prescriptionWithUpdates.getNumberOfRefills())
+            .setParameter(PARAM5, prescriptionWithUpdates.getPrescriptionInformation())
+            .setParameter(PARAM6, medicine == null ? null : em.getReference(Medicine.class, medicine.getId()))
+            .executeUpdate();
+    }
+
+    /**
+     * @return true if there is an entity with that primary key (to tell a 404 from a 412 after an update
+     * did not match)
+     */
+    public boolean exists(Class<?> entityClass, Object id) {
+        return em.find(entityClass, id) != null;
     }
 
     @Transactional
@@ -0,0 +1,58 @@
+/********************************************************************************************************
+ * File:  ChunkedBulkUpdate.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb;
+
+import static acmemedical.utility.MyConstants.BULK_UPDATE_MAX_KEYS;
+import static acmemedical.utility.MyConstants.PARAM1;
+import static acmemedical.utility.MyConstants.PU_NAME;
+
+import java.util.List;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import jakarta.transaction.Transactional.TxType;
+
+/**
+ * Runs a set-based UPDATE/DELETE over the children of one parent row in chunks of at most
+ * {@code BULK_UPDATE_MAX_KEYS} keys, so that neither the key list nor the IN-list of a statement grows
+ * with the number of children.
+ * <p>
+ * Every chunk joins the caller's transaction:  the parent and all of its children are deleted (or none
+ * of them are) - a failure part way through never leaves a parent with only some of its children.
+ */
+@ApplicationScoped
+public class ChunkedBulkUpdate {
+
+    @PersistenceContext(name = PU_NAME)
+    protected EntityManager em;
+
+    /**
+     * Select (at most {@code BULK_UPDATE_MAX_KEYS}) keys of the children of a parent, then run the
+     * statement on them - in the caller's transaction, which must exist.
+     * <p>
+     * The statement must make the selected rows stop matching {@code keysQuery} (delete them, unlink
+     * them ...) - callers repeat until 0 is returned.
+     *
+     * @param keysQuery selects child keys, its {@code :param1} is the parent's id
+     * @param statementName a named UPDATE/DELETE query whose {@code :param1} is the list of keys
+     * @param parentId id of the parent row
+     * @return number of rows changed by this chunk
+     */
+    @Transactional(TxType.MANDATORY)
+    public <K> int runChunk(QueryDefinition<K> keysQuery, String statementName, int parentId) {
+        List<K> keys = keysQuery.create(em)
+            .setParameter(PARAM1, parentId)
+            .setMaxResults(BULK_UPDATE_MAX_KEYS)
+            .getResultList();
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        return em.createNamedQuery(statementName)
+            .setParameter(PARAM1, keys)
+            .executeUpdate();
+    }
+}
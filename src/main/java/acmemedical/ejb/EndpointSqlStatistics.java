@@ -0,0 +1,118 @@
+/********************************************************************************************************
+ * File:  EndpointSqlStatistics.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Per-endpoint totals of {@link RequestSqlStatistics} (statements, JDBC time, entity loads, collection
+ * fetches) for the 'metrics/sql' resource, so that an endpoint issuing N+1 queries stands out.
+ * <p>
+ * Recording is switched on and off at runtime together with Hibernate's own statistics (initially on if
+ * 'hibernate.generate_statistics' is);  the {@code X-SQL-Count}/{@code X-DB-Time} response headers are a
+ * separate switch, off by default.
+ */
+@ApplicationScoped
+public class EndpointSqlStatistics {
+
+    /**
+     * Totals of one endpoint;  requests add to them concurrently
+     */
+    protected static class Totals {
+        final LongAdder requests = new LongAdder();
+        final LongAdder statements = new LongAdder();
+        final LongAccumulator maxStatements = new LongAccumulator(Math::max, 0);
+        final LongAdder jdbcNanos = new LongAdder();
+        final LongAdder entityLoads = new LongAdder();
+        final LongAdder collectionFetches = new LongAdder();
+
+        Map<String, Object> toMap() {
+            long count = requests.sum();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("requests", count);
+            map.put("statements", statements.sum());
+            map.put("statementsPerRequest", count == 0 ? 0.0 : (double) statements.sum() / count);
+            map.put("maxStatements", maxStatements.get());
+            map.put("jdbcMillis", TimeUnit.NANOSECONDS.toMillis(jdbcNanos.sum()));
+            map.put("entityLoads", entityLoads.sum());
+            map.put("collectionFetches", collectionFetches.sum());
+            return map;
+        }
+    }
+
+    @Inject
+    protected PersistenceStatistics persistenceStatistics;
+
+    protected final Map<String, Totals> endpoints = new ConcurrentHashMap<>();
+
+    protected volatile boolean enabled;
+
+    protected volatile boolean headers;
+
+    @PostConstruct
+    protected void init() {
+        enabled = persistenceStatistics.isEnabled();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Switches per-request recording and Hibernate's statistics on or off
+     */
+    public void setEnabled(boolean enabled) {
+        persistenceStatistics.setEnabled(enabled);
+        this.enabled = enabled;
+    }
+
+    public boolean isHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(boolean headers) {
+        this.headers = headers;
+    }
+
+    /**
+     * @param endpoint e.g. "GET PhysicianResource.getPhysicians"
+     */
+    public void record(String endpoint, RequestSqlStatistics.Counts counts) {
+        Totals totals = endpoints.computeIfAbsent(endpoint, e -> new Totals());
+        totals.requests.increment();
+        totals.statements.add(counts.getStatements());
+        totals.maxStatements.accumulate(counts.getStatements());
+        totals.jdbcNanos.add(counts.getJdbcNanos());
+        totals.entityLoads.add(counts.getEntityLoads());
+        totals.collectionFetches.add(counts.getCollectionFetches());
+    }
+
+    public void reset() {
+        endpoints.clear();
+    }
+
+    /**
+     * @return the switches and the totals of every endpoint recorded so far, by endpoint
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> byEndpoint = new TreeMap<>();
+        endpoints.forEach((endpoint, totals) -> byEndpoint.put(endpoint, totals.toMap()));
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", enabled);
+        statistics.put("headers", headers);
+        statistics.put("endpoints", byEndpoint);
+        return statistics;
+    }
+}
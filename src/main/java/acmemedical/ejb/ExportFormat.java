@@ -0,0 +1,39 @@
+/********************************************************************************************************
+ * File:  ExportFormat.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb;
+
+import java.util.Locale;
+
+/**
+ * Formats of {@link PartitionedExport}:  CSV (a header line, then one line per row) or NDJSON (one JSON
+ * object per line, as the REST endpoints render it)
+ */
+public enum ExportFormat {
+
+    CSV("csv"),
+    NDJSON("ndjson");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @return the format of that (case-insensitive) name, null if there is none
+     */
+    public static ExportFormat of(String name) {
+        try {
+            return name == null ? null : valueOf(name.toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/********************************************************************************************************
+ * File:  ExportTable.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb;
+
+import static acmemedical.utility.MyConstants.PARAM1;
+import static acmemedical.utility.MyConstants.PARAM2;
+import static acmemedical.utility.MyConstants.PARAM3;
+import static acmemedical.utility.MyConstants.PARAM4;
+
+import java.util.List;
+import java.util.function.Function;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import acmemedical.ejb.projection.ExportKey;
+import acmemedical.ejb.projection.PatientView;
+import acmemedical.ejb.projection.PrescriptionView;
+
+/**
+ * A table {@link PartitionedExport} can export:  the queries for the number and for the (ordered) keys of
+ * its rows, the query for the rows of one key range (and how to bind that range), and the CSV columns of
+ * a row.
+ *
+ * @param <T> row type
+ */
+public final class ExportTable<T> {
+
+    /**
+     * Binds the range {@code after < key <= last} to a {@code *.viewRange} query
+     */
+    @FunctionalInterface
+    public interface RangeBinder {
+        void bind(TypedQuery<?> rangeQuery, ExportKey after, ExportKey last);
+    }
+
+    public static final ExportTable<PatientView> PATIENT = new ExportTable<>("patient", PatientView.class,
+        QueryRegistry.PATIENT_KEY_COUNT, QueryRegistry.PATIENT_EXPORT_KEYS, QueryRegistry.PATIENT_VIEWS_RANGE,
+        (query, after, last) -> query.setParameter(PARAM1, after.leading()).setParameter(PARAM2, last.leading()),
+        List.of("id", "version", "firstName", "lastName", "year", "address", "height", "weight", "smoker"),
+        v -> new Object[] {v.id(), v.version(), v.firstName(), v.lastName(), v.year(), v.address(), v.height(),
+            v.weight(), v.smoker()});
+
+    public static final ExportTable<PrescriptionView> PRESCRIPTION = new ExportTable<>("prescription",
+        PrescriptionView.class, QueryRegistry.PRESCRIPTION_KEY_COUNT, QueryRegistry.PRESCRIPTION_EXPORT_KEYS,
+        QueryRegistry.PRESCRIPTION_VIEWS_RANGE,
+        (query, after, last) -> query.setParameter(PARAM1, after.leading()).setParameter(PARAM2, after.trailing())
+            .setParameter(PARAM3, last.leading()).setParameter(PARAM4, last.trailing()),
+        List.of("physicianId", "patientId", "version", "numberOfRefills", "prescriptionInformation"),
+        v -> new Object[] {v.id().getPhysicianId(), v.id().getPatientId(), v.version(), v.numberOfRefills(),
+            v.prescriptionInformation()});
+
+    public static final List<ExportTable<?>> ALL_TABLES = List.of(PATIENT, PRESCRIPTION);
+
+    private final String name;
+    private final Class<T> rowType;
+    private final QueryDefinition<Long> keyCountQuery;
+    private final QueryDefinition<ExportKey> keysQuery;
+    private final QueryDefinition<T> rangeQuery;
+    private final RangeBinder rangeBinder;
+    private final List<String> columns;
+    private final Function<T, Object[]> valuesOf;
+
+    private ExportTable(String name, Class<T> rowType, QueryDefinition<Long> keyCountQuery,
+        QueryDefinition<ExportKey> keysQuery, QueryDefinition<T> rangeQuery, RangeBinder rangeBinder,
+        List<String> columns, Function<T, Object[]> valuesOf) {
+        this.name = name;
+        this.rowType = rowType;
+        this.keyCountQuery = keyCountQuery;
+        this.keysQuery = keysQuery;
+        this.rangeQuery = rangeQuery;
+        this.rangeBinder = rangeBinder;
+        this.columns = columns;
+        this.valuesOf = valuesOf;
+    }
+
+    /**
+     * @return the table of that name (its REST resource name), null if it cannot be exported
+     */
+    public static ExportTable<?> of(String name) {
+        return ALL_TABLES.stream().filter(table -> table.name.equals(name)).findFirst().orElse(null);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class<T> getRowType() {
+        return rowType;
+    }
+
+    public QueryDefinition<Long> getKeyCountQuery() {
+        return keyCountQuery;
+    }
+
+    public QueryDefinition<ExportKey> getKeysQuery() {
+        return keysQuery;
+    }
+
+    /**
+     * @return the query for the rows with {@code after < key <= last}, in key order
+     */
+    public TypedQuery<T> createRangeQuery(EntityManager em, ExportKey after, ExportKey last) {
+        TypedQuery<T> query = rangeQuery.create(em);
+        rangeBinder.bind(query, after, last);
+        return query;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the values of the CSV columns (may contain nulls)
+     */
+    public Object[] valuesOf(T row) {
+        return valuesOf.apply(row);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
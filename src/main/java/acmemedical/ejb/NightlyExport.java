@@ -0,0 +1,81 @@
+/********************************************************************************************************
+ * File:  NightlyExport.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb;
+
+import static acmemedical.utility.MyConstants.EXPORT_BUFFER_SIZE;
+import static acmemedical.utility.MyConstants.EXPORT_DIRECTORY_PROPERTY;
+import static acmemedical.utility.MyConstants.EXPORT_NIGHTLY_FORMAT_PROPERTY;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.inject.Inject;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Writes every exportable table (see {@link ExportTable}) to {@code <table>-<date>.<format>.gz} in the
+ * directory given by {@code -Dacmemedical.export.dir} (default:  {@code acmemedical-export} in the
+ * temporary directory) every night, in the format given by {@code -Dacmemedical.export.format} (default
+ * CSV).  A file only appears under its final name once it is complete.
+ * <p>
+ * The timer runs without a transaction:  every partition is read in a transaction of its own.
+ */
+@Singleton
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class NightlyExport {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    @Inject
+    protected PartitionedExport export;
+
+    @Schedule(hour = "2", minute = "0", persistent = false)
+    public void exportAll() {
+        ExportFormat format = ExportFormat.of(System.getProperty(EXPORT_NIGHTLY_FORMAT_PROPERTY, ExportFormat.CSV.name()));
+        if (format == null) {
+            LOG.error("unknown export format {}, nightly export skipped", System.getProperty(EXPORT_NIGHTLY_FORMAT_PROPERTY));
+            return;
+        }
+        Path directory = Paths.get(System.getProperty(EXPORT_DIRECTORY_PROPERTY,
+            Paths.get(System.getProperty("java.io.tmpdir"), "acmemedical-export").toString()));
+        try {
+            Files.createDirectories(directory);
+        }
+        catch (IOException e) {
+            LOG.error("cannot create export directory {}, nightly export skipped", directory, e);
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        for (ExportTable<?> table : ExportTable.ALL_TABLES) {
+            exportTo(table, format, directory.resolve(table.getName() + "-" + today + "." + format.getExtension() + ".gz"));
+        }
+    }
+
+    protected <T> void exportTo(ExportTable<T> table, ExportFormat format, Path file) {
+        Path partial = file.resolveSibling(file.getFileName() + ".part");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial), EXPORT_BUFFER_SIZE)) {
+                export.start(table, format).writeTo(out);
+            }
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException | RuntimeException e) {
+            LOG.error("nightly export of {} failed", table, e);
+            PartitionedExport.delete(partial);
+        }
+    }
+}
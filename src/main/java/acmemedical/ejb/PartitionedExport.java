@@ -0,0 +1,341 @@
+/********************************************************************************************************
+ * File:  PartitionedExport.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb;
+
+import static acmemedical.utility.MyConstants.EXPORT_BUFFER_SIZE;
+import static acmemedical.utility.MyConstants.EXPORT_PARTITIONS_PER_WORKER;
+import static acmemedical.utility.MyConstants.EXPORT_QUEUE_CAPACITY;
+import static acmemedical.utility.MyConstants.EXPORT_WORKERS;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.EJB;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import acmemedical.ejb.projection.ExportKey;
+
+/**
+ * Exports a whole table as one gzip-compressed CSV or NDJSON stream, reading it in parallel.
+ * <p>
+ * The table is split into (up to) {@code EXPORT_WORKERS * EXPORT_PARTITIONS_PER_WORKER} partitions of
+ * equal row counts, at keys taken from the data itself (every N-th key, see
+ * {@link ACMEMedicalReadService#getPartitionSplitKeys}) - so a table whose rows share few leading key
+ * values (all prescriptions of one physician, say) is split as finely as any other.  Each partition is a
+ * range of the whole (composite) key, read by
+ * {@link ACMEMedicalReadService#streamRange} - in a transaction, and on a connection, of its own - on a
+ * small fixed pool of container-managed threads with a bounded queue, and compressed, as it is read, into
+ * a temporary file.  The files are then copied to the output in key order and deleted:  the concatenated
+ * gzip members are one valid gzip stream (RFC 1952), so nothing is decompressed or compressed again,
+ * and neither a partition nor the export is ever held in memory.
+ * <p>
+ * {@link #start} submits the partitions (or fails at once with {@link RejectedExecutionException} if the
+ * queue has no room for them), {@link Running#writeTo} merges them;  if merging fails or stops early - or
+ * never starts, and the caller {@link Running#close closes} the export instead - the partitions still
+ * running are aborted and every temporary file is deleted.
+ */
+@ApplicationScoped
+public class PartitionedExport {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    // the export rows hold numbers and strings only:  none of the REST mapper's configuration applies
+    protected static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @EJB
+    protected ACMEMedicalReadService readService;
+
+    @Resource
+    protected ManagedThreadFactory threadFactory;
+
+    protected ThreadPoolExecutor executor;
+
+    @PostConstruct
+    protected void init() {
+        executor = new ThreadPoolExecutor(EXPORT_WORKERS, EXPORT_WORKERS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(EXPORT_QUEUE_CAPACITY), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Start reading the partitions of the table
+     *
+     * @throws RejectedExecutionException if the queue of the pool has no room for them (too many exports
+     * at once)
+     */
+    public <T> Running<T> start(ExportTable<T> table, ExportFormat format) {
+        List<ExportKey> splitKeys = readService.getPartitionSplitKeys(table, EXPORT_WORKERS * EXPORT_PARTITIONS_PER_WORKER);
+        Running<T> running = new Running<>(table, format);
+        ExportKey afterKey = ExportKey.BEFORE_FIRST;
+        try {
+            // the last partition runs to the end of the table, so rows added since the split keys were read
+            // are exported too
+            for (int i = 0; i <= splitKeys.size(); i++) {
+                ExportKey partitionAfterKey = afterKey;
+                ExportKey lastKey = i < splitKeys.size() ? splitKeys.get(i) : ExportKey.LAST;
+                running.partitions.add(CompletableFuture.supplyAsync(
+                    () -> readPartition(running, partitionAfterKey, lastKey), executor));
+                afterKey = lastKey;
+            }
+        }
+        catch (RejectedExecutionException e) {
+            LOG.warn("export queue full, rejecting export of {}", table);
+            running.close();
+            throw e;
+        }
+        LOG.debug("exporting {} in {} partitions", table, running.getPartitionCount());
+        return running;
+    }
+
+    protected <T> Partition readPartition(Running<T> running, ExportKey afterKey, ExportKey lastKey) {
+        Path file = null;
+        try {
+            file = Files.createTempFile("acmemedical-export-", ".gz");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), EXPORT_BUFFER_SIZE)) {
+                RowWriter<T> writer = new RowWriter<>(running.table, running.format, out, running.aborted);
+                readService.streamRange(running.table, afterKey, lastKey, writer);
+                writer.finish();
+                return new Partition(file, writer.rows);
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            delete(file);
+            if (e instanceof IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+            throw (RuntimeException) e;
+        }
+    }
+
+    protected static void delete(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException e) {
+            LOG.warn("could not delete export file {}", file, e);
+        }
+    }
+
+    /**
+     * A partition read and compressed into a temporary file
+     */
+    protected record Partition(Path file, long rows) {
+    }
+
+    /**
+     * The partitions of one export, in key order
+     */
+    public static final class Running<T> {
+
+        private final ExportTable<T> table;
+        private final ExportFormat format;
+        private final List<CompletableFuture<Partition>> partitions = new ArrayList<>();
+        private final AtomicBoolean aborted = new AtomicBoolean();
+        private final long started = System.nanoTime();
+        // written by writeTo, read by close - which may run on another (container) thread
+        private volatile int merged;
+
+        private Running(ExportTable<T> table, ExportFormat format) {
+            this.table = table;
+            this.format = format;
+        }
+
+        /**
+         * Write the (CSV header and the) partitions to out, as each is ready;  out is not closed
+         *
+         * @return number of rows written
+         */
+        public long writeTo(OutputStream out) throws IOException {
+            long rows = 0;
+            try {
+                // a member of its own (empty for NDJSON):  even an empty table is a valid gzip stream
+                RowWriter<T> header = new RowWriter<>(table, format, out, aborted);
+                if (format == ExportFormat.CSV) {
+                    header.writeHeader();
+                }
+                header.finish();
+                for (CompletableFuture<Partition> partition : partitions) {
+                    Partition done = join(partition);
+                    Files.copy(done.file(), out);
+                    delete(done.file());
+                    rows += done.rows();
+                    merged++;
+                }
+                out.flush();
+            }
+            finally {
+                abort(merged);
+            }
+            LOG.info("exported {} rows of {} as {} in {} partitions, {} ms", rows, table, format, partitions.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            return rows;
+        }
+
+        public int getPartitionCount() {
+            return partitions.size();
+        }
+
+        /**
+         * Abort the partitions not merged (yet) and delete their files - for a caller that ends up not
+         * calling (or not completing) {@link #writeTo};  harmless after it
+         */
+        public void close() {
+            abort(merged);
+        }
+
+        /**
+         * Stop the partitions from the given one on and delete their files, now or once they are done
+         */
+        private void abort(int from) {
+            if (from >= partitions.size()) {
+                return;
+            }
+            aborted.set(true);
+            partitions.subList(from, partitions.size()).forEach(partition -> partition.thenAccept(done -> delete(done.file())));
+        }
+
+        private static Partition join(CompletableFuture<Partition> partition) throws IOException {
+            try {
+                return partition.join();
+            }
+            catch (CompletionException e) {
+                Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+                if (cause instanceof IOException ioe) {
+                    throw ioe;
+                }
+                if (cause instanceof RuntimeException re) {
+                    throw re;
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Formats rows into one gzip member
+     */
+    protected static final class RowWriter<T> implements RowConsumer<T> {
+
+        private final ExportTable<T> table;
+        private final AtomicBoolean aborted;
+        private final GZIPOutputStream gzip;
+        private final JsonGenerator json;
+        private final ObjectWriter jsonWriter;
+        private final Writer csv;
+        private long rows;
+
+        RowWriter(ExportTable<T> table, ExportFormat format, OutputStream out, AtomicBoolean aborted) throws IOException {
+            this.table = table;
+            this.aborted = aborted;
+            gzip = new GZIPOutputStream(out, EXPORT_BUFFER_SIZE);
+            if (format == ExportFormat.NDJSON) {
+                json = MAPPER.getFactory().createGenerator(gzip).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                // one object per line, not separated by the default space
+                json.setRootValueSeparator(null);
+                jsonWriter = MAPPER.writerFor(table.getRowType()).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+                csv = null;
+            } else {
+                json = null;
+                jsonWriter = null;
+                csv = new BufferedWriter(new OutputStreamWriter(gzip, UTF_8), EXPORT_BUFFER_SIZE);
+            }
+        }
+
+        @Override
+        public void accept(T row) throws IOException {
+            if (aborted.get()) {
+                throw new InterruptedIOException("export of " + table + " aborted");
+            }
+            if (json != null) {
+                jsonWriter.writeValue(json, row);
+                json.writeRaw('\n');
+            } else {
+                writeCsvLine(table.valuesOf(row));
+            }
+            rows++;
+        }
+
+        void writeHeader() throws IOException {
+            writeCsvLine(table.getColumns().toArray());
+        }
+
+        protected void writeCsvLine(Object[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    csv.write(',');
+                }
+                if (values[i] instanceof String text) {
+                    writeCsvText(text);
+                } else if (values[i] != null) {
+                    csv.write(values[i].toString());
+                }
+            }
+            csv.write("\r\n");
+        }
+
+        /**
+         * RFC 4180:  quoted (with doubled quotes) only if it holds a separator, a quote or a line break
+         */
+        protected void writeCsvText(String text) throws IOException {
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                csv.write(text);
+                return;
+            }
+            csv.write('"');
+            csv.write(text.replace("\"", "\"\""));
+            csv.write('"');
+        }
+
+        /**
+         * Complete the gzip member;  the underlying stream stays open
+         */
+        void finish() throws IOException {
+            if (json != null) {
+                json.close();
+            } else {
+                csv.flush();
+            }
+            gzip.finish();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/********************************************************************************************************
+ * File:  PersistenceStatistics.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb;
+
+import static acmemedical.utility.MyConstants.PU_NAME;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+/**
+ * View of Hibernate's statistics (enabled by 'hibernate.generate_statistics' in persistence.xml, switchable at
+ * runtime) for the 'metrics' resource
+ */
+@ApplicationScoped
+public class PersistenceStatistics {
+
+    @PersistenceUnit(unitName = PU_NAME)
+    protected EntityManagerFactory emf;
+
+    protected Statistics statistics() {
+        return emf.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    public boolean isEnabled() {
+        return statistics().isStatisticsEnabled();
+    }
+
+    /**
+     * Switches Hibernate's statistics collection at runtime
+     */
+    public void setEnabled(boolean enabled) {
+        statistics().setStatisticsEnabled(enabled);
+    }
+
+    /**
+     * @return overall second-level/query cache counters plus hit/miss/put/size of every cache region
+     */
+    public Map<String, Object> getSecondLevelCacheStatistics() {
+        Statistics stats = statistics();
+        Map<String, Object> cache = new LinkedHashMap<>();
+        cache.put("hits", stats.getSecondLevelCacheHitCount());
+        cache.put("misses", stats.getSecondLevelCacheMissCount());
+        cache.put("puts", stats.getSecondLevelCachePutCount());
+        cache.put("queryCacheHits", stats.getQueryCacheHitCount());
+        cache.put("queryCacheMisses", stats.getQueryCacheMissCount());
+        cache.put("queryCachePuts", stats.getQueryCachePutCount());
+        Map<String, Object> regions = new LinkedHashMap<>();
+        for (String regionName : stats.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics region = stats.getCacheRegionStatistics(regionName);
+            if (region == null) {
+                continue;
+            }
+            Map<String, Object> regionStats = new LinkedHashMap<>();
+            regionStats.put("hits", region.getHitCount());
+            regionStats.put("misses", region.getMissCount());
+            regionStats.put("puts", region.getPutCount());
+            regionStats.put("elementsInMemory", region.getElementCountInMemory());
+            regions.put(regionName, regionStats);
+        }
+        cache.put("regions", regions);
+        return cache;
+    }
+
+    /**
+     * @return query plan cache hit/miss counters and overall query execution counters
+     */
+    public Map<String, Object> getQueryStatistics() {
+        Statistics stats = statistics();
+        long hits = stats.getQueryPlanCacheHitCount();
+        long misses = stats.getQueryPlanCacheMissCount();
+        Map<String, Object> queries = new LinkedHashMap<>();
+        queries.put("registeredQueries", QueryRegistry.ALL_QUERIES.size());
+        queries.put("planCacheHits", hits);
+        queries.put("planCacheMisses", misses);
+        queries.put("planCacheHitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        queries.put("executions", stats.getQueryExecutionCount());
+        queries.put("maxExecutionTimeMillis", stats.getQueryExecutionMaxTime());
+        queries.put("slowestQuery", stats.getQueryExecutionMaxTimeQueryString());
+        return queries;
+    }
+}
@@ -0,0 +1,52 @@
+/********************************************************************************************************
+ * File:  QueryDefinition.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import org.hibernate.graph.GraphSemantic;
+
+/**
+ * A named query together with its result type, so that callers get a correctly typed {@link TypedQuery}
+ * without repeating (and possibly mismatching) the name/class pair at every call site.
+ *
+ * @param <T> result type of the query
+ */
+public final class QueryDefinition<T> {
+
+    private final String name;
+    private final Class<T> resultType;
+
+    QueryDefinition(String name, Class<T> resultType) {
+        this.name = name;
+        this.resultType = resultType;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class<T> getResultType() {
+        return resultType;
+    }
+
+    public TypedQuery<T> create(EntityManager em) {
+        return em.createNamedQuery(name, resultType);
+    }
+
+    /**
+     * @param entityGraph name of a {@code @NamedEntityGraph}:  the associations it lists are fetched by
+     * the query itself (load graph semantics), instead of lazily - and outside the transaction - later
+     */
+    public TypedQuery<T> create(EntityManager em, String entityGraph) {
+        return create(em).setHint(GraphSemantic.LOAD.getJpaHintName(), em.getEntityGraph(entityGraph));
+    }
+
+    @Override
+    public String toString() {
+        return name + " -> " + resultType.getSimpleName();
+    }
+}
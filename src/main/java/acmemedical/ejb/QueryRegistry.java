@@ -0,0 +1,172 @@
+/********************************************************************************************************
+ * File:  QueryRegistry.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb;
+
+import static acmemedical.utility.MyConstants.PU_NAME;
+
+import java.util.List;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import acmemedical.ejb.projection.EntityVersion;
+import acmemedical.ejb.projection.ExportKey;
+import acmemedical.ejb.projection.MedicalTrainingView;
+import acmemedical.ejb.projection.MedicineView;
+import acmemedical.ejb.projection.PatientView;
+import acmemedical.ejb.projection.PhysicianView;
+import acmemedical.ejb.projection.PrescriptionView;
+import acmemedical.entity.MedicalCertificate;
+import acmemedical.entity.MedicalSchool;
+import acmemedical.entity.MedicalTraining;
+import acmemedical.entity.Medicine;
+import acmemedical.entity.Patient;
+import acmemedical.entity.Physician;
+import acmemedical.entity.Prescription;
+import acmemedical.entity.PrescriptionPK;
+import acmemedical.entity.SecurityRole;
+import acmemedical.entity.SecurityUser;
+
+/**
+ * Every query the application runs, as typed {@link QueryDefinition}s - ACMEMedicalService and
+ * CustomIdentityStoreJPAHelper go through these instead of building Criteria queries or passing
+ * name/class pairs around.
+ * <p>
+ * At deployment each definition is created once:  a missing query or a wrong result type fails the
+ * deployment instead of the first request, and Hibernate's query plan cache (sized in persistence.xml)
+ * already holds the compiled plan of every query before the first request arrives.
+ */
+@Singleton
+@Startup
+public class QueryRegistry {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    public static final QueryDefinition<Physician> PHYSICIANS_PAGE =
+        new QueryDefinition<>(Physician.PHYSICIANS_PAGE_QUERY_NAME, Physician.class);
+    public static final QueryDefinition<Patient> PATIENTS_PAGE =
+        new QueryDefinition<>(Patient.PATIENTS_PAGE_QUERY_NAME, Patient.class);
+    public static final QueryDefinition<Medicine> MEDICINES_PAGE =
+        new QueryDefinition<>(Medicine.MEDICINES_PAGE_QUERY_NAME, Medicine.class);
+    public static final QueryDefinition<MedicalSchool> MEDICAL_SCHOOLS_PAGE =
+        new QueryDefinition<>(MedicalSchool.MEDICAL_SCHOOLS_PAGE_QUERY_NAME, MedicalSchool.class);
+    public static final QueryDefinition<MedicalSchool> MEDICAL_SCHOOL_BY_ID =
+        new QueryDefinition<>(MedicalSchool.SPECIFIC_MEDICAL_SCHOOL_QUERY_NAME, MedicalSchool.class);
+    public static final QueryDefinition<MedicalSchool> MEDICAL_SCHOOLS_BY_IDS =
+        new QueryDefinition<>(MedicalSchool.FIND_BY_IDS_QUERY_NAME, MedicalSchool.class);
+    public static final QueryDefinition<Long> MEDICAL_SCHOOL_NAME_COUNT =
+        new QueryDefinition<>(MedicalSchool.IS_DUPLICATE_QUERY_NAME, Long.class);
+    public static final QueryDefinition<MedicalTraining> MEDICAL_TRAININGS_PAGE =
+        new QueryDefinition<>(MedicalTraining.MEDICAL_TRAININGS_PAGE_QUERY_NAME, MedicalTraining.class);
+    public static final QueryDefinition<MedicalTraining> MEDICAL_TRAINING_BY_ID =
+        new QueryDefinition<>(MedicalTraining.FIND_BY_ID, MedicalTraining.class);
+    public static final QueryDefinition<MedicalCertificate> MEDICAL_CERTIFICATES_PAGE =
+        new QueryDefinition<>(MedicalCertificate.MEDICAL_CERTIFICATES_PAGE_QUERY_NAME, MedicalCertificate.class);
+    public static final QueryDefinition<MedicalCertificate> MEDICAL_CERTIFICATE_BY_ID =
+        new QueryDefinition<>(MedicalCertificate.ID_CARD_QUERY_NAME, MedicalCertificate.class);
+    public static final QueryDefinition<Prescription> PRESCRIPTIONS_PAGE =
+        new QueryDefinition<>(Prescription.PRESCRIPTIONS_PAGE_QUERY_NAME, Prescription.class);
+    public static final QueryDefinition<Prescription> PRESCRIPTION_BY_PHYSICIAN_PATIENT =
+        new QueryDefinition<>(Prescription.FIND_BY_PHYSICIAN_PATIENT_QUERY_NAME, Prescription.class);
+    public static final QueryDefinition<PrescriptionPK> PRESCRIPTION_KEYS_BY_PHYSICIAN =
+        new QueryDefinition<>(Prescription.KEYS_BY_PHYSICIAN_QUERY_NAME, PrescriptionPK.class);
+    public static final QueryDefinition<PrescriptionPK> PRESCRIPTION_KEYS_BY_PATIENT =
+        new QueryDefinition<>(Prescription.KEYS_BY_PATIENT_QUERY_NAME, PrescriptionPK.class);
+    public static final QueryDefinition<Integer> MEDICAL_CERTIFICATE_IDS_BY_OWNER =
+        new QueryDefinition<>(MedicalCertificate.IDS_BY_OWNER_QUERY_NAME, Integer.class);
+    public static final QueryDefinition<Integer> MEDICAL_CERTIFICATE_IDS_BY_SCHOOL =
+        new QueryDefinition<>(MedicalCertificate.IDS_BY_SCHOOL_QUERY_NAME, Integer.class);
+    public static final QueryDefinition<Integer> MEDICAL_TRAINING_IDS_BY_SCHOOL =
+        new QueryDefinition<>(MedicalTraining.IDS_BY_SCHOOL_QUERY_NAME, Integer.class);
+    public static final QueryDefinition<PhysicianView> PHYSICIAN_VIEWS_PAGE =
+        new QueryDefinition<>(Physician.VIEW_PAGE_QUERY_NAME, PhysicianView.class);
+    public static final QueryDefinition<PhysicianView> PHYSICIAN_VIEW_BY_ID =
+        new QueryDefinition<>(Physician.VIEW_BY_ID_QUERY_NAME, PhysicianView.class);
+    public static final QueryDefinition<PatientView> PATIENT_VIEWS_PAGE =
+        new QueryDefinition<>(Patient.VIEW_PAGE_QUERY_NAME, PatientView.class);
+    public static final QueryDefinition<PatientView> PATIENT_VIEW_BY_ID =
+        new QueryDefinition<>(Patient.VIEW_BY_ID_QUERY_NAME, PatientView.class);
+    public static final QueryDefinition<MedicineView> MEDICINE_VIEWS_PAGE =
+        new QueryDefinition<>(Medicine.VIEW_PAGE_QUERY_NAME, MedicineView.class);
+    public static final QueryDefinition<MedicineView> MEDICINE_VIEW_BY_ID =
+        new QueryDefinition<>(Medicine.VIEW_BY_ID_QUERY_NAME, MedicineView.class);
+    public static final QueryDefinition<MedicalTrainingView> MEDICAL_TRAINING_VIEWS_PAGE =
+        new QueryDefinition<>(MedicalTraining.VIEW_PAGE_QUERY_NAME, MedicalTrainingView.class);
+    public static final QueryDefinition<MedicalTrainingView> MEDICAL_TRAINING_VIEW_BY_ID =
+        new QueryDefinition<>(MedicalTraining.VIEW_BY_ID_QUERY_NAME, MedicalTrainingView.class);
+    public static final QueryDefinition<PrescriptionView> PRESCRIPTION_VIEWS_PAGE =
+        new QueryDefinition<>(Prescription.VIEW_PAGE_QUERY_NAME, PrescriptionView.class);
+    public static final QueryDefinition<PrescriptionView> PRESCRIPTION_VIEW_BY_PHYSICIAN_PATIENT =
+        new QueryDefinition<>(Prescription.VIEW_BY_PHYSICIAN_PATIENT_QUERY_NAME, PrescriptionView.class);
+    public static final QueryDefinition<Integer> PHYSICIAN_VERSION_BY_ID =
+        new QueryDefinition<>(Physician.VERSION_BY_ID_QUERY_NAME, Integer.class);
+    public static final QueryDefinition<EntityVersion> PHYSICIAN_VERSIONS_PAGE =
+        new QueryDefinition<>(Physician.VERSIONS_PAGE_QUERY_NAME, EntityVersion.class);
+    public static final QueryDefinition<Integer> PATIENT_VERSION_BY_ID =
+        new QueryDefinition<>(Patient.VERSION_BY_ID_QUERY_NAME, Integer.class);
+    public static final QueryDefinition<EntityVersion> PATIENT_VERSIONS_PAGE =
+        new QueryDefinition<>(Patient.VERSIONS_PAGE_QUERY_NAME, EntityVersion.class);
+    public static final QueryDefinition<Integer> MEDICINE_VERSION_BY_ID =
+        new QueryDefinition<>(Medicine.VERSION_BY_ID_QUERY_NAME, Integer.class);
+    public static final QueryDefinition<EntityVersion> MEDICINE_VERSIONS_PAGE =
+        new QueryDefinition<>(Medicine.VERSIONS_PAGE_QUERY_NAME, EntityVersion.class);
+    public static final QueryDefinition<Integer> MEDICAL_TRAINING_VERSION_BY_ID =
+        new QueryDefinition<>(MedicalTraining.VERSION_BY_ID_QUERY_NAME, Integer.class);
+    public static final QueryDefinition<EntityVersion> MEDICAL_TRAINING_VERSIONS_PAGE =
+        new QueryDefinition<>(MedicalTraining.VERSIONS_PAGE_QUERY_NAME, EntityVersion.class);
+    public static final QueryDefinition<Integer> PRESCRIPTION_VERSION_BY_PHYSICIAN_PATIENT =
+        new QueryDefinition<>(Prescription.VERSION_BY_PHYSICIAN_PATIENT_QUERY_NAME, Integer.class);
+    public static final QueryDefinition<Long> PATIENT_KEY_COUNT =
+        new QueryDefinition<>(Patient.KEY_COUNT_QUERY_NAME, Long.class);
+    public static final QueryDefinition<ExportKey> PATIENT_EXPORT_KEYS =
+        new QueryDefinition<>(Patient.EXPORT_KEYS_QUERY_NAME, ExportKey.class);
+    public static final QueryDefinition<PatientView> PATIENT_VIEWS_RANGE =
+        new QueryDefinition<>(Patient.VIEW_RANGE_QUERY_NAME, PatientView.class);
+    public static final QueryDefinition<Long> PRESCRIPTION_KEY_COUNT =
+        new QueryDefinition<>(Prescription.KEY_COUNT_QUERY_NAME, Long.class);
+    public static final QueryDefinition<ExportKey> PRESCRIPTION_EXPORT_KEYS =
+        new QueryDefinition<>(Prescription.EXPORT_KEYS_QUERY_NAME, ExportKey.class);
+    public static final QueryDefinition<PrescriptionView> PRESCRIPTION_VIEWS_RANGE =
+        new QueryDefinition<>(Prescription.VIEW_RANGE_QUERY_NAME, PrescriptionView.class);
+    public static final QueryDefinition<SecurityRole> USER_ROLE =
+        new QueryDefinition<>(SecurityRole.USER_ROLE_QUERY_NAME, SecurityRole.class);
+    public static final QueryDefinition<SecurityUser> USER_BY_NAME =
+        new QueryDefinition<>(SecurityUser.USER_BY_NAME_QUERY_NAME, SecurityUser.class);
+    public static final QueryDefinition<SecurityUser> USER_WITH_ROLES_BY_NAME =
+        new QueryDefinition<>(SecurityUser.USER_WITH_ROLES_BY_NAME_QUERY_NAME, SecurityUser.class);
+    public static final QueryDefinition<SecurityUser> USER_BY_PHYSICIAN =
+        new QueryDefinition<>(SecurityUser.USER_BY_PHYSICIAN_QUERY_NAME, SecurityUser.class);
+
+    public static final List<QueryDefinition<?>> ALL_QUERIES = List.of(
+        PHYSICIANS_PAGE, PATIENTS_PAGE, MEDICINES_PAGE, MEDICAL_SCHOOLS_PAGE, MEDICAL_SCHOOL_BY_ID,
+        MEDICAL_SCHOOLS_BY_IDS, MEDICAL_SCHOOL_NAME_COUNT, MEDICAL_TRAININGS_PAGE, MEDICAL_TRAINING_BY_ID,
+        MEDICAL_CERTIFICATES_PAGE, MEDICAL_CERTIFICATE_BY_ID, PRESCRIPTIONS_PAGE,
+        PRESCRIPTION_BY_PHYSICIAN_PATIENT, PRESCRIPTION_KEYS_BY_PHYSICIAN, PRESCRIPTION_KEYS_BY_PATIENT,
+        MEDICAL_CERTIFICATE_IDS_BY_OWNER, MEDICAL_CERTIFICATE_IDS_BY_SCHOOL, MEDICAL_TRAINING_IDS_BY_SCHOOL,
+        PHYSICIAN_VIEWS_PAGE, PHYSICIAN_VIEW_BY_ID, PATIENT_VIEWS_PAGE, PATIENT_VIEW_BY_ID,
+        MEDICINE_VIEWS_PAGE, MEDICINE_VIEW_BY_ID, MEDICAL_TRAINING_VIEWS_PAGE, MEDICAL_TRAINING_VIEW_BY_ID,
+        PRESCRIPTION_VIEWS_PAGE, PRESCRIPTION_VIEW_BY_PHYSICIAN_PATIENT, PHYSICIAN_VERSION_BY_ID,
+        PHYSICIAN_VERSIONS_PAGE, PATIENT_VERSION_BY_ID, PATIENT_VERSIONS_PAGE, MEDICINE_VERSION_BY_ID,
+        MEDICINE_VERSIONS_PAGE, MEDICAL_TRAINING_VERSION_BY_ID, MEDICAL_TRAINING_VERSIONS_PAGE,
+        PRESCRIPTION_VERSION_BY_PHYSICIAN_PATIENT, PATIENT_KEY_COUNT, PATIENT_EXPORT_KEYS, PATIENT_VIEWS_RANGE,
+        PRESCRIPTION_KEY_COUNT, PRESCRIPTION_EXPORT_KEYS, PRESCRIPTION_VIEWS_RANGE, USER_ROLE, USER_BY_NAME,
+        USER_WITH_ROLES_BY_NAME, USER_BY_PHYSICIAN);
+
+    @PersistenceContext(name = PU_NAME)
+    protected EntityManager em;
+
+    @PostConstruct
+    protected void compileAll() {
+        // throws IllegalArgumentException (failing the deployment) for an unknown name or a wrong result type
+        ALL_QUERIES.forEach(definition -> definition.create(em));
+        LOG.info("{} named queries checked and compiled", ALL_QUERIES.size());
+    }
+}
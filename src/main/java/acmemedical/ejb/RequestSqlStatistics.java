@@ -0,0 +1,102 @@
+/********************************************************************************************************
+ * File:  RequestSqlStatistics.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb;
+
+/**
+ * What the persistence layer did for the current request:  JDBC statements executed, the time spent
+ * executing them, entities loaded and collections fetched.
+ * <p>
+ * The counts live in a thread local between {@link #begin()} and {@link #end(Counts)} (called by the
+ * REST filter around each request) and are fed by {@link SqlStatisticsSessionListener} and
+ * {@link SqlStatisticsIntegrator}.  Outside of a recorded request the hooks do nothing.  Work handed to
+ * another thread (e.g. a managed executor) is not counted.
+ * <p>
+ * Ended counts stop counting even if {@link #end(Counts)} ran on another thread (an asynchronous
+ * response) and could not unbind them here;  {@link #clear()} drops them before the thread's next request.
+ */
+public final class RequestSqlStatistics {
+
+    /**
+     * Counts of one request;  only ever updated by the thread that runs the request
+     */
+    public static final class Counts {
+        private volatile boolean ended;
+        private int statements;
+        private long jdbcNanos;
+        private int entityLoads;
+        private int collectionFetches;
+
+        public int getStatements() {
+            return statements;
+        }
+
+        public long getJdbcNanos() {
+            return jdbcNanos;
+        }
+
+        public int getEntityLoads() {
+            return entityLoads;
+        }
+
+        public int getCollectionFetches() {
+            return collectionFetches;
+        }
+    }
+
+    private static final ThreadLocal<Counts> CURRENT = new ThreadLocal<>();
+
+    private RequestSqlStatistics() {
+    }
+
+    public static Counts begin() {
+        Counts counts = new Counts();
+        CURRENT.set(counts);
+        return counts;
+    }
+
+    /**
+     * Stops recording {@code counts}, and unbinds them if this thread is the one recording them
+     */
+    public static void end(Counts counts) {
+        counts.ended = true;
+        if (CURRENT.get() == counts) {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Unbinds whatever this thread still records
+     */
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    private static Counts current() {
+        Counts counts = CURRENT.get();
+        return counts == null || counts.ended ? null : counts;
+    }
+
+    static void statementExecuted(long nanos) {
+        Counts counts = current();
+        if (counts != null) {
+            counts.statements++;
+            counts.jdbcNanos += nanos;
+        }
+    }
+
+    static void entityLoaded() {
+        Counts counts = current();
+        if (counts != null) {
+            counts.entityLoads++;
+        }
+    }
+
+    static void collectionFetched() {
+        Counts counts = current();
+        if (counts != null) {
+            counts.collectionFetches++;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/********************************************************************************************************
+ * File:  RowConsumer.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb;
+
+import java.io.IOException;
+
+/**
+ * Receives the rows of a streamed query (see {@link ACMEMedicalReadService}) one at a time, typically
+ * writing them to a response
+ *
+ * @param <T> row type
+ */
+public interface RowConsumer<T> {
+
+    void accept(T row) throws IOException;
+
+    /**
+     * Called after every {@code STREAM_BATCH_SIZE} rows, once they have been cleared from the persistence
+     * context (e.g. to flush what was written so far)
+     */
+    default void batchDone() throws IOException {
+    }
+}
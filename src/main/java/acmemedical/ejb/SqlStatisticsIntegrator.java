@@ -0,0 +1,35 @@
+/********************************************************************************************************
+ * File:  SqlStatisticsIntegrator.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Counts entity loads and collection fetches for {@link RequestSqlStatistics}.  Registered with Hibernate
+ * by META-INF/services/org.hibernate.integrator.spi.Integrator;  the listeners run after Hibernate's own.
+ */
+public class SqlStatisticsIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+        SessionFactoryServiceRegistry serviceRegistry) {
+        EventListenerRegistry listeners = serviceRegistry.getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_LOAD, (PostLoadEventListener) event -> RequestSqlStatistics.entityLoaded());
+        listeners.appendListeners(EventType.INIT_COLLECTION,
+            (InitializeCollectionEventListener) event -> RequestSqlStatistics.collectionFetched());
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        // nothing to release
+    }
+}
@@ -0,0 +1,38 @@
+/********************************************************************************************************
+ * File:  SqlStatisticsSessionListener.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Times every JDBC execution (a statement or a whole batch) of a session for {@link RequestSqlStatistics}.
+ * Hibernate creates one instance per session ('hibernate.session.events.auto' in persistence.xml) and a
+ * session is only used by one thread at a time.
+ */
+public class SqlStatisticsSessionListener extends BaseSessionEventListener {
+    private static final long serialVersionUID = 1L;
+
+    private long executeStart;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executeStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        RequestSqlStatistics.statementExecuted(System.nanoTime() - executeStart);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        executeStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        RequestSqlStatistics.statementExecuted(System.nanoTime() - executeStart);
+    }
+}
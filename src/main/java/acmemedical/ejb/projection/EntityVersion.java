@@ -0,0 +1,12 @@
+/********************************************************************************************************
+ * File:  EntityVersion.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb.projection;
+
+/**
+ * Id and {@code @Version} of one row:  all that is needed to compute the ETag of a page, selected by the
+ * {@code *.versionsPage} queries without loading what the page renders
+ */
+public record EntityVersion(int id, int version) {
+}
@@ -0,0 +1,21 @@
+/********************************************************************************************************
+ * File:  ExportKey.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb.projection;
+
+/**
+ * Primary key of an exported row, selected (in key order, nothing else) by the {@code *.exportKeys}
+ * queries to find where {@link acmemedical.ejb.PartitionedExport} splits a table:  {@code leading} is
+ * the id, or the first column of a composite key, {@code trailing} its second column (0 if there is none)
+ */
+public record ExportKey(int leading, int trailing) {
+
+    // ids start at 1:  sorts before every real key
+    public static final ExportKey BEFORE_FIRST = new ExportKey(0, 0);
+    public static final ExportKey LAST = new ExportKey(Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    public ExportKey(int leading) {
+        this(leading, 0);
+    }
+}
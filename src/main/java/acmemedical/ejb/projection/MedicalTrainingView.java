@@ -0,0 +1,24 @@
+/********************************************************************************************************
+ * File:  MedicalTrainingView.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * What the medical training endpoints render, selected directly by the {@code MedicalTraining.view*}
+ * queries.  The school and certificate are not rendered (no lazy association is touched).
+ */
+public record MedicalTrainingView(int id, int version, DurationAndStatus durationAndStatus) {
+
+    public record DurationAndStatus(LocalDateTime startDate, LocalDateTime endDate, byte active) {
+    }
+
+    /**
+     * Used by the constructor expressions, which select the embedded columns one by one
+     */
+    public MedicalTrainingView(int id, int version, LocalDateTime startDate, LocalDateTime endDate, byte active) {
+        this(id, version, new DurationAndStatus(startDate, endDate, active));
+    }
+}
@@ -0,0 +1,11 @@
+/********************************************************************************************************
+ * File:  MedicineView.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb.projection;
+
+/**
+ * What the medicine endpoints render, selected directly by the {@code Medicine.view*} queries
+ */
+public record MedicineView(int id, int version, String drugName, String manufacturerName, String dosageInformation) {
+}
@@ -0,0 +1,12 @@
+/********************************************************************************************************
+ * File:  PatientView.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb.projection;
+
+/**
+ * What the patient endpoints render, selected directly by the {@code Patient.view*} queries
+ */
+public record PatientView(int id, int version, String firstName, String lastName, int year, String address,
+    int height, int weight, byte smoker) {
+}
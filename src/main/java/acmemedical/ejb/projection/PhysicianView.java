@@ -0,0 +1,11 @@
+/********************************************************************************************************
+ * File:  PhysicianView.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb.projection;
+
+/**
+ * What the physician endpoints render, selected directly by the {@code Physician.view*} queries
+ */
+public record PhysicianView(int id, int version, String firstName, String lastName) {
+}
@@ -0,0 +1,21 @@
+/********************************************************************************************************
+ * File:  PrescriptionView.java Course Materials CST 8277
+ *
+ */
+package acmemedical.ejb.projection;
+
+import acmemedical.entity.PrescriptionPK;
+
+/**
+ * What the prescription endpoints render, selected directly by the {@code Prescription.view*} queries.
+ * The key is rendered as the nested {@code id} object, as it is for the entity.
+ */
+public record PrescriptionView(PrescriptionPK id, int version, int numberOfRefills, String prescriptionInformation) {
+
+    /**
+     * Used by the constructor expressions, which select the key columns one by one
+     */
+    public PrescriptionView(int physicianId, int patientId, int version, int numberOfRefills, String prescriptionInformation) {
+        this(new PrescriptionPK(physicianId, patientId), version, numberOfRefills, prescriptionInformation);
+    }
+}
@@ -15,6 +15,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
 import jakarta.persistence.NamedQuery;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
@@ -31,9 +33,27 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 @AttributeOverride(name = "id", column = @Column(name = "certificate_id"))
 @NamedQuery(name = "MedicalCertificate.findAll", query = "SELECT mc FROM MedicalCertificate mc")
 @NamedQuery(name = "MedicalCertificate.findById", query = "SELECT mc FROM MedicalCertificate mc WHERE mc.id = :param1")
+@NamedQuery(name = "MedicalCertificate.findPage", query = "SELECT mc FROM MedicalCertificate mc WHERE mc.id > :param1 ORDER BY mc.id")
+// what the medical certificate endpoints render
+@NamedEntityGraph(name = "MedicalCertificate.withOwner", attributeNodes = @NamedAttributeNode("owner"))
+// chunked set-based statements (see ACMEMedicalService.deletePhysicianById / deleteMedicalSchool)
+@NamedQuery(name = "MedicalCertificate.idsByOwner", query = "SELECT mc.id FROM MedicalCertificate mc WHERE mc.owner.id = :param1")
+@NamedQuery(name = "MedicalCertificate.idsBySchool", query = "SELECT mc.id FROM MedicalCertificate mc WHERE mc.medicalTraining.school.id = :param1")
+@NamedQuery(name = "MedicalCertificate.deleteByIds", query = "DELETE FROM MedicalCertificate mc WHERE mc.id IN :param1")
+@NamedQuery(name = "MedicalCertificate.clearTrainingByIds", query = "UPDATE MedicalCertificate mc SET mc.medicalTraining = NULL, mc.version = mc.version + 1 WHERE mc.id IN :param1")
+// single-statement PUT:  :param2 (the If-Match version) null means unconditional;  a null owner (:param4)
+// or training (:param5) keeps the current one
+@NamedQuery(name = "MedicalCertificate.update", query = "UPDATE MedicalCertificate mc SET mc.signed = :param3, mc.owner = COALESCE(:param4, mc.owner), mc.medicalTraining = COALESCE(:param5, mc.medicalTraining), mc.version = mc.version + 1 WHERE mc.id = :param1 AND (:param2 IS NULL OR mc.version = :param2)")
 public class MedicalCertificate extends PojoBase implements Serializable {
 	public static final String ALL_MEDICAL_CERTIFICATES_QUERY_NAME = "MedicalCertificate.findAll";
 	public static final String ID_CARD_QUERY_NAME = "MedicalCertificate.findById";
+	public static final String MEDICAL_CERTIFICATES_PAGE_QUERY_NAME = "MedicalCertificate.findPage";
+	public static final String WITH_OWNER_GRAPH = "MedicalCertificate.withOwner";
+	public static final String IDS_BY_OWNER_QUERY_NAME = "MedicalCertificate.idsByOwner";
+	public static final String IDS_BY_SCHOOL_QUERY_NAME = "MedicalCertificate.idsBySchool";
+	public static final String DELETE_BY_IDS_QUERY_NAME = "MedicalCertificate.deleteByIds";
+	public static final String CLEAR_TRAINING_BY_IDS_QUERY_NAME = "MedicalCertificate.clearTrainingByIds";
+	public static final String UPDATE_QUERY_NAME = "MedicalCertificate.update";
 	private static final long serialVersionUID = 1L;
 	
 	@OneToOne(fetch = FetchType.LAZY)
@@ -15,6 +15,7 @@ import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 
 import jakarta.persistence.Basic;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.DiscriminatorColumn;
 import jakarta.persistence.DiscriminatorType;
@@ -23,21 +24,43 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.Inheritance;
 import jakarta.persistence.InheritanceType;
 import jakarta.persistence.AttributeOverride;
-import jakarta.persistence.Column;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
 import jakarta.persistence.NamedQuery;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.QueryHint;
 import jakarta.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.QueryHints;
+
 /**
  * The persistent class for the medical_school database table.
  */
 @Entity
 @Table(name = "medical_school")
+// Read far more often than written:  kept in the second-level cache (see META-INF/ehcache.xml).  The
+// region belongs to the root of the hierarchy, PublicSchool and PrivateSchool instances are cached in it too
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "is_public", discriminatorType = DiscriminatorType.INTEGER)
 @NamedQuery(name = "MedicalSchool.findAll", query = "SELECT ms FROM MedicalSchool ms")
-@NamedQuery(name = "MedicalSchool.findById", query = "SELECT ms FROM MedicalSchool ms WHERE ms.id = :param1")
-@NamedQuery(name = "MedicalSchool.isDuplicate", query = "SELECT COUNT(ms) FROM MedicalSchool ms WHERE ms.name = :param1")
+@NamedQuery(name = "MedicalSchool.findById", query = "SELECT ms FROM MedicalSchool ms WHERE ms.id = :param1",
+    hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true"))
+@NamedQuery(name = "MedicalSchool.isDuplicate", query = "SELECT COUNT(ms) FROM MedicalSchool ms WHERE ms.name = :param1",
+    hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true"))
+@NamedQuery(name = "MedicalSchool.findPage", query = "SELECT ms FROM MedicalSchool ms WHERE ms.id > :param1 ORDER BY ms.id",
+    hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true"))
+// the trainings of a page of schools (or of one school), fetched with the "MedicalSchool.withTrainings" graph
+@NamedQuery(name = "MedicalSchool.findByIds", query = "SELECT DISTINCT ms FROM MedicalSchool ms WHERE ms.id IN :param1 ORDER BY ms.id",
+    hints = @QueryHint(name = QueryHints.PASS_DISTINCT_THROUGH, value = "false"))
+// what the medical school endpoints render
+@NamedEntityGraph(name = "MedicalSchool.withTrainings", attributeNodes = @NamedAttributeNode("medicalTrainings"))
+@NamedQuery(name = "MedicalSchool.deleteById", query = "DELETE FROM MedicalSchool ms WHERE ms.id = :param1")
+// single-statement PUT:  :param2 (the If-Match version) null means unconditional
+@NamedQuery(name = "MedicalSchool.update", query = "UPDATE MedicalSchool ms SET ms.name = :param3, ms.version = ms.version + 1 WHERE ms.id = :param1 AND (:param2 IS NULL OR ms.version = :param2)")
 @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
 @JsonSubTypes({
     @JsonSubTypes.Type(value = PublicSchool.class, name = "PublicSchool"),
@@ -48,6 +71,11 @@ public abstract class MedicalSchool extends PojoBase implements Serializable {
 	public static final String ALL_MEDICAL_SCHOOLS_QUERY_NAME = "MedicalSchool.findAll";
 	public static final String SPECIFIC_MEDICAL_SCHOOL_QUERY_NAME = "MedicalSchool.findById";
 	public static final String IS_DUPLICATE_QUERY_NAME = "MedicalSchool.isDuplicate";
+	public static final String MEDICAL_SCHOOLS_PAGE_QUERY_NAME = "MedicalSchool.findPage";
+	public static final String DELETE_BY_ID_QUERY_NAME = "MedicalSchool.deleteById";
+	public static final String FIND_BY_IDS_QUERY_NAME = "MedicalSchool.findByIds";
+	public static final String UPDATE_QUERY_NAME = "MedicalSchool.update";
+	public static final String WITH_TRAININGS_GRAPH = "MedicalSchool.withTrainings";
 	private static final long serialVersionUID = 1L;
 	
 	@Basic(optional = false)
@@ -34,9 +34,29 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 @AttributeOverride(name = "id", column = @Column(name = "training_id"))
 @NamedQuery(name = "MedicalTraining.findAll", query = "SELECT mt FROM MedicalTraining mt")
 @NamedQuery(name = "MedicalTraining.findById", query = "SELECT mt FROM MedicalTraining mt WHERE mt.id = :param1")
+@NamedQuery(name = "MedicalTraining.findPage", query = "SELECT mt FROM MedicalTraining mt WHERE mt.id > :param1 ORDER BY mt.id")
+// chunked set-based delete (see ACMEMedicalService.deleteMedicalSchool)
+@NamedQuery(name = "MedicalTraining.idsBySchool", query = "SELECT mt.id FROM MedicalTraining mt WHERE mt.school.id = :param1")
+@NamedQuery(name = "MedicalTraining.deleteByIds", query = "DELETE FROM MedicalTraining mt WHERE mt.id IN :param1")
+// single-statement PUT:  :param2 (the If-Match version) null means unconditional
+@NamedQuery(name = "MedicalTraining.update", query = "UPDATE MedicalTraining mt SET mt.durationAndStatus.startDate = :param3, mt.durationAndStatus.endDate = :param4, mt.durationAndStatus.active = :param5, mt.version = mt.version + 1 WHERE mt.id = :param1 AND (:param2 IS NULL OR mt.version = :param2)")
+// read-only projections for the GET endpoints (see ACMEMedicalReadService)
+@NamedQuery(name = "MedicalTraining.viewPage", query = "SELECT NEW acmemedical.ejb.projection.MedicalTrainingView(mt.id, mt.version, mt.durationAndStatus.startDate, mt.durationAndStatus.endDate, mt.durationAndStatus.active) FROM MedicalTraining mt WHERE mt.id > :param1 ORDER BY mt.id")
+@NamedQuery(name = "MedicalTraining.viewById", query = "SELECT NEW acmemedical.ejb.projection.MedicalTrainingView(mt.id, mt.version, mt.durationAndStatus.startDate, mt.durationAndStatus.endDate, mt.durationAndStatus.active) FROM MedicalTraining mt WHERE mt.id = :param1")
+// ETags (see EntityTags):  just the version(s), to answer If-None-Match without loading the representation
+@NamedQuery(name = "MedicalTraining.versionById", query = "SELECT mt.version FROM MedicalTraining mt WHERE mt.id = :param1")
+@NamedQuery(name = "MedicalTraining.versionsPage", query = "SELECT NEW acmemedical.ejb.projection.EntityVersion(mt.id, mt.version) FROM MedicalTraining mt WHERE mt.id > :param1 ORDER BY mt.id")
 public class MedicalTraining extends PojoBase implements Serializable {
 	public static final String ALL_MEDICAL_TRAININGS_QUERY_NAME = "MedicalTraining.findAll";
 	public static final String FIND_BY_ID = "MedicalTraining.findById";
+	public static final String MEDICAL_TRAININGS_PAGE_QUERY_NAME = "MedicalTraining.findPage";
+	public static final String IDS_BY_SCHOOL_QUERY_NAME = "MedicalTraining.idsBySchool";
+	public static final String DELETE_BY_IDS_QUERY_NAME = "MedicalTraining.deleteByIds";
+	public static final String UPDATE_QUERY_NAME = "MedicalTraining.update";
+	public static final String VIEW_PAGE_QUERY_NAME = "MedicalTraining.viewPage";
+	public static final String VIEW_BY_ID_QUERY_NAME = "MedicalTraining.viewById";
+	public static final String VERSION_BY_ID_QUERY_NAME = "MedicalTraining.versionById";
+	public static final String VERSIONS_PAGE_QUERY_NAME = "MedicalTraining.versionsPage";
 	private static final long serialVersionUID = 1L;
 	
 	@ManyToOne(fetch = FetchType.LAZY)
@@ -13,6 +13,7 @@ import java.util.Set;
 
 import jakarta.persistence.AttributeOverride;
 import jakarta.persistence.Basic;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -20,9 +21,16 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.NamedQuery;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.QueryHint;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.QueryHints;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 @SuppressWarnings("unused")
 
 /**
@@ -34,11 +42,27 @@ import jakarta.persistence.Transient;
 @Entity
 //Hint - @Table defines a specific table on DB which is mapped to this entity.
 @Table(name = "medicine") 
+//Read far more often than written:  kept in the second-level cache (see META-INF/ehcache.xml)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 //Hint - @NamedQuery attached to this class which uses JPQL/HQL.  SQL cannot be used with NamedQuery.
 //Hint - @NamedQuery uses the name which is defined in @Entity for JPQL, if no name is defined use class name.
 //Hint - @NamedNativeQuery can optionally be used if there is a need for SQL query.
 @NamedQuery(name = "Medicine.findAll", query = "SELECT m FROM Medicine m")
-@NamedQuery(name = "Medicine.findById", query = "SELECT m FROM Medicine m WHERE m.id = :param1")
+@NamedQuery(name = "Medicine.findById", query = "SELECT m FROM Medicine m WHERE m.id = :param1",
+    hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true"))
+@NamedQuery(name = "Medicine.findPage", query = "SELECT m FROM Medicine m WHERE m.id > :param1 ORDER BY m.id",
+    hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true"))
+// read-only projections for the GET endpoints (see ACMEMedicalReadService), kept in the query cache like the above
+@NamedQuery(name = "Medicine.viewPage", query = "SELECT NEW acmemedical.ejb.projection.MedicineView(m.id, m.version, m.drugName, m.manufacturerName, m.dosageInformation) FROM Medicine m WHERE m.id > :param1 ORDER BY m.id",
+    hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true"))
+@NamedQuery(name = "Medicine.viewById", query = "SELECT NEW acmemedical.ejb.projection.MedicineView(m.id, m.version, m.drugName, m.manufacturerName, m.dosageInformation) FROM Medicine m WHERE m.id = :param1",
+    hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true"))
+// ETags (see EntityTags):  just the version(s), to answer If-None-Match without loading the representation
+@NamedQuery(name = "Medicine.versionById", query = "SELECT m.version FROM Medicine m WHERE m.id = :param1",
+    hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true"))
+@NamedQuery(name = "Medicine.versionsPage", query = "SELECT NEW acmemedical.ejb.projection.EntityVersion(m.id, m.version) FROM Medicine m WHERE m.id > :param1 ORDER BY m.id",
+    hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true"))
 //Hint - @AttributeOverride can override column details.  This entity uses medicine_id as its primary key name, it needs to override the name in the mapped super class.
 @AttributeOverride(name = "id", column = @Column(name = "medicine_id"))
 //Hint - PojoBase is inherited by any entity with integer as their primary key.
@@ -46,6 +70,11 @@ import jakarta.persistence.Transient;
 public class Medicine extends PojoBase implements Serializable {
 	public static final String ALL_MEDICINES_QUERY_NAME = "Medicine.findAll";
 	public static final String SPECIFIC_MEDICINE_QUERY_NAME = "Medicine.findById";
+	public static final String MEDICINES_PAGE_QUERY_NAME = "Medicine.findPage";
+	public static final String VIEW_PAGE_QUERY_NAME = "Medicine.viewPage";
+	public static final String VIEW_BY_ID_QUERY_NAME = "Medicine.viewById";
+	public static final String VERSION_BY_ID_QUERY_NAME = "Medicine.versionById";
+	public static final String VERSIONS_PAGE_QUERY_NAME = "Medicine.versionsPage";
 	private static final long serialVersionUID = 1L;
 
 	// Hint - @Basic(optional = false) is used when the object cannot be null.
@@ -80,6 +109,9 @@ public class Medicine extends PojoBase implements Serializable {
 	@OneToMany(cascade=CascadeType.MERGE, fetch = FetchType.LAZY, mappedBy = "medicine")
 	// Hint - java.util.Set is used as a collection, however List could have been used as well.
 	// Hint - java.util.Set will be unique and also possibly can provide better get performance with HashCode.
+	// not rendered:  it would cost a query per medicine (and the prescriptions of a physician or
+	// patient are not rendered either)
+	@JsonIgnore
 	private Set<Prescription> prescriptions = new HashSet<>();
 
 	public Medicine() {
@@ -14,6 +14,7 @@ import jakarta.persistence.Basic;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
+import jakarta.persistence.NamedQuery;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 
@@ -28,9 +29,31 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 @Table(name = "patient")
 @NamedQuery(name = "Patient.findAll", query = "SELECT p FROM Patient p")
 @NamedQuery(name = "Patient.findById", query = "SELECT p FROM Patient p WHERE p.id = :param1")
+@NamedQuery(name = "Patient.findPage", query = "SELECT p FROM Patient p WHERE p.id > :param1 ORDER BY p.id")
+@NamedQuery(name = "Patient.deleteById", query = "DELETE FROM Patient p WHERE p.id = :param1")
+// read-only projections for the GET endpoints (see ACMEMedicalReadService)
+@NamedQuery(name = "Patient.viewPage", query = "SELECT NEW acmemedical.ejb.projection.PatientView(p.id, p.version, p.firstName, p.lastName, p.year, p.address, p.height, p.weight, p.smoker) FROM Patient p WHERE p.id > :param1 ORDER BY p.id")
+@NamedQuery(name = "Patient.viewById", query = "SELECT NEW acmemedical.ejb.projection.PatientView(p.id, p.version, p.firstName, p.lastName, p.year, p.address, p.height, p.weight, p.smoker) FROM Patient p WHERE p.id = :param1")
+// ETags (see EntityTags):  just the version(s), to answer If-None-Match without loading the representation
+@NamedQuery(name = "Patient.versionById", query = "SELECT p.version FROM Patient p WHERE p.id = :param1")
+// partitioned export (see PartitionedExport):  the ids that split the table into partitions of equal row
+// counts, then one id range at a time
+@NamedQuery(name = "Patient.keyCount", query = "SELECT COUNT(p) FROM Patient p")
+@NamedQuery(name = "Patient.exportKeys", query = "SELECT NEW acmemedical.ejb.projection.ExportKey(p.id) FROM Patient p ORDER BY p.id")
+@NamedQuery(name = "Patient.viewRange", query = "SELECT NEW acmemedical.ejb.projection.PatientView(p.id, p.version, p.firstName, p.lastName, p.year, p.address, p.height, p.weight, p.smoker) FROM Patient p WHERE p.id > :param1 AND p.id <= :param2 ORDER BY p.id")
+@NamedQuery(name = "Patient.versionsPage", query = "SELECT NEW acmemedical.ejb.projection.EntityVersion(p.id, p.version) FROM Patient p WHERE p.id > :param1 ORDER BY p.id")
 public class Patient extends PojoBase implements Serializable {
 	public static final String ALL_PATIENTS_QUERY_NAME = "Patient.findAll";
 	public static final String SPECIFIC_PATIENT_QUERY_NAME = "Patient.findById";
+	public static final String PATIENTS_PAGE_QUERY_NAME = "Patient.findPage";
+	public static final String DELETE_BY_ID_QUERY_NAME = "Patient.deleteById";
+	public static final String VIEW_PAGE_QUERY_NAME = "Patient.viewPage";
+	public static final String VIEW_BY_ID_QUERY_NAME = "Patient.viewById";
+	public static final String VERSION_BY_ID_QUERY_NAME = "Patient.versionById";
+	public static final String VERSIONS_PAGE_QUERY_NAME = "Patient.versionsPage";
+	public static final String KEY_COUNT_QUERY_NAME = "Patient.keyCount";
+	public static final String EXPORT_KEYS_QUERY_NAME = "Patient.exportKeys";
+	public static final String VIEW_RANGE_QUERY_NAME = "Patient.viewRange";
 	private static final long serialVersionUID = 1L;
 	
 	@Basic(optional = false)
@@ -28,8 +28,25 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 @Entity
 @Table(name = "physician")
 @NamedQuery(name = "Physician.findAll", query = "SELECT p FROM Physician p")
+@NamedQuery(name = "Physician.findPage", query = "SELECT p FROM Physician p WHERE p.id > :param1 ORDER BY p.id")
+@NamedQuery(name = "Physician.deleteById", query = "DELETE FROM Physician p WHERE p.id = :param1")
+// single-statement PUT:  :param2 (the If-Match version) null means unconditional
+@NamedQuery(name = "Physician.update", query = "UPDATE Physician p SET p.firstName = :param3, p.lastName = :param4, p.version = p.version + 1 WHERE p.id = :param1 AND (:param2 IS NULL OR p.version = :param2)")
+// read-only projections for the GET endpoints (see ACMEMedicalReadService)
+@NamedQuery(name = "Physician.viewPage", query = "SELECT NEW acmemedical.ejb.projection.PhysicianView(p.id, p.version, p.firstName, p.lastName) FROM Physician p WHERE p.id > :param1 ORDER BY p.id")
+@NamedQuery(name = "Physician.viewById", query = "SELECT NEW acmemedical.ejb.projection.PhysicianView(p.id, p.version, p.firstName, p.lastName) FROM Physician p WHERE p.id = :param1")
+// ETags (see EntityTags):  just the version(s), to answer If-None-Match without loading the representation
+@NamedQuery(name = "Physician.versionById", query = "SELECT p.version FROM Physician p WHERE p.id = :param1")
+@NamedQuery(name = "Physician.versionsPage", query = "SELECT NEW acmemedical.ejb.projection.EntityVersion(p.id, p.version) FROM Physician p WHERE p.id > :param1 ORDER BY p.id")
 public class Physician extends PojoBase implements Serializable {
 	public static final String ALL_PHYSICIANS_QUERY_NAME = "Physician.findAll";
+	public static final String PHYSICIANS_PAGE_QUERY_NAME = "Physician.findPage";
+	public static final String DELETE_BY_ID_QUERY_NAME = "Physician.deleteById";
+	public static final String UPDATE_QUERY_NAME = "Physician.update";
+	public static final String VIEW_PAGE_QUERY_NAME = "Physician.viewPage";
+	public static final String VIEW_BY_ID_QUERY_NAME = "Physician.viewById";
+	public static final String VERSION_BY_ID_QUERY_NAME = "Physician.versionById";
+	public static final String VERSIONS_PAGE_QUERY_NAME = "Physician.versionsPage";
 	private static final long serialVersionUID = 1L;
 
     public Physician() {
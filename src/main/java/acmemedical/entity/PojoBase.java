@@ -7,6 +7,10 @@
  */
 package acmemedical.entity;
 
+import static acmemedical.utility.MyConstants.ID_BLOCK_SIZE;
+import static acmemedical.utility.MyConstants.ID_GENERATOR_NAME;
+import static acmemedical.utility.MyConstants.ID_GENERATOR_TABLE;
+
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.Objects;
@@ -16,12 +20,15 @@ import jakarta.persistence.AccessType;
 import jakarta.persistence.Column;
 import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.MappedSuperclass;
 import jakarta.persistence.Transient;
 import jakarta.persistence.Version;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.TableGenerator;
+
 /**
  * Abstract class that is base of (class) hierarchy for all @Entity classes
  */
@@ -33,8 +40,22 @@ import jakarta.persistence.Version;
 public abstract class PojoBase implements Serializable {
 	private static final long serialVersionUID = 1L;
 
+	/*
+	 * Not IDENTITY:  with an AUTO_INCREMENT column Hibernate has to run every INSERT right away to read
+	 * the new key, which rules out JDBC batching.  Instead each entity table has its own row in the
+	 * 'id_generator' table (segment = table name) and a whole block of ids is reserved with one UPDATE.
+	 */
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(generator = ID_GENERATOR_NAME)
+	@GenericGenerator(name = ID_GENERATOR_NAME, strategy = "org.hibernate.id.enhanced.TableGenerator",
+		parameters = {
+			@Parameter(name = TableGenerator.TABLE_PARAM, value = ID_GENERATOR_TABLE),
+			@Parameter(name = TableGenerator.SEGMENT_COLUMN_PARAM, value = "segment_name"),
+			@Parameter(name = TableGenerator.VALUE_COLUMN_PARAM, value = "next_val"),
+			@Parameter(name = TableGenerator.CONFIG_PREFER_SEGMENT_PER_ENTITY, value = "true"),
+			@Parameter(name = TableGenerator.INCREMENT_PARAM, value = ID_BLOCK_SIZE),
+			@Parameter(name = TableGenerator.OPT_PARAM, value = "pooled-lo")
+		})
 	protected int id;
 
 	@Version
@@ -34,9 +34,42 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 @Access(AccessType.FIELD)
 @NamedQuery(name = "Prescription.findAll", query = "SELECT p FROM Prescription p")
 @NamedQuery(name = "Prescription.findByPhysicianAndPatient", query = "SELECT p FROM Prescription p WHERE p.physician.id = :param1 AND p.patient.id = :param2")
+// keyset over the composite key:  (physicianId, patientId) > (:param1, :param2)
+@NamedQuery(name = "Prescription.findPage", query = "SELECT p FROM Prescription p WHERE p.id.physicianId > :param1 OR (p.id.physicianId = :param1 AND p.id.patientId > :param2) ORDER BY p.id.physicianId, p.id.patientId")
+// set-based medicine change for many prescriptions;  (physician_id, patient_id) IN ((?, ?), ...) on MySQL
+@NamedQuery(name = "Prescription.setMedicine", query = "UPDATE Prescription p SET p.medicine = :param1, p.version = p.version + 1 WHERE p.id IN :param2")
+// chunked set-based deletes (see ACMEMedicalService.deletePhysicianById / deletePatient)
+@NamedQuery(name = "Prescription.keysByPhysician", query = "SELECT p.id FROM Prescription p WHERE p.id.physicianId = :param1")
+@NamedQuery(name = "Prescription.keysByPatient", query = "SELECT p.id FROM Prescription p WHERE p.id.patientId = :param1")
+@NamedQuery(name = "Prescription.deleteByKeys", query = "DELETE FROM Prescription p WHERE p.id IN :param1")
+// read-only projections for the GET endpoints (see ACMEMedicalReadService)
+@NamedQuery(name = "Prescription.viewPage", query = "SELECT NEW acmemedical.ejb.projection.PrescriptionView(p.id.physicianId, p.id.patientId, p.version, p.numberOfRefills, p.prescriptionInformation) FROM Prescription p WHERE p.id.physicianId > :param1 OR (p.id.physicianId = :param1 AND p.id.patientId > :param2) ORDER BY p.id.physicianId, p.id.patientId")
+@NamedQuery(name = "Prescription.viewByPhysicianAndPatient", query = "SELECT NEW acmemedical.ejb.projection.PrescriptionView(p.id.physicianId, p.id.patientId, p.version, p.numberOfRefills, p.prescriptionInformation) FROM Prescription p WHERE p.id.physicianId = :param1 AND p.id.patientId = :param2")
+// partitioned export (see PartitionedExport):  the composite keys that split the table into partitions of
+// equal row counts, then one range of composite keys at a time:  (:param1, :param2) < key <= (:param3, :param4)
+@NamedQuery(name = "Prescription.keyCount", query = "SELECT COUNT(p) FROM Prescription p")
+@NamedQuery(name = "Prescription.exportKeys", query = "SELECT NEW acmemedical.ejb.projection.ExportKey(p.id.physicianId, p.id.patientId) FROM Prescription p ORDER BY p.id.physicianId, p.id.patientId")
+@NamedQuery(name = "Prescription.viewRange", query = "SELECT NEW acmemedical.ejb.projection.PrescriptionView(p.id.physicianId, p.id.patientId, p.version, p.numberOfRefills, p.prescriptionInformation) FROM Prescription p WHERE (p.id.physicianId > :param1 OR (p.id.physicianId = :param1 AND p.id.patientId > :param2)) AND (p.id.physicianId < :param3 OR (p.id.physicianId = :param3 AND p.id.patientId <= :param4)) ORDER BY p.id.physicianId, p.id.patientId")
+// ETag (see EntityTags):  just the version, to answer If-None-Match without loading the representation
+@NamedQuery(name = "Prescription.versionByPhysicianAndPatient", query = "SELECT p.version FROM Prescription p WHERE p.id.physicianId = :param1 AND p.id.patientId = :param2")
+// single-statement PUT:  :param3 (the If-Match version) null means unconditional;  a null medicine (:param6)
+// keeps the current one
+@NamedQuery(name = "Prescription.update", query = "UPDATE Prescription p SET p.numberOfRefills = :param4, p.prescriptionInformation = :param5, p.medicine = COALESCE(:param6, p.medicine), p.version = p.version + 1 WHERE p.id.physicianId = :param1 AND p.id.patientId = :param2 AND (:param3 IS NULL OR p.version = :param3)")
 public class Prescription extends PojoBaseCompositeKey<PrescriptionPK> implements Serializable {
 	public static final String ALL_PRESCRIPTIONS_QUERY_NAME = "Prescription.findAll";
 	public static final String FIND_BY_PHYSICIAN_PATIENT_QUERY_NAME = "Prescription.findByPhysicianAndPatient";
+	public static final String PRESCRIPTIONS_PAGE_QUERY_NAME = "Prescription.findPage";
+	public static final String SET_MEDICINE_QUERY_NAME = "Prescription.setMedicine";
+	public static final String KEYS_BY_PHYSICIAN_QUERY_NAME = "Prescription.keysByPhysician";
+	public static final String KEYS_BY_PATIENT_QUERY_NAME = "Prescription.keysByPatient";
+	public static final String DELETE_BY_KEYS_QUERY_NAME = "Prescription.deleteByKeys";
+	public static final String VIEW_PAGE_QUERY_NAME = "Prescription.viewPage";
+	public static final String VIEW_BY_PHYSICIAN_PATIENT_QUERY_NAME = "Prescription.viewByPhysicianAndPatient";
+	public static final String VERSION_BY_PHYSICIAN_PATIENT_QUERY_NAME = "Prescription.versionByPhysicianAndPatient";
+	public static final String KEY_COUNT_QUERY_NAME = "Prescription.keyCount";
+	public static final String EXPORT_KEYS_QUERY_NAME = "Prescription.exportKeys";
+	public static final String VIEW_RANGE_QUERY_NAME = "Prescription.viewRange";
+	public static final String UPDATE_QUERY_NAME = "Prescription.update";
 	private static final long serialVersionUID = 1L;
 
 	// Hint - What annotation is used for a composite primary key type?
@@ -15,23 +15,37 @@ import java.util.Set;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import jakarta.persistence.Basic;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.Id;
 import jakarta.persistence.ManyToMany;
 import jakarta.persistence.NamedQuery;
+import jakarta.persistence.QueryHint;
 import jakarta.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.QueryHints;
+
+import acmemedical.security.SecurityUserListener;
+
 @SuppressWarnings("unused")
 
 /**
  * Role class used for (JSR-375) Jakarta EE Security authorization/authentication
  */
 @Entity
+@EntityListeners(SecurityUserListener.class)
 @Table(name = "security_role")
-@NamedQuery(name = "SecurityRole.USER_ROLE", query = "SELECT r FROM SecurityRole r WHERE r.roleName = 'USER_ROLE'")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NamedQuery(name = "SecurityRole.USER_ROLE", query = "SELECT r FROM SecurityRole r WHERE r.roleName = 'USER_ROLE'",
+    hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true"))
 public class SecurityRole implements Serializable {
+    public static final String USER_ROLE_QUERY_NAME = "SecurityRole.USER_ROLE";
     /** Explicit set serialVersionUID */
     private static final long serialVersionUID = 1L;
 
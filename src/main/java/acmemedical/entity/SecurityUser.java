@@ -19,6 +19,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.Basic;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
@@ -29,6 +30,8 @@ import jakarta.persistence.NamedQuery;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 
+import acmemedical.security.SecurityUserListener;
+
 @SuppressWarnings("unused")
 
 /**
@@ -36,10 +39,15 @@ import jakarta.persistence.Table;
  */
 
 @Entity
+@EntityListeners(SecurityUserListener.class)
 @Table(name = "security_user")
-@NamedQuery(name = "SecurityUser.userByName", query = "SELECT u FROM SecurityUser u WHERE u.username = :param1")
+@NamedQuery(name = "SecurityUser.userByName", query = "SELECT u FROM SecurityUser u LEFT JOIN FETCH u.physician WHERE u.username = :param1")
+@NamedQuery(name = "SecurityUser.userWithRolesByName", query = "SELECT DISTINCT u FROM SecurityUser u LEFT JOIN FETCH u.physician LEFT JOIN FETCH u.roles WHERE u.username = :param1")
 @NamedQuery(name = "SecurityUser.findByPhysician", query = "SELECT u FROM SecurityUser u WHERE u.physician = :param1")
 public class SecurityUser implements Serializable, Principal {
+    public static final String USER_BY_NAME_QUERY_NAME = "SecurityUser.userByName";
+    public static final String USER_WITH_ROLES_BY_NAME_QUERY_NAME = "SecurityUser.userWithRolesByName";
+    public static final String USER_BY_PHYSICIAN_QUERY_NAME = "SecurityUser.findByPhysician";
     /** Explicit set serialVersionUID */
     private static final long serialVersionUID = 1L;
 
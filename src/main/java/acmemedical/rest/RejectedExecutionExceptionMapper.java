@@ -0,0 +1,35 @@
+/********************************************************************************************************
+ * File:  RejectedExecutionExceptionMapper.java Course Materials CST 8277
+ *
+ */
+package acmemedical.rest;
+
+import static acmemedical.utility.MyConstants.PASSWORD_HASHING_RETRY_AFTER_SECONDS;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+
+import acmemedical.rest.resource.HttpErrorResponse;
+
+/**
+ * A saturated worker pool (e.g. {@link acmemedical.security.PasswordHashingService}) rejects new work;
+ * tell the client to back off and retry instead of returning a generic 500.
+ */
+@Provider
+public class RejectedExecutionExceptionMapper implements ExceptionMapper<RejectedExecutionException> {
+
+    @Override
+    public Response toResponse(RejectedExecutionException exception) {
+        HttpErrorResponse entity = new HttpErrorResponse(Status.SERVICE_UNAVAILABLE.getStatusCode(),
+            Status.SERVICE_UNAVAILABLE.getReasonPhrase());
+        return Response.status(Status.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, PASSWORD_HASHING_RETRY_AFTER_SECONDS)
+            .entity(entity)
+            .build();
+    }
+}
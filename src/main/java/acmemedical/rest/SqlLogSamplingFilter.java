@@ -0,0 +1,48 @@
+/********************************************************************************************************
+ * File:  SqlLogSamplingFilter.java Course Materials CST 8277
+ *
+ */
+package acmemedical.rest;
+
+import static acmemedical.utility.MyConstants.SQL_LOG_CONTEXT_KEY;
+import static acmemedical.utility.MyConstants.SQL_LOG_SAMPLE_RATE;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.PreMatching;
+import jakarta.ws.rs.ext.Provider;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+
+/**
+ * Picks one request in {@code SQL_LOG_SAMPLE_RATE} whose SQL is logged:  the 'org.hibernate.SQL' logger in
+ * log4j2.xml only passes events with {@code SQL_LOG_CONTEXT_KEY=true} in the ThreadContext.  Nothing is
+ * sampled while that logger is not at DEBUG.
+ */
+@Provider
+@PreMatching
+public class SqlLogSamplingFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final Logger SQL_LOG = LogManager.getLogger("org.hibernate.SQL");
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (SQL_LOG.isDebugEnabled() && ThreadLocalRandom.current().nextInt(SQL_LOG_SAMPLE_RATE) == 0) {
+            ThreadContext.put(SQL_LOG_CONTEXT_KEY, Boolean.TRUE.toString());
+        } else {
+            // a pooled thread may still carry it from an asynchronous request
+            ThreadContext.remove(SQL_LOG_CONTEXT_KEY);
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        ThreadContext.remove(SQL_LOG_CONTEXT_KEY);
+    }
+}
@@ -0,0 +1,104 @@
+/********************************************************************************************************
+ * File:  SqlStatisticsFilter.java Course Materials CST 8277
+ *
+ */
+package acmemedical.rest;
+
+import static acmemedical.utility.MyConstants.DB_TIME_HEADER;
+import static acmemedical.utility.MyConstants.SQL_COUNT_HEADER;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Locale;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+
+import acmemedical.ejb.EndpointSqlStatistics;
+import acmemedical.ejb.RequestSqlStatistics;
+
+/**
+ * Records the persistence work of every request that reached a resource method, per endpoint
+ * ({@link EndpointSqlStatistics}), and optionally reports it on the response as {@code X-SQL-Count}
+ * (JDBC statements) and {@code X-DB-Time} (milliseconds spent executing them).
+ * <p>
+ * Recording starts in the request filter and ends once the response entity is written (or in the
+ * response filter if there is none), so the statements of a streamed body count for its endpoint;  the
+ * headers go out before the body and only count the work done until then.  Only work done on the
+ * request thread is seen:  for an endpoint that completes an AsyncResponse on another thread the counts
+ * stop when the resource method returns.  Every request first drops anything its (pooled) thread still
+ * records.
+ */
+@Provider
+public class SqlStatisticsFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+    private static final String RECORDING_PROPERTY = SqlStatisticsFilter.class.getName() + ".recording";
+
+    /**
+     * The counts of one request and the endpoint they are recorded for (null if no resource method matched)
+     */
+    private record Recording(String endpoint, RequestSqlStatistics.Counts counts) {
+    }
+
+    @Inject
+    protected EndpointSqlStatistics endpointStatistics;
+
+    @Context
+    protected ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        // the thread may still carry the counts of an asynchronous request it started
+        RequestSqlStatistics.clear();
+        if (endpointStatistics.isEnabled()) {
+            Method method = resourceInfo.getResourceMethod();
+            String endpoint = method == null ? null
+                : requestContext.getMethod() + " " + resourceInfo.getResourceClass().getSimpleName() + "." + method.getName();
+            requestContext.setProperty(RECORDING_PROPERTY, new Recording(endpoint, RequestSqlStatistics.begin()));
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        if (!(requestContext.getProperty(RECORDING_PROPERTY) instanceof Recording recording)) {
+            return;
+        }
+        if (endpointStatistics.isHeaders()) {
+            responseContext.getHeaders().putSingle(SQL_COUNT_HEADER, recording.counts().getStatements());
+            responseContext.getHeaders().putSingle(DB_TIME_HEADER,
+                String.format(Locale.ROOT, "%.3f", recording.counts().getJdbcNanos() / 1_000_000.0));
+        }
+        if (!responseContext.hasEntity()) {
+            requestContext.removeProperty(RECORDING_PROPERTY);
+            finish(recording);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        try {
+            context.proceed();
+        }
+        finally {
+            if (context.getProperty(RECORDING_PROPERTY) instanceof Recording recording) {
+                context.removeProperty(RECORDING_PROPERTY);
+                finish(recording);
+            }
+        }
+    }
+
+    protected void finish(Recording recording) {
+        RequestSqlStatistics.end(recording.counts());
+        if (recording.endpoint() != null) {
+            endpointStatistics.record(recording.endpoint(), recording.counts());
+        }
+    }
+}
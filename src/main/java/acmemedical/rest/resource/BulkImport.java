@@ -0,0 +1,188 @@
+/********************************************************************************************************
+ * File:  BulkImport.java Course Materials CST 8277
+ *
+ */
+package acmemedical.rest.resource;
+
+import static acmemedical.utility.MyConstants.BULK_IMPORT_CHUNK_SIZE;
+import static acmemedical.utility.MyConstants.BULK_IMPORT_MAX_REPORTED_ERRORS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Providers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import acmemedical.entity.PojoBase;
+
+/**
+ * Streaming bulk import shared by the 'bulk' sub-resources:  the request body (NDJSON - one JSON
+ * object per line) is read one row at a time, each row is validated and good rows are written
+ * {@code BULK_IMPORT_CHUNK_SIZE} at a time, one transaction per chunk.  At most one chunk is ever
+ * held in memory.
+ * <p>
+ * The response is a report:  how many rows were received, imported and rejected, plus the row number
+ * and reason for each rejected row (the first {@code BULK_IMPORT_MAX_REPORTED_ERRORS} of them).
+ */
+final class BulkImport<T extends PojoBase> {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private final Function<T, String> validator;
+    private final Function<List<T>, Integer> writer;
+
+    private final List<T> chunk = new ArrayList<>(BULK_IMPORT_CHUNK_SIZE);
+    private final List<Integer> chunkRows = new ArrayList<>(BULK_IMPORT_CHUNK_SIZE);
+    private final List<Map<String, Object>> errors = new ArrayList<>();
+    private int received;
+    private int imported;
+    private int rejected;
+
+    /**
+     * @param validator returns the reason a row cannot be imported, or null if it is fine
+     * @param writer persists a chunk of rows in one transaction, returns the number written
+     */
+    private BulkImport(Function<T, String> validator, Function<List<T>, Integer> writer) {
+        this.validator = validator;
+        this.writer = writer;
+    }
+
+    static <T extends PojoBase> Response run(Providers providers, InputStream body, Class<T> type,
+        Function<T, String> validator, Function<List<T>, Integer> writer) {
+        ObjectMapper mapper = providers.getContextResolver(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE)
+            .getContext(type);
+        BulkImport<T> bulkImport = new BulkImport<>(validator, writer);
+        try (MappingIterator<T> rows = mapper.readerFor(type).readValues(body)) {
+            bulkImport.readAll(rows);
+        }
+        catch (IOException e) {
+            // readValues could not even start (empty or broken stream)
+            bulkImport.reject(bulkImport.received + 1, originalMessage(e));
+        }
+        bulkImport.writeChunk();
+        LOG.info("bulk import of {}:  {} received, {} imported, {} rejected", type.getSimpleName(),
+            bulkImport.received, bulkImport.imported, bulkImport.rejected);
+        return Response.ok(bulkImport.report()).build();
+    }
+
+    protected void readAll(MappingIterator<T> rows) {
+        while (true) {
+            int row = received + 1;
+            try {
+                if (!rows.hasNextValue()) {
+                    break;
+                }
+                received++;
+                T entity = rows.nextValue();
+                String error = validator.apply(entity);
+                if (error != null) {
+                    reject(row, error);
+                    continue;
+                }
+                chunk.add(entity);
+                chunkRows.add(row);
+                if (chunk.size() == BULK_IMPORT_CHUNK_SIZE) {
+                    writeChunk();
+                }
+            }
+            catch (DatabindException e) {
+                // well-formed JSON that does not fit the entity:  the iterator skips to the next row
+                reject(row, e.getOriginalMessage());
+            }
+            catch (IOException e) {
+                // malformed JSON:  there is no reliable way to find the start of the next row
+                received = row;
+                reject(row, "malformed input, import stopped:  " + originalMessage(e));
+                break;
+            }
+        }
+    }
+
+    /**
+     * Write the current chunk in one transaction;  if that fails, retry its rows one by one so that
+     * only the offending rows are rejected.
+     */
+    protected void writeChunk() {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            imported += writer.apply(chunk);
+        }
+        catch (RuntimeException e) {
+            LOG.debug("chunk of {} rows failed, retrying row by row", chunk.size(), e);
+            for (int i = 0; i < chunk.size(); i++) {
+                T entity = chunk.get(i);
+                entity.setId(0);
+                entity.setVersion(0);
+                try {
+                    imported += writer.apply(List.of(entity));
+                }
+                catch (RuntimeException rowFailure) {
+                    reject(chunkRows.get(i), rootMessage(rowFailure));
+                }
+            }
+        }
+        chunk.clear();
+        chunkRows.clear();
+    }
+
+    protected void reject(int row, String error) {
+        rejected++;
+        if (errors.size() < BULK_IMPORT_MAX_REPORTED_ERRORS) {
+            Map<String, Object> rowError = new LinkedHashMap<>();
+            rowError.put("row", row);
+            rowError.put("error", error);
+            errors.add(rowError);
+        }
+    }
+
+    protected Map<String, Object> report() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("received", received);
+        report.put("imported", imported);
+        report.put("rejected", rejected);
+        report.put("errors", errors);
+        report.put("errorsTruncated", rejected > errors.size());
+        return report;
+    }
+
+    protected static String originalMessage(IOException e) {
+        return e instanceof JsonProcessingException jpe ? jpe.getOriginalMessage() : e.getMessage();
+    }
+
+    protected static String rootMessage(Throwable t) {
+        Throwable root = t;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage() == null ? root.getClass().getSimpleName() : root.getMessage();
+    }
+
+    /**
+     * @return an error if the (required) value is missing or longer than its column
+     */
+    static String checkText(String field, String value, int maxLength) {
+        if (value == null || value.isBlank()) {
+            return field + " is required";
+        }
+        if (value.length() > maxLength) {
+            return field + " is longer than " + maxLength + " characters";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,123 @@
+/********************************************************************************************************
+ * File:  CredentialResource.java Course Materials CST 8277
+ *
+ */
+package acmemedical.rest.resource;
+
+import static acmemedical.utility.MyConstants.BEARER_AUTH;
+import static acmemedical.utility.MyConstants.CREDENTIAL_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.TOKEN_PASSWORD_FORM_PARAM;
+import static acmemedical.utility.MyConstants.TOKEN_USERNAME_FORM_PARAM;
+import static jakarta.security.enterprise.identitystore.CredentialValidationResult.Status.VALID;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import jakarta.annotation.security.PermitAll;
+import jakarta.inject.Inject;
+import jakarta.security.enterprise.credential.UsernamePasswordCredential;
+import jakarta.security.enterprise.identitystore.CredentialValidationResult;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.FormParam;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Response.Status;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import acmemedical.security.AuthenticatedUser;
+import acmemedical.security.BearerTokenService;
+import acmemedical.security.CustomIdentityStore;
+import acmemedical.security.LoginThrottle;
+import acmemedical.security.PasswordHashingService;
+
+/**
+ * Exchange a username/password (checked once, with PBKDF2) for a signed, expiring bearer token.
+ * Subsequent requests send {@code Authorization: Bearer <token>} and are authorized without any
+ * password hashing or database access.
+ */
+@Path(CREDENTIAL_RESOURCE_NAME)
+@Produces(MediaType.APPLICATION_JSON)
+@PermitAll
+public class CredentialResource {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    @Inject
+    protected CustomIdentityStore identityStore;
+
+    @Inject
+    protected BearerTokenService tokenService;
+
+    @Inject
+    protected LoginThrottle loginThrottle;
+
+    @Context
+    protected HttpServletRequest request;
+
+    @POST
+    @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+    public void issueToken(@FormParam(TOKEN_USERNAME_FORM_PARAM) String username,
+        @FormParam(TOKEN_PASSWORD_FORM_PARAM) String password, @Suspended AsyncResponse asyncResponse) {
+        LOG.debug("issuing token for {}", username);
+        if (username == null || password == null) {
+            HttpErrorResponse err = new HttpErrorResponse(Status.BAD_REQUEST.getStatusCode(), "username and password are required");
+            asyncResponse.resume(Response.status(Status.BAD_REQUEST).entity(err).build());
+            return;
+        }
+        String clientAddress = request.getRemoteAddr();
+        long retryAfter = loginThrottle.retryAfterSeconds(username, clientAddress);
+        if (retryAfter > 0) {
+            HttpErrorResponse err = new HttpErrorResponse(Status.TOO_MANY_REQUESTS.getStatusCode(), Status.TOO_MANY_REQUESTS.getReasonPhrase());
+            asyncResponse.resume(Response.status(Status.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, retryAfter).entity(err).build());
+            return;
+        }
+        // a token may only be valid as long as the user is not invalidated after this point
+        long generation = identityStore.generation();
+        // the PBKDF2 verification runs on the hashing pool;  this HTTP worker does not wait for it
+        identityStore.validateAsync(new UsernamePasswordCredential(username, password))
+            .thenApply(result -> {
+                if (result.getStatus() == VALID) {
+                    loginThrottle.recordSuccess(username, clientAddress);
+                } else {
+                    loginThrottle.recordFailure(username, clientAddress);
+                }
+                return buildTokenResponse(result, generation);
+            })
+            .whenComplete((response, t) -> {
+                if (t != null) {
+                    asyncResponse.resume(PasswordHashingService.unwrap(t));
+                } else {
+                    asyncResponse.resume(response);
+                }
+            });
+    }
+
+    protected Response buildTokenResponse(CredentialValidationResult result, long generation) {
+        if (result.getStatus() != VALID) {
+            HttpErrorResponse err = new HttpErrorResponse(Status.UNAUTHORIZED.getStatusCode(), Status.UNAUTHORIZED.getReasonPhrase());
+            return Response.status(Status.UNAUTHORIZED).entity(err).build();
+        }
+        AuthenticatedUser user = AuthenticatedUser.fromCaller(result.getCallerPrincipal());
+        String token = tokenService.issue(user.getUserId(), user.getPhysicianId(), user.getName(), user.getRoles(), generation);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("access_token", token);
+        body.put("token_type", BEARER_AUTH);
+        body.put("expires_in", tokenService.getTimeToLiveSeconds());
+        CacheControl noStore = new CacheControl();
+        noStore.setNoStore(true);
+        return Response.ok(body).cacheControl(noStore).build();
+    }
+}
@@ -0,0 +1,143 @@
+/********************************************************************************************************
+ * File:  EntityTags.java Course Materials CST 8277
+ *
+ */
+package acmemedical.rest.resource;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Response.Status;
+
+/**
+ * Helpers shared by the resources for version-based entity tags:  the ETag of an entity is its
+ * {@code @Version} column, {@code "<version>"};  the ETag of a page is a digest of the ids and versions
+ * of its rows.  Only representations that are exactly their own row get tags - a change to anything else
+ * they rendered would not change the tag.
+ * <p>
+ * A GET with {@code If-None-Match} is first answered from the version(s) alone (a query selecting
+ * nothing else), with 304 if they still match, before the representation is read or serialized.
+ * <p>
+ * A PUT with {@code If-Match: "<version>"} only updates if the row still has that version (a single
+ * {@code UPDATE ... WHERE id = ? AND version = ?}) and answers 412 otherwise;  without If-Match (or with
+ * {@code If-Match: *}) the update is unconditional.  Either way a successful PUT answers 200 with the
+ * updated representation, read again after the update, and its ETag - the If-Match of the next PUT.
+ */
+final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    /**
+     * @return the tag of that version, null if there is no version (no such row)
+     */
+    static EntityTag of(Integer version) {
+        return version == null ? null : new EntityTag(version.toString());
+    }
+
+    /**
+     * @param keyOf the primary key of a row (its string form is digested)
+     */
+    static <T> EntityTag ofPage(List<T> page, Function<T, ?> keyOf, ToIntFunction<T> versionOf) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (T row : page) {
+            digest.update((keyOf.apply(row) + ":" + versionOf.applyAsInt(row) + ";").getBytes(StandardCharsets.UTF_8));
+        }
+        // 128 bits are plenty to tell two pages apart
+        byte[] hash = digest.digest();
+        return new EntityTag(Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 16)));
+    }
+
+    /**
+     * @return 200 with the representation and the tag of its version, 404 if there is no representation
+     */
+    static <T> Response ok(T representation, ToIntFunction<T> versionOf) {
+        if (representation == null) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+        return Response.ok(representation).tag(of(versionOf.applyAsInt(representation))).build();
+    }
+
+    /**
+     * @param ifNoneMatch the If-None-Match header (may be null)
+     * @param currentTag the current tag, computed without reading the representation;  only asked if the
+     * request is conditional, null if there is no such row
+     * @return a 304 response to build if the client's copy is current, otherwise null
+     */
+    static Response.ResponseBuilder notModified(Request request, String ifNoneMatch, Supplier<EntityTag> currentTag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return null;
+        }
+        EntityTag tag = currentTag.get();
+        return tag == null ? null : request.evaluatePreconditions(tag);
+    }
+
+    /**
+     * @param ifMatch the If-Match header (may be null)
+     * @return the version the client expects, or null if the update is unconditional
+     * @throws WebApplicationException 412 if the header is not one of our (strong) tags -
+     * it cannot match any version
+     */
+    static Integer ifMatchVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Integer.valueOf(tag.substring(1, tag.length() - 1));
+            }
+            catch (NumberFormatException e) {
+                // fall through
+            }
+        }
+        throw new WebApplicationException(preconditionFailed());
+    }
+
+    /**
+     * @param updated rows changed by the version-checked update
+     * @param exists only asked if nothing was updated, to tell 404 from 412
+     * @param current reads the representation again, only asked if the row was updated
+     * @param versionOf null if the representation renders more than its own row - it gets no tag then
+     * @return 200 with the updated representation and the tag of its version, 412 or 404
+     */
+    static <T> Response updated(int updated, BooleanSupplier exists, Supplier<T> current, ToIntFunction<T> versionOf) {
+        if (updated == 1) {
+            // null if the row was deleted right after the update
+            T representation = current.get();
+            if (representation != null) {
+                Response.ResponseBuilder ok = Response.ok(representation);
+                return versionOf == null ? ok.build() : ok.tag(of(versionOf.applyAsInt(representation))).build();
+            }
+        }
+        else if (exists.getAsBoolean()) {
+            return preconditionFailed();
+        }
+        HttpErrorResponse err = new HttpErrorResponse(Status.NOT_FOUND.getStatusCode(), Status.NOT_FOUND.getReasonPhrase());
+        return Response.status(Status.NOT_FOUND).entity(err).build();
+    }
+
+    static Response preconditionFailed() {
+        HttpErrorResponse err = new HttpErrorResponse(Status.PRECONDITION_FAILED.getStatusCode(),
+            "modified since it was read - get it again for the current version");
+        return Response.status(Status.PRECONDITION_FAILED).entity(err).build();
+    }
+}
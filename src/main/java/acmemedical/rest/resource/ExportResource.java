@@ -0,0 +1,100 @@
+/********************************************************************************************************
+ * File:  ExportResource.java Course Materials CST 8277
+ *
+ */
+package acmemedical.rest.resource;
+
+import static acmemedical.utility.MyConstants.ADMIN_ROLE;
+import static acmemedical.utility.MyConstants.EXPORT_FORMAT_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.EXPORT_PARTITIONS_HEADER;
+import static acmemedical.utility.MyConstants.EXPORT_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.EXPORT_TABLE_ELEMENT;
+import static acmemedical.utility.MyConstants.EXPORT_TABLE_PATH;
+import static acmemedical.utility.MyConstants.GZIP_MEDIA_TYPE;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.CompletionCallback;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import acmemedical.ejb.ExportFormat;
+import acmemedical.ejb.ExportTable;
+import acmemedical.ejb.PartitionedExport;
+
+/**
+ * Whole-table exports for reporting:  {@code GET export/patient?format=csv} (or {@code ndjson}, the
+ * default) answers a gzip file, read in parallel partitions (see {@link PartitionedExport}) and streamed
+ * as the partitions are ready;  the {@code X-Export-Partitions} header says into how many.  503 if too
+ * many exports are running already.
+ * <p>
+ * The partitions are submitted before the response is, so that a full queue is still a 503 and not a
+ * broken download - and are closed once the request completes, so that an export whose body is never
+ * written (the client went away, the response failed) does not leave them running, or their files behind.
+ */
+@Path(EXPORT_RESOURCE_NAME)
+@Produces({GZIP_MEDIA_TYPE, MediaType.APPLICATION_JSON})
+public class ExportResource {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    @Inject
+    protected PartitionedExport export;
+
+    @GET
+    // Only an 'ADMIN_ROLE' user can export whole tables
+    @RolesAllowed({ADMIN_ROLE})
+    @Path(EXPORT_TABLE_PATH)
+    public void exportTable(@PathParam(EXPORT_TABLE_ELEMENT) String tableName,
+        @QueryParam(EXPORT_FORMAT_QUERY_PARAM) @DefaultValue("ndjson") String formatName,
+        @Suspended AsyncResponse asyncResponse) {
+        LOG.debug("exporting {} as {} ...", tableName, formatName);
+        ExportTable<?> table = ExportTable.of(tableName);
+        if (table == null) {
+            HttpErrorResponse err = new HttpErrorResponse(Status.NOT_FOUND.getStatusCode(), "no such table to export: " + tableName);
+            asyncResponse.resume(Response.status(Status.NOT_FOUND).entity(err).type(MediaType.APPLICATION_JSON_TYPE).build());
+            return;
+        }
+        ExportFormat format = ExportFormat.of(formatName);
+        if (format == null) {
+            HttpErrorResponse err = new HttpErrorResponse(Status.BAD_REQUEST.getStatusCode(), EXPORT_FORMAT_QUERY_PARAM + " must be csv or ndjson");
+            asyncResponse.resume(Response.status(Status.BAD_REQUEST).entity(err).type(MediaType.APPLICATION_JSON_TYPE).build());
+            return;
+        }
+        startExport(table, format, asyncResponse);
+    }
+
+    protected <T> void startExport(ExportTable<T> table, ExportFormat format, AsyncResponse asyncResponse) {
+        PartitionedExport.Running<T> running;
+        try {
+            running = export.start(table, format);
+        }
+        catch (RejectedExecutionException e) {
+            asyncResponse.resume(e);
+            return;
+        }
+        // after writeTo this finds nothing left to abort
+        asyncResponse.register((CompletionCallback) failure -> running.close());
+        StreamingOutput body = running::writeTo;
+        asyncResponse.resume(Response.ok(body, GZIP_MEDIA_TYPE)
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + table.getName() + "." + format.getExtension() + ".gz\"")
+            .header(EXPORT_PARTITIONS_HEADER, running.getPartitionCount())
+            .build());
+    }
+}
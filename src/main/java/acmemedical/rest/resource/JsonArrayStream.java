@@ -0,0 +1,81 @@
+/********************************************************************************************************
+ * File:  JsonArrayStream.java Course Materials CST 8277
+ *
+ */
+package acmemedical.rest.resource;
+
+import java.io.IOException;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.ext.Providers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import acmemedical.ejb.RowConsumer;
+
+/**
+ * Helper shared by the collection resources for {@code ?stream=true}:  the whole collection as one JSON
+ * array, each row written by a {@link JsonGenerator} as the read service scrolls to it - neither the rows
+ * nor the serialized body are ever held in memory as a whole.
+ * <p>
+ * The opening bracket is flushed at once, and what has been written so far every {@code STREAM_BATCH_SIZE}
+ * rows.  There is no {@code Content-Length} (the body is chunked), no ETag and no paging;  as the status
+ * line has already been sent, a failure half-way leaves the array unterminated, so that a client cannot
+ * take a truncated array for the whole collection.
+ */
+final class JsonArrayStream {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    /**
+     * A {@code stream*} method of the read service
+     */
+    @FunctionalInterface
+    interface RowSource<T> {
+        void stream(RowConsumer<T> consumer) throws IOException;
+    }
+
+    private JsonArrayStream() {
+    }
+
+    static <T> Response ok(Providers providers, Class<T> type, RowSource<T> source) {
+        ObjectMapper mapper = providers.getContextResolver(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE)
+            .getContext(type);
+        // flushing is ours to do, per batch rather than per row
+        ObjectWriter writer = mapper.writerFor(type).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingOutput body = output -> {
+            JsonGenerator generator = mapper.getFactory().createGenerator(output)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            try (generator) {
+                generator.writeStartArray();
+                generator.flush();
+                source.stream(new RowConsumer<T>() {
+                    @Override
+                    public void accept(T row) throws IOException {
+                        writer.writeValue(generator, row);
+                    }
+
+                    @Override
+                    public void batchDone() throws IOException {
+                        generator.flush();
+                    }
+                });
+                generator.writeEndArray();
+            }
+            catch (IOException | RuntimeException e) {
+                LOG.warn("streaming {} rows failed - the response is truncated", type.getSimpleName(), e);
+                throw e;
+            }
+        };
+        return Response.ok(body, MediaType.APPLICATION_JSON_TYPE).build();
+    }
+}
@@ -0,0 +1,89 @@
+/********************************************************************************************************
+ * File:  KeysetPaging.java Course Materials CST 8277
+ *
+ */
+package acmemedical.rest.resource;
+
+import static acmemedical.utility.MyConstants.DEFAULT_PAGE_SIZE;
+import static acmemedical.utility.MyConstants.MAX_PAGE_SIZE;
+import static acmemedical.utility.MyConstants.PAGE_AFTER_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.PAGE_CURSOR_SEPARATOR;
+import static acmemedical.utility.MyConstants.PAGE_LIMIT_QUERY_PARAM;
+
+import java.util.List;
+import java.util.function.Function;
+
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
+
+import acmemedical.entity.PrescriptionPK;
+
+/**
+ * Helpers shared by the collection resources for {@code ?limit=n&after=<cursor>} keyset paging.
+ * <p>
+ * The body of a page is still a plain JSON array;  if the page is full a {@code Link: <...>; rel="next"}
+ * header carries the URI of the next page (no such header means this was the last page).
+ * <p>
+ * Note:  this changed the contract of the list endpoints.  A request without {@code limit} used to get
+ * the whole collection and now gets its first {@code DEFAULT_PAGE_SIZE} rows;  clients that need every
+ * row follow the {@code next} links (or ask for {@code ?stream=true}).
+ */
+final class KeysetPaging {
+
+    private KeysetPaging() {
+    }
+
+    /**
+     * @param requested the 'limit' query parameter (may be null)
+     * @return the page size to use:  {@code DEFAULT_PAGE_SIZE} if not given (the response is then truncated,
+     * with a {@code next} link, if there are more rows), capped at the maximum
+     */
+    static int limit(Integer requested) {
+        if (requested == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (requested < 1) {
+            throw new BadRequestException(PAGE_LIMIT_QUERY_PARAM + " must be positive");
+        }
+        return Math.min(requested, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * @param after the 'after' query parameter of the prescription collection:  "physicianId:patientId"
+     * @return the composite cursor, or null for the first page
+     */
+    static PrescriptionPK prescriptionCursor(String after) {
+        if (after == null || after.isEmpty()) {
+            return null;
+        }
+        String[] keys = after.split(PAGE_CURSOR_SEPARATOR);
+        try {
+            if (keys.length == 2) {
+                return new PrescriptionPK(Integer.parseInt(keys[0]), Integer.parseInt(keys[1]));
+            }
+        }
+        catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new BadRequestException(PAGE_AFTER_QUERY_PARAM + " must be <physicianId>" + PAGE_CURSOR_SEPARATOR + "<patientId>");
+    }
+
+    static String prescriptionCursor(PrescriptionPK pk) {
+        return pk.getPhysicianId() + PAGE_CURSOR_SEPARATOR + pk.getPatientId();
+    }
+
+    /**
+     * @param cursorOf produces the 'after' value for the last element of the page
+     */
+    static <T> Response.ResponseBuilder ok(List<T> page, int limit, UriInfo uriInfo, Function<T, String> cursorOf) {
+        Response.ResponseBuilder builder = Response.ok(page);
+        if (page.size() == limit) {
+            builder.link(uriInfo.getRequestUriBuilder()
+                .replaceQueryParam(PAGE_LIMIT_QUERY_PARAM, limit)
+                .replaceQueryParam(PAGE_AFTER_QUERY_PARAM, cursorOf.apply(page.get(page.size() - 1)))
+                .build(), "next");
+        }
+        return builder;
+    }
+}
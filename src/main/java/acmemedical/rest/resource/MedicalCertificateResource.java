@@ -10,6 +10,8 @@ package acmemedical.rest.resource;
 
 import static acmemedical.utility.MyConstants.ADMIN_ROLE;
 import static acmemedical.utility.MyConstants.MEDICAL_CERTIFICATE_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.PAGE_AFTER_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.PAGE_LIMIT_QUERY_PARAM;
 import static acmemedical.utility.MyConstants.RESOURCE_PATH_ID_ELEMENT;
 import static acmemedical.utility.MyConstants.RESOURCE_PATH_ID_PATH;
 import static acmemedical.utility.MyConstants.USER_ROLE;
@@ -22,24 +24,29 @@ import jakarta.inject.Inject;
 import jakarta.security.enterprise.SecurityContext;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.ForbiddenException;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.core.UriInfo;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.glassfish.soteria.WrappingCallerPrincipal;
 
 import acmemedical.ejb.ACMEMedicalService;
 import acmemedical.entity.MedicalCertificate;
-import acmemedical.entity.SecurityUser;
+import acmemedical.security.AuthenticatedUser;
 
 @Path(MEDICAL_CERTIFICATE_RESOURCE_NAME)
 @Consumes(MediaType.APPLICATION_JSON)
@@ -54,20 +61,25 @@ public class MedicalCertificateResource {
     @Inject
     protected SecurityContext sc;
 
+    @Context
+    protected UriInfo uriInfo;
+
     @GET
     // Only an 'ADMIN_ROLE' user can apply CRUD to one or all MedicalCertificate.
     @RolesAllowed({ADMIN_ROLE})
-    public Response getMedicalCertificates() {
+    public Response getMedicalCertificates(@QueryParam(PAGE_LIMIT_QUERY_PARAM) Integer limit,
+        @QueryParam(PAGE_AFTER_QUERY_PARAM) @DefaultValue("0") int after) {
         LOG.debug("retrieving all medical certificates ...");
-        List<MedicalCertificate> medicalCertificates = service.getAllMedicalCertificates();
-        Response response = Response.ok(medicalCertificates).build();
+        int pageSize = KeysetPaging.limit(limit);
+        List<MedicalCertificate> medicalCertificates = service.getAllMedicalCertificates(after, pageSize);
+        Response response = KeysetPaging.ok(medicalCertificates, pageSize, uriInfo, e -> Integer.toString(e.getId())).build();
         return response;
     }
 
     @GET
     @Path(RESOURCE_PATH_ID_PATH)
     public Response getMedicalCertificateById(@PathParam(RESOURCE_PATH_ID_ELEMENT) int id) {
-        LOG.debug("try to retrieve specific medical certificate " + id);
+        LOG.debug("try to retrieve specific medical certificate {}", id);
         Response response = null;
         MedicalCertificate medicalCertificate = null;
 
@@ -77,13 +89,13 @@ public class MedicalCertificateResource {
             response = Response.status(medicalCertificate == null ? Status.NOT_FOUND : Status.OK).entity(medicalCertificate).build();
         } else if (sc.isCallerInRole(USER_ROLE)) {
             // Only a 'USER_ROLE' user can read their own MedicalCertificate.
-            WrappingCallerPrincipal wCallerPrincipal = (WrappingCallerPrincipal) sc.getCallerPrincipal();
-            SecurityUser sUser = (SecurityUser) wCallerPrincipal.getWrapped();
-            if (sUser.getPhysician() != null) {
+            AuthenticatedUser user = AuthenticatedUser.fromCaller(sc.getCallerPrincipal());
+            if (user != null && user.getPhysicianId() != null) {
                 medicalCertificate = service.getMedicalCertificateById(id);
-                // Check if this certificate belongs to the user's physician
-                if (medicalCertificate != null && medicalCertificate.getOwner() != null && 
-                    medicalCertificate.getOwner().getId() == sUser.getPhysician().getId()) {
+                // Check if this certificate belongs to the user's physician (the id of the LAZY owner
+                // comes from its proxy, the user's physician id from the login snapshot)
+                if (medicalCertificate != null && medicalCertificate.getOwner() != null &&
+                    user.isPhysician(medicalCertificate.getOwner().getId())) {
                     response = Response.status(Status.OK).entity(medicalCertificate).build();
                 } else {
                     throw new ForbiddenException("User trying to access resource it does not own");
@@ -111,11 +123,17 @@ public class MedicalCertificateResource {
     // Only an 'ADMIN_ROLE' user can apply CRUD to one or all MedicalCertificate.
     @RolesAllowed({ADMIN_ROLE})
     @Path(RESOURCE_PATH_ID_PATH)
-    public Response updateMedicalCertificate(@PathParam(RESOURCE_PATH_ID_ELEMENT) int id, MedicalCertificate updatingMedicalCertificate) {
+    public Response updateMedicalCertificate(@PathParam(RESOURCE_PATH_ID_ELEMENT) int id, @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch,
+        MedicalCertificate updatingMedicalCertificate) {
         LOG.debug("updating medical certificate with id = {}", id);
-        MedicalCertificate updatedMedicalCertificate = service.updateMedicalCertificate(id, updatingMedicalCertificate);
-        Response response = Response.ok(updatedMedicalCertificate).build();
-        return response;
+        if (updatingMedicalCertificate == null) {
+            HttpErrorResponse err = new HttpErrorResponse(Status.BAD_REQUEST.getStatusCode(), "a medical certificate is required");
+            return Response.status(Status.BAD_REQUEST).entity(err).build();
+        }
+        Integer expectedVersion = EntityTags.ifMatchVersion(ifMatch);
+        int updated = service.updateMedicalCertificate(id, expectedVersion, updatingMedicalCertificate);
+        return EntityTags.updated(updated, () -> service.exists(MedicalCertificate.class, id),
+            () -> service.getMedicalCertificateById(id), MedicalCertificate::getVersion);
     }
 
     @DELETE
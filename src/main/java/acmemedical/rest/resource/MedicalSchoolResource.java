@@ -15,17 +15,25 @@ import jakarta.inject.Inject;
 import jakarta.security.enterprise.SecurityContext;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import static acmemedical.utility.MyConstants.ADMIN_ROLE;
+import static acmemedical.utility.MyConstants.PAGE_AFTER_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.PAGE_LIMIT_QUERY_PARAM;
 import static acmemedical.utility.MyConstants.USER_ROLE;
 import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.core.UriInfo;
 import static acmemedical.utility.MyConstants.MEDICAL_SCHOOL_RESOURCE_NAME;
 
 import org.apache.logging.log4j.LogManager;
@@ -47,15 +55,20 @@ public class MedicalSchoolResource {
 
     @Inject
     protected SecurityContext sc;
+
+    @Context
+    protected UriInfo uriInfo;
     
     @GET
     // Any user can retrieve the list of MedicalSchool
     @RolesAllowed({ADMIN_ROLE, USER_ROLE})
-    public Response getMedicalSchools() {
+    public Response getMedicalSchools(@QueryParam(PAGE_LIMIT_QUERY_PARAM) Integer limit,
+        @QueryParam(PAGE_AFTER_QUERY_PARAM) @DefaultValue("0") int after) {
         LOG.debug("Retrieving all medical schools...");
-        List<MedicalSchool> medicalSchools = service.getAllMedicalSchools();
-        LOG.debug("Medical schools found = {}", medicalSchools);
-        Response response = Response.ok(medicalSchools).build();
+        int pageSize = KeysetPaging.limit(limit);
+        List<MedicalSchool> medicalSchools = service.getAllMedicalSchools(after, pageSize);
+        LOG.debug("Medical schools found = {}", medicalSchools.size());
+        Response response = KeysetPaging.ok(medicalSchools, pageSize, uriInfo, e -> Integer.toString(e.getId())).build();
         return response;
     }
     
@@ -65,7 +78,7 @@ public class MedicalSchoolResource {
     public Response getMedicalSchoolById(@PathParam("medicalSchoolId") int medicalSchoolId) {
         LOG.debug("Retrieving medical school with id = {}", medicalSchoolId);
         MedicalSchool medicalSchool = service.getMedicalSchoolById(medicalSchoolId);
-        Response response = Response.ok(medicalSchool).build();
+        Response response = Response.status(medicalSchool == null ? Status.NOT_FOUND : Status.OK).entity(medicalSchool).build();
         return response;
     }
 
@@ -100,23 +113,30 @@ public class MedicalSchoolResource {
     public Response addMedicalTrainingToMedicalSchool(@PathParam("medicalSchoolId") int msId, MedicalTraining newMedicalTraining) {
         LOG.debug("Adding a new MedicalTraining to medical school with id = {}", msId);
         
-        MedicalSchool ms = service.getMedicalSchoolById(msId);
-        newMedicalTraining.setMedicalSchool(ms);
-        ms.getMedicalTrainings().add(newMedicalTraining);
-        service.updateMedicalSchool(msId, ms);
-        
-        return Response.ok(sc).build();
+        MedicalSchool ms = service.addMedicalTrainingToMedicalSchool(msId, newMedicalTraining);
+        if (ms == null) {
+            HttpErrorResponse err = new HttpErrorResponse(Status.NOT_FOUND.getStatusCode(), "no medical school with id " + msId);
+            return Response.status(Status.NOT_FOUND).entity(err).build();
+        }
+        return Response.ok(ms).build();
     }
 
     @RolesAllowed({ADMIN_ROLE})
     @PUT
     @Path("/{medicalSchoolId}")
-    public Response updateMedicalSchool(@PathParam("medicalSchoolId") int msId, MedicalSchool updatingMedicalSchool) {
+    public Response updateMedicalSchool(@PathParam("medicalSchoolId") int msId, @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch,
+        MedicalSchool updatingMedicalSchool) {
         LOG.debug("Updating a specific medical school with id = {}", msId);
-        Response response = null;
-        MedicalSchool updatedMedicalSchool = service.updateMedicalSchool(msId, updatingMedicalSchool);
-        response = Response.ok(updatedMedicalSchool).build();
-        return response;
+        if (updatingMedicalSchool == null || updatingMedicalSchool.getName() == null) {
+            HttpErrorResponse err = new HttpErrorResponse(Status.BAD_REQUEST.getStatusCode(), "name is required");
+            return Response.status(Status.BAD_REQUEST).entity(err).build();
+        }
+        Integer expectedVersion = EntityTags.ifMatchVersion(ifMatch);
+        int updated = service.updateMedicalSchool(msId, expectedVersion, updatingMedicalSchool);
+        // rendered with its trainings, so the school's version is not a tag of it:  If-Match takes the
+        // "version" of the body
+        return EntityTags.updated(updated, () -> service.exists(MedicalSchool.class, msId),
+            () -> service.getMedicalSchoolById(msId), null);
     }
     
 }
@@ -10,8 +10,11 @@ package acmemedical.rest.resource;
 
 import static acmemedical.utility.MyConstants.ADMIN_ROLE;
 import static acmemedical.utility.MyConstants.MEDICAL_TRAINING_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.PAGE_AFTER_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.PAGE_LIMIT_QUERY_PARAM;
 import static acmemedical.utility.MyConstants.RESOURCE_PATH_ID_ELEMENT;
 import static acmemedical.utility.MyConstants.RESOURCE_PATH_ID_PATH;
+import static acmemedical.utility.MyConstants.STREAM_QUERY_PARAM;
 import static acmemedical.utility.MyConstants.USER_ROLE;
 
 import java.util.List;
@@ -22,20 +25,31 @@ import jakarta.inject.Inject;
 import jakarta.security.enterprise.SecurityContext;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.Providers;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import acmemedical.ejb.ACMEMedicalReadService;
 import acmemedical.ejb.ACMEMedicalService;
+import acmemedical.ejb.projection.EntityVersion;
+import acmemedical.ejb.projection.MedicalTrainingView;
 import acmemedical.entity.MedicalTraining;
 
 @Path(MEDICAL_TRAINING_RESOURCE_NAME)
@@ -48,16 +62,40 @@ public class MedicalTrainingResource {
     @EJB
     protected ACMEMedicalService service;
 
+    @EJB
+    protected ACMEMedicalReadService readService;
+
     @Inject
     protected SecurityContext sc;
 
+    @Context
+    protected UriInfo uriInfo;
+
+    @Context
+    protected Request request;
+
+    @Context
+    protected Providers providers;
+
     @GET
     // Any user can retrieve the list of MedicalTraining
     @RolesAllowed({ADMIN_ROLE, USER_ROLE})
-    public Response getMedicalTrainings() {
+    public Response getMedicalTrainings(@QueryParam(PAGE_LIMIT_QUERY_PARAM) Integer limit,
+        @QueryParam(PAGE_AFTER_QUERY_PARAM) @DefaultValue("0") int after, @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+        @QueryParam(STREAM_QUERY_PARAM) boolean stream) {
         LOG.debug("retrieving all medical trainings ...");
-        List<MedicalTraining> medicalTrainings = service.getAllMedicalTrainings();
-        Response response = Response.ok(medicalTrainings).build();
+        if (stream) {
+            return JsonArrayStream.ok(providers, MedicalTrainingView.class, rows -> readService.streamMedicalTrainings(after, rows));
+        }
+        int pageSize = KeysetPaging.limit(limit);
+        Response.ResponseBuilder notModified = EntityTags.notModified(request, ifNoneMatch,
+            () -> EntityTags.ofPage(readService.getMedicalTrainingVersions(after, pageSize), EntityVersion::id, EntityVersion::version));
+        if (notModified != null) {
+            return notModified.build();
+        }
+        List<MedicalTrainingView> medicalTrainings = readService.getMedicalTrainings(after, pageSize);
+        Response response = KeysetPaging.ok(medicalTrainings, pageSize, uriInfo, v -> Integer.toString(v.id()))
+            .tag(EntityTags.ofPage(medicalTrainings, MedicalTrainingView::id, MedicalTrainingView::version)).build();
         return response;
     }
 
@@ -65,10 +103,15 @@ public class MedicalTrainingResource {
     // Any user can retrieve the list of MedicalTraining
     @RolesAllowed({ADMIN_ROLE, USER_ROLE})
     @Path(RESOURCE_PATH_ID_PATH)
-    public Response getMedicalTrainingById(@PathParam(RESOURCE_PATH_ID_ELEMENT) int id) {
-        LOG.debug("try to retrieve specific medical training " + id);
-        MedicalTraining medicalTraining = service.getMedicalTrainingById(id);
-        Response response = Response.status(medicalTraining == null ? Status.NOT_FOUND : Status.OK).entity(medicalTraining).build();
+    public Response getMedicalTrainingById(@PathParam(RESOURCE_PATH_ID_ELEMENT) int id, @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        LOG.debug("try to retrieve specific medical training {}", id);
+        Response.ResponseBuilder notModified = EntityTags.notModified(request, ifNoneMatch,
+            () -> EntityTags.of(readService.getMedicalTrainingVersion(id)));
+        if (notModified != null) {
+            return notModified.build();
+        }
+        MedicalTrainingView medicalTraining = readService.getMedicalTrainingById(id);
+        Response response = EntityTags.ok(medicalTraining, MedicalTrainingView::version);
         return response;
     }
 
@@ -86,11 +129,17 @@ public class MedicalTrainingResource {
     // Only ADMIN can update MedicalTraining
     @RolesAllowed({ADMIN_ROLE})
     @Path(RESOURCE_PATH_ID_PATH)
-    public Response updateMedicalTraining(@PathParam(RESOURCE_PATH_ID_ELEMENT) int id, MedicalTraining updatingMedicalTraining) {
+    public Response updateMedicalTraining(@PathParam(RESOURCE_PATH_ID_ELEMENT) int id, @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch,
+        MedicalTraining updatingMedicalTraining) {
         LOG.debug("updating medical training with id = {}", id);
-        MedicalTraining updatedMedicalTraining = service.updateMedicalTraining(id, updatingMedicalTraining);
-        Response response = Response.ok(updatedMedicalTraining).build();
-        return response;
+        if (updatingMedicalTraining == null || updatingMedicalTraining.getDurationAndStatus() == null) {
+            HttpErrorResponse err = new HttpErrorResponse(Status.BAD_REQUEST.getStatusCode(), "durationAndStatus is required");
+            return Response.status(Status.BAD_REQUEST).entity(err).build();
+        }
+        Integer expectedVersion = EntityTags.ifMatchVersion(ifMatch);
+        int updated = service.updateMedicalTraining(id, expectedVersion, updatingMedicalTraining);
+        return EntityTags.updated(updated, () -> service.exists(MedicalTraining.class, id),
+            () -> readService.getMedicalTrainingById(id), MedicalTrainingView::version);
     }
 
     @DELETE
@@ -9,11 +9,17 @@
 package acmemedical.rest.resource;
 
 import static acmemedical.utility.MyConstants.ADMIN_ROLE;
+import static acmemedical.utility.MyConstants.BULK_RESOURCE_PATH;
 import static acmemedical.utility.MyConstants.MEDICINE_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.NDJSON_MEDIA_TYPE;
+import static acmemedical.utility.MyConstants.PAGE_AFTER_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.PAGE_LIMIT_QUERY_PARAM;
 import static acmemedical.utility.MyConstants.RESOURCE_PATH_ID_ELEMENT;
 import static acmemedical.utility.MyConstants.RESOURCE_PATH_ID_PATH;
+import static acmemedical.utility.MyConstants.STREAM_QUERY_PARAM;
 import static acmemedical.utility.MyConstants.USER_ROLE;
 
+import java.io.InputStream;
 import java.util.List;
 
 import jakarta.annotation.security.RolesAllowed;
@@ -22,19 +28,30 @@ import jakarta.inject.Inject;
 import jakarta.security.enterprise.SecurityContext;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.Providers;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import acmemedical.ejb.ACMEMedicalReadService;
 import acmemedical.ejb.ACMEMedicalService;
+import acmemedical.ejb.projection.EntityVersion;
+import acmemedical.ejb.projection.MedicineView;
 import acmemedical.entity.Medicine;
 
 @Path(MEDICINE_RESOURCE_NAME)
@@ -47,25 +64,54 @@ public class MedicineResource {
     @EJB
     protected ACMEMedicalService service;
 
+    @EJB
+    protected ACMEMedicalReadService readService;
+
     @Inject
     protected SecurityContext sc;
 
+    @Context
+    protected UriInfo uriInfo;
+
+    @Context
+    protected Request request;
+
+    @Context
+    protected Providers providers;
+
     @GET
     @RolesAllowed({ADMIN_ROLE, USER_ROLE})
-    public Response getMedicines() {
+    public Response getMedicines(@QueryParam(PAGE_LIMIT_QUERY_PARAM) Integer limit,
+        @QueryParam(PAGE_AFTER_QUERY_PARAM) @DefaultValue("0") int after, @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+        @QueryParam(STREAM_QUERY_PARAM) boolean stream) {
         LOG.debug("retrieving all medicines ...");
-        List<Medicine> medicines = service.getAllMedicines();
-        Response response = Response.ok(medicines).build();
+        if (stream) {
+            return JsonArrayStream.ok(providers, MedicineView.class, rows -> readService.streamMedicines(after, rows));
+        }
+        int pageSize = KeysetPaging.limit(limit);
+        Response.ResponseBuilder notModified = EntityTags.notModified(request, ifNoneMatch,
+            () -> EntityTags.ofPage(readService.getMedicineVersions(after, pageSize), EntityVersion::id, EntityVersion::version));
+        if (notModified != null) {
+            return notModified.build();
+        }
+        List<MedicineView> medicines = readService.getMedicines(after, pageSize);
+        Response response = KeysetPaging.ok(medicines, pageSize, uriInfo, v -> Integer.toString(v.id()))
+            .tag(EntityTags.ofPage(medicines, MedicineView::id, MedicineView::version)).build();
         return response;
     }
 
     @GET
     @RolesAllowed({ADMIN_ROLE, USER_ROLE})
     @Path(RESOURCE_PATH_ID_PATH)
-    public Response getMedicineById(@PathParam(RESOURCE_PATH_ID_ELEMENT) int id) {
-        LOG.debug("try to retrieve specific medicine " + id);
-        Medicine medicine = service.getMedicineById(id);
-        Response response = Response.status(medicine == null ? Status.NOT_FOUND : Status.OK).entity(medicine).build();
+    public Response getMedicineById(@PathParam(RESOURCE_PATH_ID_ELEMENT) int id, @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        LOG.debug("try to retrieve specific medicine {}", id);
+        Response.ResponseBuilder notModified = EntityTags.notModified(request, ifNoneMatch,
+            () -> EntityTags.of(readService.getMedicineVersion(id)));
+        if (notModified != null) {
+            return notModified.build();
+        }
+        MedicineView medicine = readService.getMedicineById(id);
+        Response response = EntityTags.ok(medicine, MedicineView::version);
         return response;
     }
 
@@ -78,6 +124,33 @@ public class MedicineResource {
         return response;
     }
 
+    /**
+     * Import many medicines at once:  the body is NDJSON (one medicine per line) and is streamed, not
+     * buffered.  Valid rows are written in chunked transactions;  the response reports rejected rows.
+     */
+    @POST
+    @RolesAllowed({ADMIN_ROLE})
+    @Path(BULK_RESOURCE_PATH)
+    @Consumes(NDJSON_MEDIA_TYPE)
+    public Response addMedicines(InputStream body) {
+        LOG.debug("bulk import of medicines ...");
+        return BulkImport.run(providers, body, Medicine.class, this::validate, service::persistAll);
+    }
+
+    /**
+     * @return why the medicine cannot be imported, or null if it can
+     */
+    protected String validate(Medicine medicine) {
+        String error = BulkImport.checkText("drugName", medicine.getDrugName(), 50);
+        if (error == null) {
+            error = BulkImport.checkText("manufacturerName", medicine.getManufacturerName(), 50);
+        }
+        if (error == null) {
+            error = BulkImport.checkText("dosageInformation", medicine.getDosageInformation(), 100);
+        }
+        return error;
+    }
+
     @DELETE
     @RolesAllowed({ADMIN_ROLE})
     @Path(RESOURCE_PATH_ID_PATH)
@@ -0,0 +1,139 @@
+/********************************************************************************************************
+ * File:  MetricsResource.java Course Materials CST 8277
+ *
+ */
+package acmemedical.rest.resource;
+
+import static acmemedical.utility.MyConstants.ADMIN_ROLE;
+import static acmemedical.utility.MyConstants.CREDENTIAL_CACHE_METRICS_PATH;
+import static acmemedical.utility.MyConstants.LOGIN_THROTTLE_METRICS_PATH;
+import static acmemedical.utility.MyConstants.METRICS_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.PASSWORD_HASHING_METRICS_PATH;
+import static acmemedical.utility.MyConstants.QUERY_METRICS_PATH;
+import static acmemedical.utility.MyConstants.SECOND_LEVEL_CACHE_METRICS_PATH;
+import static acmemedical.utility.MyConstants.SQL_METRICS_ENABLED_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.SQL_METRICS_HEADERS_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.SQL_METRICS_PATH;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.PUT;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import acmemedical.ejb.EndpointSqlStatistics;
+import acmemedical.ejb.PersistenceStatistics;
+import acmemedical.security.LoginThrottle;
+import acmemedical.security.PasswordHashingService;
+import acmemedical.security.VerifiedCredentialCache;
+
+/**
+ * Operational counters of the application (caches, pools, ...) - only for 'ADMIN_ROLE' users
+ */
+@Path(METRICS_RESOURCE_NAME)
+@Produces(MediaType.APPLICATION_JSON)
+@RolesAllowed({ADMIN_ROLE})
+public class MetricsResource {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    @Inject
+    protected VerifiedCredentialCache credentialCache;
+
+    @Inject
+    protected PasswordHashingService hashingService;
+
+    @Inject
+    protected LoginThrottle loginThrottle;
+
+    @Inject
+    protected PersistenceStatistics persistenceStatistics;
+
+    @Inject
+    protected EndpointSqlStatistics sqlStatistics;
+
+    @GET
+    public Response getMetrics() {
+        LOG.debug("retrieving all metrics ...");
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put(CREDENTIAL_CACHE_METRICS_PATH, credentialCache.getStatistics());
+        metrics.put(PASSWORD_HASHING_METRICS_PATH, hashingService.getStatistics());
+        metrics.put(LOGIN_THROTTLE_METRICS_PATH, loginThrottle.getStatistics());
+        metrics.put(SECOND_LEVEL_CACHE_METRICS_PATH, persistenceStatistics.getSecondLevelCacheStatistics());
+        metrics.put(QUERY_METRICS_PATH, persistenceStatistics.getQueryStatistics());
+        metrics.put(SQL_METRICS_PATH, sqlStatistics.getStatistics());
+        return Response.ok(metrics).build();
+    }
+
+    @GET
+    @Path(CREDENTIAL_CACHE_METRICS_PATH)
+    public Response getCredentialCacheMetrics() {
+        return Response.ok(credentialCache.getStatistics()).build();
+    }
+
+    @GET
+    @Path(PASSWORD_HASHING_METRICS_PATH)
+    public Response getPasswordHashingMetrics() {
+        return Response.ok(hashingService.getStatistics()).build();
+    }
+
+    @GET
+    @Path(LOGIN_THROTTLE_METRICS_PATH)
+    public Response getLoginThrottleMetrics() {
+        return Response.ok(loginThrottle.getStatistics()).build();
+    }
+
+    @GET
+    @Path(SECOND_LEVEL_CACHE_METRICS_PATH)
+    public Response getSecondLevelCacheMetrics() {
+        return Response.ok(persistenceStatistics.getSecondLevelCacheStatistics()).build();
+    }
+
+    @GET
+    @Path(QUERY_METRICS_PATH)
+    public Response getQueryMetrics() {
+        return Response.ok(persistenceStatistics.getQueryStatistics()).build();
+    }
+
+    @GET
+    @Path(SQL_METRICS_PATH)
+    public Response getSqlMetrics() {
+        return Response.ok(sqlStatistics.getStatistics()).build();
+    }
+
+    /**
+     * Switches per-endpoint SQL statistics (together with Hibernate's statistics) and/or the
+     * X-SQL-Count/X-DB-Time response headers;  an absent parameter leaves its switch as it is
+     */
+    @PUT
+    @Path(SQL_METRICS_PATH)
+    public Response switchSqlMetrics(@QueryParam(SQL_METRICS_ENABLED_QUERY_PARAM) Boolean enabled,
+        @QueryParam(SQL_METRICS_HEADERS_QUERY_PARAM) Boolean headers) {
+        LOG.debug("switching SQL statistics: enabled = {}, headers = {}", enabled, headers);
+        if (enabled != null) {
+            sqlStatistics.setEnabled(enabled);
+        }
+        if (headers != null) {
+            sqlStatistics.setHeaders(headers);
+        }
+        return Response.ok(sqlStatistics.getStatistics()).build();
+    }
+
+    @DELETE
+    @Path(SQL_METRICS_PATH)
+    public Response resetSqlMetrics() {
+        sqlStatistics.reset();
+        return Response.noContent().build();
+    }
+}
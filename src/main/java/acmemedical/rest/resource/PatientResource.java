@@ -9,11 +9,17 @@
 package acmemedical.rest.resource;
 
 import static acmemedical.utility.MyConstants.ADMIN_ROLE;
+import static acmemedical.utility.MyConstants.BULK_RESOURCE_PATH;
+import static acmemedical.utility.MyConstants.NDJSON_MEDIA_TYPE;
+import static acmemedical.utility.MyConstants.PAGE_AFTER_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.PAGE_LIMIT_QUERY_PARAM;
 import static acmemedical.utility.MyConstants.PATIENT_RESOURCE_NAME;
 import static acmemedical.utility.MyConstants.RESOURCE_PATH_ID_ELEMENT;
 import static acmemedical.utility.MyConstants.RESOURCE_PATH_ID_PATH;
+import static acmemedical.utility.MyConstants.STREAM_QUERY_PARAM;
 import static acmemedical.utility.MyConstants.USER_ROLE;
 
+import java.io.InputStream;
 import java.util.List;
 
 import jakarta.annotation.security.RolesAllowed;
@@ -22,19 +28,30 @@ import jakarta.inject.Inject;
 import jakarta.security.enterprise.SecurityContext;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.Providers;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import acmemedical.ejb.ACMEMedicalReadService;
 import acmemedical.ejb.ACMEMedicalService;
+import acmemedical.ejb.projection.EntityVersion;
+import acmemedical.ejb.projection.PatientView;
 import acmemedical.entity.Patient;
 
 @Path(PATIENT_RESOURCE_NAME)
@@ -47,25 +64,54 @@ public class PatientResource {
     @EJB
     protected ACMEMedicalService service;
 
+    @EJB
+    protected ACMEMedicalReadService readService;
+
     @Inject
     protected SecurityContext sc;
 
+    @Context
+    protected UriInfo uriInfo;
+
+    @Context
+    protected Request request;
+
+    @Context
+    protected Providers providers;
+
     @GET
     @RolesAllowed({ADMIN_ROLE, USER_ROLE})
-    public Response getPatients() {
+    public Response getPatients(@QueryParam(PAGE_LIMIT_QUERY_PARAM) Integer limit,
+        @QueryParam(PAGE_AFTER_QUERY_PARAM) @DefaultValue("0") int after, @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+        @QueryParam(STREAM_QUERY_PARAM) boolean stream) {
         LOG.debug("retrieving all patients ...");
-        List<Patient> patients = service.getAllPatients();
-        Response response = Response.ok(patients).build();
+        if (stream) {
+            return JsonArrayStream.ok(providers, PatientView.class, rows -> readService.streamPatients(after, rows));
+        }
+        int pageSize = KeysetPaging.limit(limit);
+        Response.ResponseBuilder notModified = EntityTags.notModified(request, ifNoneMatch,
+            () -> EntityTags.ofPage(readService.getPatientVersions(after, pageSize), EntityVersion::id, EntityVersion::version));
+        if (notModified != null) {
+            return notModified.build();
+        }
+        List<PatientView> patients = readService.getPatients(after, pageSize);
+        Response response = KeysetPaging.ok(patients, pageSize, uriInfo, v -> Integer.toString(v.id()))
+            .tag(EntityTags.ofPage(patients, PatientView::id, PatientView::version)).build();
         return response;
     }
 
     @GET
     @RolesAllowed({ADMIN_ROLE, USER_ROLE})
     @Path(RESOURCE_PATH_ID_PATH)
-    public Response getPatientById(@PathParam(RESOURCE_PATH_ID_ELEMENT) int id) {
-        LOG.debug("try to retrieve specific patient " + id);
-        Patient patient = service.getPatientById(id);
-        Response response = Response.status(patient == null ? Status.NOT_FOUND : Status.OK).entity(patient).build();
+    public Response getPatientById(@PathParam(RESOURCE_PATH_ID_ELEMENT) int id, @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        LOG.debug("try to retrieve specific patient {}", id);
+        Response.ResponseBuilder notModified = EntityTags.notModified(request, ifNoneMatch,
+            () -> EntityTags.of(readService.getPatientVersion(id)));
+        if (notModified != null) {
+            return notModified.build();
+        }
+        PatientView patient = readService.getPatientById(id);
+        Response response = EntityTags.ok(patient, PatientView::version);
         return response;
     }
 
@@ -78,6 +124,42 @@ public class PatientResource {
         return response;
     }
 
+    /**
+     * Import many patients at once:  the body is NDJSON (one patient per line) and is streamed, not
+     * buffered.  Valid rows are written in chunked transactions;  the response reports rejected rows.
+     */
+    @POST
+    @RolesAllowed({ADMIN_ROLE})
+    @Path(BULK_RESOURCE_PATH)
+    @Consumes(NDJSON_MEDIA_TYPE)
+    public Response addPatients(InputStream body) {
+        LOG.debug("bulk import of patients ...");
+        return BulkImport.run(providers, body, Patient.class, this::validate, service::persistAll);
+    }
+
+    /**
+     * @return why the patient cannot be imported, or null if it can
+     */
+    protected String validate(Patient patient) {
+        String error = BulkImport.checkText("firstName", patient.getFirstName(), 50);
+        if (error == null) {
+            error = BulkImport.checkText("lastName", patient.getLastName(), 50);
+        }
+        if (error == null) {
+            error = BulkImport.checkText("address", patient.getAddress(), 100);
+        }
+        if (error == null && patient.getYear() <= 0) {
+            error = "year must be positive";
+        }
+        if (error == null && (patient.getHeight() <= 0 || patient.getWeight() <= 0)) {
+            error = "height and weight must be positive";
+        }
+        if (error == null && patient.getSmoker() != 0 && patient.getSmoker() != 1) {
+            error = "smoker must be 0 or 1";
+        }
+        return error;
+    }
+
     @DELETE
     @RolesAllowed({ADMIN_ROLE})
     @Path(RESOURCE_PATH_ID_PATH)
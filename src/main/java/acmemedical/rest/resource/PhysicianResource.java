@@ -9,38 +9,58 @@
 package acmemedical.rest.resource;
 
 import static acmemedical.utility.MyConstants.ADMIN_ROLE;
+import static acmemedical.utility.MyConstants.DEFAULT_USER_PASSWORD;
+import static acmemedical.utility.MyConstants.PAGE_AFTER_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.PAGE_LIMIT_QUERY_PARAM;
 import static acmemedical.utility.MyConstants.PHYSICIAN_PATIENT_MEDICINE_RESOURCE_PATH;
 import static acmemedical.utility.MyConstants.PHYSICIAN_RESOURCE_NAME;
 import static acmemedical.utility.MyConstants.RESOURCE_PATH_ID_ELEMENT;
 import static acmemedical.utility.MyConstants.RESOURCE_PATH_ID_PATH;
+import static acmemedical.utility.MyConstants.STREAM_QUERY_PARAM;
 import static acmemedical.utility.MyConstants.USER_ROLE;
 
 import java.util.List;
 
+import jakarta.annotation.Resource;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.ejb.EJB;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
 import jakarta.inject.Inject;
 import jakarta.security.enterprise.SecurityContext;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.ForbiddenException;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.Providers;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.glassfish.soteria.WrappingCallerPrincipal;
 
+import acmemedical.ejb.ACMEMedicalReadService;
 import acmemedical.ejb.ACMEMedicalService;
+import acmemedical.ejb.projection.EntityVersion;
+import acmemedical.ejb.projection.PhysicianView;
 import acmemedical.entity.Medicine;
-import acmemedical.entity.SecurityUser;
 import acmemedical.entity.Physician;
+import acmemedical.security.AuthenticatedUser;
+import acmemedical.security.PasswordHashingService;
 
 @Path(PHYSICIAN_RESOURCE_NAME)
 @Consumes(MediaType.APPLICATION_JSON)
@@ -52,16 +72,46 @@ public class PhysicianResource {
     @EJB
     protected ACMEMedicalService service;
 
+    @EJB
+    protected ACMEMedicalReadService readService;
+
     @Inject
     protected SecurityContext sc;
 
+    @Context
+    protected UriInfo uriInfo;
+
+    @Context
+    protected Request request;
+
+    @Context
+    protected Providers providers;
+
+    @Inject
+    protected PasswordHashingService hashingService;
+
+    @Resource
+    protected ManagedExecutorService managedExecutor;
+
     @GET
     //Only a user with the SecurityRole ‘ADMIN_ROLE’ can get the list of all physicians.
     @RolesAllowed({ADMIN_ROLE})
-    public Response getPhysicians() {
+    public Response getPhysicians(@QueryParam(PAGE_LIMIT_QUERY_PARAM) Integer limit,
+        @QueryParam(PAGE_AFTER_QUERY_PARAM) @DefaultValue("0") int after, @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+        @QueryParam(STREAM_QUERY_PARAM) boolean stream) {
         LOG.debug("retrieving all physicians ...");
-        List<Physician> physicians = service.getAllPhysicians();
-        Response response = Response.ok(physicians).build();
+        if (stream) {
+            return JsonArrayStream.ok(providers, PhysicianView.class, rows -> readService.streamPhysicians(after, rows));
+        }
+        int pageSize = KeysetPaging.limit(limit);
+        Response.ResponseBuilder notModified = EntityTags.notModified(request, ifNoneMatch,
+            () -> EntityTags.ofPage(readService.getPhysicianVersions(after, pageSize), EntityVersion::id, EntityVersion::version));
+        if (notModified != null) {
+            return notModified.build();
+        }
+        List<PhysicianView> physicians = readService.getPhysicians(after, pageSize);
+        Response response = KeysetPaging.ok(physicians, pageSize, uriInfo, v -> Integer.toString(v.id()))
+            .tag(EntityTags.ofPage(physicians, PhysicianView::id, PhysicianView::version)).build();
         return response;
     }
 
@@ -69,20 +119,18 @@ public class PhysicianResource {
     //A user with either the role ‘ADMIN_ROLE’ or ‘USER_ROLE’ can get a specific physician.
     @RolesAllowed({ADMIN_ROLE, USER_ROLE})
     @Path(RESOURCE_PATH_ID_PATH)
-    public Response getPhysicianById(@PathParam(RESOURCE_PATH_ID_ELEMENT) int id) {
-        LOG.debug("try to retrieve specific physician " + id);
+    public Response getPhysicianById(@PathParam(RESOURCE_PATH_ID_ELEMENT) int id,
+        @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        LOG.debug("try to retrieve specific physician {}", id);
         Response response = null;
-        Physician physician = null;
 
         if (sc.isCallerInRole(ADMIN_ROLE)) {
-        	physician = service.getPhysicianById(id);
-            response = Response.status(physician == null ? Status.NOT_FOUND : Status.OK).entity(physician).build();
+            response = getPhysicianView(id, ifNoneMatch);
         } else if (sc.isCallerInRole(USER_ROLE)) {
-            WrappingCallerPrincipal wCallerPrincipal = (WrappingCallerPrincipal) sc.getCallerPrincipal();
-            SecurityUser sUser = (SecurityUser) wCallerPrincipal.getWrapped();
-            physician = sUser.getPhysician();
-            if (physician != null && physician.getId() == id) {
-                response = Response.status(Status.OK).entity(physician).build();
+            // in-memory check against the snapshot taken at login - no lazy loading of the SecurityUser
+            AuthenticatedUser user = AuthenticatedUser.fromCaller(sc.getCallerPrincipal());
+            if (user != null && user.isPhysician(id)) {
+                response = getPhysicianView(id, ifNoneMatch);
             } else {
             	//disallows a ‘USER_ROLE’ user from getting a physician that is not linked to the SecurityUser.
                 throw new ForbiddenException("User trying to access resource it does not own (wrong userid)");
@@ -93,15 +141,65 @@ public class PhysicianResource {
         return response;
     }
 
+    /**
+     * 304 if the caller's copy (If-None-Match) is current, checked before the physician is read
+     */
+    protected Response getPhysicianView(int id, String ifNoneMatch) {
+        Response.ResponseBuilder notModified = EntityTags.notModified(request, ifNoneMatch,
+            () -> EntityTags.of(readService.getPhysicianVersion(id)));
+        if (notModified != null) {
+            return notModified.build();
+        }
+        return EntityTags.ok(readService.getPhysicianById(id), PhysicianView::version);
+    }
+
     @POST
     //Only a user with the SecurityRole ‘ADMIN_ROLE’ can add a new physician.
     @RolesAllowed({ADMIN_ROLE})
-    public Response addPhysician(Physician newPhysician) {
-        Response response = null;
-        Physician newPhysicianWithIdTimestamps = service.persistPhysician(newPhysician);
-        // Build a SecurityUser linked to the new physician
-        service.buildUserForNewPhysician(newPhysicianWithIdTimestamps);
-        response = Response.ok(newPhysicianWithIdTimestamps).build();
+    public void addPhysician(Physician newPhysician, @Suspended AsyncResponse asyncResponse) {
+        // The new user's password is hashed on the hashing pool and the physician persisted on a managed
+        // executor thread, so this HTTP worker is released straight away
+        hashingService.generate(DEFAULT_USER_PASSWORD.toCharArray())
+            .thenApplyAsync(pwHash -> {
+                Physician newPhysicianWithIdTimestamps = service.persistPhysician(newPhysician);
+                // Build a SecurityUser linked to the new physician
+                service.buildUserForNewPhysician(newPhysicianWithIdTimestamps, pwHash);
+                return Response.ok(newPhysicianWithIdTimestamps).build();
+            }, managedExecutor)
+            .whenComplete((response, t) -> {
+                if (t != null) {
+                    asyncResponse.resume(PasswordHashingService.unwrap(t));
+                } else {
+                    asyncResponse.resume(response);
+                }
+            });
+    }
+
+    @PUT
+    //Only a user with the SecurityRole ‘ADMIN_ROLE’ can update a physician.
+    @RolesAllowed({ADMIN_ROLE})
+    @Path(RESOURCE_PATH_ID_PATH)
+    public Response updatePhysician(@PathParam(RESOURCE_PATH_ID_ELEMENT) int id, @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch,
+        Physician updatingPhysician) {
+        LOG.debug("updating physician with id = {}", id);
+        if (updatingPhysician == null || updatingPhysician.getFirstName() == null || updatingPhysician.getLastName() == null) {
+            HttpErrorResponse err = new HttpErrorResponse(Status.BAD_REQUEST.getStatusCode(), "firstName and lastName are required");
+            return Response.status(Status.BAD_REQUEST).entity(err).build();
+        }
+        Integer expectedVersion = EntityTags.ifMatchVersion(ifMatch);
+        int updated = service.updatePhysicianById(id, expectedVersion, updatingPhysician);
+        return EntityTags.updated(updated, () -> service.exists(Physician.class, id),
+            () -> readService.getPhysicianById(id), PhysicianView::version);
+    }
+
+    @DELETE
+    //Only a user with the SecurityRole ‘ADMIN_ROLE’ can delete a physician (with the physician's user).
+    @RolesAllowed({ADMIN_ROLE})
+    @Path(RESOURCE_PATH_ID_PATH)
+    public Response deletePhysician(@PathParam(RESOURCE_PATH_ID_ELEMENT) int id) {
+        LOG.debug("deleting physician with id = {}", id);
+        Physician deletedPhysician = service.deletePhysicianById(id);
+        Response response = Response.status(deletedPhysician == null ? Status.NOT_FOUND : Status.OK).entity(deletedPhysician).build();
         return response;
     }
 
@@ -112,6 +210,11 @@ public class PhysicianResource {
     public Response updateMedicineForPhysicianPatient(@PathParam("physicianId") int physicianId, @PathParam("patientId") int patientId, Medicine newMedicine) {
         Response response = null;
         Medicine medicine = service.setMedicineForPhysicianPatient(physicianId, patientId, newMedicine);
+        if (medicine == null) {
+            HttpErrorResponse err = new HttpErrorResponse(Status.NOT_FOUND.getStatusCode(),
+                "no prescription for physician " + physicianId + " and patient " + patientId);
+            return Response.status(Status.NOT_FOUND).entity(err).build();
+        }
         response = Response.ok(medicine).build();
         return response;
     }
@@ -9,12 +9,17 @@
 package acmemedical.rest.resource;
 
 import static acmemedical.utility.MyConstants.ADMIN_ROLE;
+import static acmemedical.utility.MyConstants.PAGE_AFTER_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.PAGE_LIMIT_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.PRESCRIPTION_MEDICINE_RESOURCE_PATH;
 import static acmemedical.utility.MyConstants.PRESCRIPTION_RESOURCE_NAME;
 import static acmemedical.utility.MyConstants.PRESCRIPTION_RESOURCE_PATH_ID_PATH;
 import static acmemedical.utility.MyConstants.PRESCRIPTION_RESOURCE_PATH_CREATE_PATH;
+import static acmemedical.utility.MyConstants.STREAM_QUERY_PARAM;
 import static acmemedical.utility.MyConstants.USER_ROLE;
 
 import java.util.List;
+import java.util.Map;
 
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.ejb.EJB;
@@ -23,19 +28,29 @@ import jakarta.security.enterprise.SecurityContext;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.Providers;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import acmemedical.ejb.ACMEMedicalReadService;
 import acmemedical.ejb.ACMEMedicalService;
+import acmemedical.ejb.projection.PrescriptionView;
 import acmemedical.entity.Medicine;
 import acmemedical.entity.Patient;
 import acmemedical.entity.Physician;
@@ -52,16 +67,40 @@ public class PrescriptionResource {
     @EJB
     protected ACMEMedicalService service;
 
+    @EJB
+    protected ACMEMedicalReadService readService;
+
     @Inject
     protected SecurityContext sc;
 
+    @Context
+    protected UriInfo uriInfo;
+
+    @Context
+    protected Request request;
+
+    @Context
+    protected Providers providers;
+
     @GET
     // Only ADMIN can get all prescriptions
     @RolesAllowed({ADMIN_ROLE})
-    public Response getPrescriptions() {
+    public Response getPrescriptions(@QueryParam(PAGE_LIMIT_QUERY_PARAM) Integer limit, @QueryParam(PAGE_AFTER_QUERY_PARAM) String after,
+        @QueryParam(STREAM_QUERY_PARAM) boolean stream) {
         LOG.debug("retrieving all prescriptions ...");
-        List<Prescription> prescriptions = service.getAllPrescriptions();
-        Response response = Response.ok(prescriptions).build();
+        if (stream) {
+            PrescriptionPK cursor = KeysetPaging.prescriptionCursor(after);
+            return JsonArrayStream.ok(providers, PrescriptionView.class, rows -> readService.streamPrescriptions(cursor, rows));
+        }
+        int pageSize = KeysetPaging.limit(limit);
+        List<PrescriptionView> prescriptions = readService.getPrescriptions(KeysetPaging.prescriptionCursor(after), pageSize);
+        // the page is small (keys and two columns):  it is read first, and only serialization is saved by a 304
+        EntityTag tag = EntityTags.ofPage(prescriptions, PrescriptionView::id, PrescriptionView::version);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.build();
+        }
+        Response response = KeysetPaging.ok(prescriptions, pageSize, uriInfo, v -> KeysetPaging.prescriptionCursor(v.id())).tag(tag).build();
         return response;
     }
 
@@ -69,10 +108,16 @@ public class PrescriptionResource {
     // Only ADMIN can get specific prescription
     @RolesAllowed({ADMIN_ROLE})
     @Path(PRESCRIPTION_RESOURCE_PATH_ID_PATH)
-    public Response getPrescriptionByPhysicianAndPatient(@PathParam("physician_id") int physicianId, @PathParam("patient_id") int patientId) {
+    public Response getPrescriptionByPhysicianAndPatient(@PathParam("physician_id") int physicianId, @PathParam("patient_id") int patientId,
+        @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         LOG.debug("try to retrieve prescription for physician {} and patient {}", physicianId, patientId);
-        Prescription prescription = service.getPrescriptionByPhysicianAndPatient(physicianId, patientId);
-        Response response = Response.status(prescription == null ? Status.NOT_FOUND : Status.OK).entity(prescription).build();
+        Response.ResponseBuilder notModified = EntityTags.notModified(request, ifNoneMatch,
+            () -> EntityTags.of(readService.getPrescriptionVersion(physicianId, patientId)));
+        if (notModified != null) {
+            return notModified.build();
+        }
+        PrescriptionView prescription = readService.getPrescriptionByPhysicianAndPatient(physicianId, patientId);
+        Response response = EntityTags.ok(prescription, PrescriptionView::version);
         return response;
     }
 
@@ -110,10 +155,35 @@ public class PrescriptionResource {
     @Path(PRESCRIPTION_RESOURCE_PATH_ID_PATH)
     public Response updatePrescription(@PathParam("physician_id") int physicianId, 
                                       @PathParam("patient_id") int patientId, 
+                                      @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch,
                                       Prescription updatingPrescription) {
         LOG.debug("updating prescription for physician {} and patient {}", physicianId, patientId);
-        Prescription updatedPrescription = service.updatePrescription(physicianId, patientId, updatingPrescription);
-        Response response = Response.ok(updatedPrescription).build();
+        if (updatingPrescription == null) {
+            HttpErrorResponse err = new HttpErrorResponse(Status.BAD_REQUEST.getStatusCode(), "a prescription is required");
+            return Response.status(Status.BAD_REQUEST).entity(err).build();
+        }
+        Integer expectedVersion = EntityTags.ifMatchVersion(ifMatch);
+        int updated = service.updatePrescription(physicianId, patientId, expectedVersion, updatingPrescription);
+        return EntityTags.updated(updated, () -> service.exists(Prescription.class, new PrescriptionPK(physicianId, patientId)),
+            () -> readService.getPrescriptionByPhysicianAndPatient(physicianId, patientId), PrescriptionView::version);
+    }
+
+    @PUT
+    // Only ADMIN can update prescriptions
+    @RolesAllowed({ADMIN_ROLE})
+    @Path(PRESCRIPTION_MEDICINE_RESOURCE_PATH)
+    public Response updateMedicineForPrescriptions(@PathParam("medicine_id") int medicineId, List<PrescriptionPK> prescriptionIds) {
+        LOG.debug("setting medicine {} for {} prescriptions", medicineId, prescriptionIds == null ? 0 : prescriptionIds.size());
+        if (prescriptionIds == null || prescriptionIds.isEmpty()) {
+            HttpErrorResponse err = new HttpErrorResponse(Status.BAD_REQUEST.getStatusCode(), "a list of prescription ids is required");
+            return Response.status(Status.BAD_REQUEST).entity(err).build();
+        }
+        if (service.getMedicineById(medicineId) == null) {
+            HttpErrorResponse err = new HttpErrorResponse(Status.NOT_FOUND.getStatusCode(), "no medicine with id " + medicineId);
+            return Response.status(Status.NOT_FOUND).entity(err).build();
+        }
+        int updated = service.setMedicineForPrescriptions(medicineId, prescriptionIds);
+        Response response = Response.ok(Map.of("updated", updated)).build();
         return response;
     }
 
@@ -0,0 +1,105 @@
+/********************************************************************************************************
+ * File:  AuthenticatedUser.java Course Materials CST 8277
+ *
+ */
+package acmemedical.security;
+
+import java.io.Serializable;
+import java.security.Principal;
+import java.util.Objects;
+import java.util.Set;
+
+import org.glassfish.soteria.WrappingCallerPrincipal;
+
+import acmemedical.entity.SecurityUser;
+
+/**
+ * Immutable snapshot of the authenticated caller, taken once at login (or from a bearer token) and
+ * wrapped in the {@link WrappingCallerPrincipal} handed to the container.
+ * <p>
+ * Resources use it for ownership checks instead of the SecurityUser entity, whose LAZY
+ * {@code physician} association would otherwise be loaded (with a new session and connection)
+ * on every access.
+ */
+public final class AuthenticatedUser implements Principal, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int userId;
+    private final String username;
+    private final Integer physicianId;
+    private final Set<String> roles;
+
+    public AuthenticatedUser(int userId, String username, Integer physicianId, Set<String> roles) {
+        this.userId = userId;
+        this.username = username;
+        this.physicianId = physicianId;
+        this.roles = Set.copyOf(roles);
+    }
+
+    /**
+     * @param user must have its physician already fetched (see SecurityUser.userWithRolesByName)
+     */
+    public static AuthenticatedUser of(SecurityUser user, Set<String> roles) {
+        Integer physicianId = user.getPhysician() == null ? null : user.getPhysician().getId();
+        return new AuthenticatedUser(user.getId(), user.getUsername(), physicianId, roles);
+    }
+
+    /**
+     * @return the snapshot behind the caller principal, or null if the caller was not authenticated
+     * through {@link CustomIdentityStore} / a bearer token
+     */
+    public static AuthenticatedUser fromCaller(Principal callerPrincipal) {
+        if (callerPrincipal instanceof WrappingCallerPrincipal wrapping
+            && wrapping.getWrapped() instanceof AuthenticatedUser user) {
+            return user;
+        }
+        return null;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public Integer getPhysicianId() {
+        return physicianId;
+    }
+
+    /**
+     * @return true if this user is linked to the physician with the given id
+     */
+    public boolean isPhysician(int id) {
+        return physicianId != null && physicianId == id;
+    }
+
+    public Set<String> getRoles() {
+        return roles;
+    }
+
+    // Principal
+    @Override
+    public String getName() {
+        return username;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userId);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj instanceof AuthenticatedUser other) {
+            return userId == other.userId;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthenticatedUser [userId = " + userId + ", username = " + username + ", physicianId = "
+            + physicianId + ", roles = " + roles + "]";
+    }
+}
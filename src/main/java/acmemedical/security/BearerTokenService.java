@@ -0,0 +1,185 @@
+/********************************************************************************************************
+ * File:  BearerTokenService.java Course Materials CST 8277
+ *
+ */
+package acmemedical.security;
+
+import static acmemedical.utility.MyConstants.TOKEN_SIGNATURE_ALGORITHM;
+import static acmemedical.utility.MyConstants.TOKEN_TTL_SECONDS;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Issues and checks the signed, expiring bearer tokens handed out by the 'credential' resource.
+ * <p>
+ * A token is {@code base64url(payload) + '.' + base64url(HMAC-SHA256(payload))} where the payload is
+ * <pre>
+ *   v2|&lt;userId&gt;|&lt;physicianId or empty&gt;|&lt;expiry epoch-seconds&gt;|&lt;generation&gt;|&lt;role,role,...&gt;|&lt;username&gt;
+ * </pre>
+ * Everything needed to authorize a request travels in the token, so checking one is an HMAC
+ * computation - no PBKDF2, no database.  The signing key is random per JVM:  a restart (or a
+ * different node) simply makes clients log in again.
+ * <p>
+ * The generation is the {@link VerifiedCredentialCache#generation()} captured before the password was
+ * verified:  once the user is invalidated (password or roles changed, user deleted) its tokens are refused.
+ */
+@ApplicationScoped
+public class BearerTokenService {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private static final String VERSION = "v2";
+    private static final int FIELD_COUNT = 7;
+    private static final String FIELD_SEPARATOR = "|";
+    private static final String ROLE_SEPARATOR = ",";
+
+    private static final Base64.Encoder B64_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64_DECODER = Base64.getUrlDecoder();
+
+    @Inject
+    protected VerifiedCredentialCache credentialCache;
+
+    private final SecretKeySpec signingKey;
+
+    private final ThreadLocal<Mac> signer = ThreadLocal.withInitial(this::newMac);
+
+    public BearerTokenService() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        signingKey = new SecretKeySpec(secret, TOKEN_SIGNATURE_ALGORITHM);
+    }
+
+    /**
+     * Claims carried by a (valid) token
+     */
+    public static final class TokenClaims {
+        private final int userId;
+        private final Integer physicianId;
+        private final String username;
+        private final Set<String> roles;
+        private final long expiresAt;
+
+        public TokenClaims(int userId, Integer physicianId, String username, Set<String> roles, long expiresAt) {
+            this.userId = userId;
+            this.physicianId = physicianId;
+            this.username = username;
+            this.roles = Set.copyOf(roles);
+            this.expiresAt = expiresAt;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public Integer getPhysicianId() {
+            return physicianId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public Set<String> getRoles() {
+            return roles;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+
+    public long getTimeToLiveSeconds() {
+        return TOKEN_TTL_SECONDS;
+    }
+
+    /**
+     * @param generation the {@link VerifiedCredentialCache#generation()} captured before the credentials
+     * the token is issued for were verified
+     */
+    public String issue(int userId, Integer physicianId, String username, Set<String> roles, long generation) {
+        long expiresAt = Instant.now().getEpochSecond() + TOKEN_TTL_SECONDS;
+        String payload = String.join(FIELD_SEPARATOR,
+            VERSION,
+            Integer.toString(userId),
+            physicianId == null ? "" : physicianId.toString(),
+            Long.toString(expiresAt),
+            Long.toString(generation),
+            String.join(ROLE_SEPARATOR, roles),
+            username);
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        return B64_ENCODER.encodeToString(payloadBytes) + '.' + B64_ENCODER.encodeToString(sign(payloadBytes));
+    }
+
+    /**
+     * @return the claims of the token, or null if it is malformed, forged, expired or its user has been
+     * invalidated since it was issued
+     */
+    public TokenClaims verify(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot == token.length() - 1) {
+            return null;
+        }
+        try {
+            byte[] payloadBytes = B64_DECODER.decode(token.substring(0, dot));
+            byte[] signature = B64_DECODER.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, sign(payloadBytes))) {
+                LOG.debug("bearer token with bad signature");
+                return null;
+            }
+            String[] fields = new String(payloadBytes, StandardCharsets.UTF_8).split("\\|", FIELD_COUNT);
+            if (fields.length != FIELD_COUNT || !VERSION.equals(fields[0])) {
+                return null;
+            }
+            String username = fields[6];
+            long expiresAt = Long.parseLong(fields[3]);
+            if (Instant.now().getEpochSecond() >= expiresAt) {
+                LOG.debug("expired bearer token for {}", username);
+                return null;
+            }
+            if (credentialCache.isInvalidatedSince(username, Long.parseLong(fields[4]))) {
+                LOG.debug("revoked bearer token for {}", username);
+                return null;
+            }
+            Set<String> roles = fields[5].isEmpty() ? Set.of()
+                : Arrays.stream(fields[5].split(ROLE_SEPARATOR)).collect(Collectors.toUnmodifiableSet());
+            Integer physicianId = fields[2].isEmpty() ? null : Integer.valueOf(fields[2]);
+            return new TokenClaims(Integer.parseInt(fields[1]), physicianId, username, roles, expiresAt);
+        }
+        catch (IllegalArgumentException e) {
+            // bad base64 or number - NumberFormatException is an IllegalArgumentException too
+            return null;
+        }
+    }
+
+    protected byte[] sign(byte[] payload) {
+        return signer.get().doFinal(payload);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(TOKEN_SIGNATURE_ALGORITHM);
+            mac.init(signingKey);
+            return mac;
+        }
+        catch (GeneralSecurityException e) {
+            throw new IllegalStateException("cannot create " + TOKEN_SIGNATURE_ALGORITHM, e);
+        }
+    }
+}
@@ -9,10 +9,15 @@
  */
 package acmemedical.security;
 
+import static jakarta.security.enterprise.identitystore.CredentialValidationResult.Status.INVALID;
 import static jakarta.security.enterprise.identitystore.CredentialValidationResult.Status.VALID;
 import static jakarta.servlet.http.HttpServletRequest.BASIC_AUTH;
+import static acmemedical.utility.MyConstants.BEARER_AUTH;
+import static acmemedical.utility.MyConstants.PASSWORD_HASHING_RETRY_AFTER_SECONDS;
 
+import java.io.IOException;
 import java.util.Base64;
+import java.util.concurrent.RejectedExecutionException;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -27,6 +32,11 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response.Status;
+
+import org.glassfish.soteria.WrappingCallerPrincipal;
+
+import acmemedical.security.BearerTokenService.TokenClaims;
 
 @ApplicationScoped
 public class CustomAuthenticationMechanism implements HttpAuthenticationMechanism {
@@ -34,6 +44,12 @@ public class CustomAuthenticationMechanism implements HttpAuthenticationMechanis
     @Inject
     protected CustomIdentityStore identityStore;
 
+    @Inject
+    protected BearerTokenService tokenService;
+
+    @Inject
+    protected LoginThrottle loginThrottle;
+
     @Context
     protected ServletContext servletContext;
 
@@ -45,32 +61,102 @@ public class CustomAuthenticationMechanism implements HttpAuthenticationMechanis
         String name = null;
         String password = null;
         String authHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
-        if (authHeader != null) {
-            boolean startsWithBasic = authHeader.toLowerCase().startsWith(BASIC_AUTH.toLowerCase());
-            if (startsWithBasic) {
-                String b64Token = authHeader.substring(BASIC_AUTH.length() + 1, authHeader.length());
-                //                                              ^^^^^^^^^^^ account for space between BASIC and base64-string
-                byte[] token = Base64.getDecoder().decode(b64Token);
-                String tmp = new String(token);
-                String[] tokenFields = tmp.split(":");
-                if (tokenFields.length == 2) {
-                    name = tokenFields[0];
-                    password = tokenFields[1];
-                }
+        if (authHeader != null && authHeader.regionMatches(true, 0, BEARER_AUTH + " ", 0, BEARER_AUTH.length() + 1)) {
+            // Bearer token issued by CredentialResource:  an HMAC check instead of PBKDF2 + DB lookups
+            TokenClaims claims = tokenService.verify(authHeader.substring(BEARER_AUTH.length() + 1).trim());
+            if (claims == null) {
+                return httpMessageContext.responseUnauthorized();
             }
+            return httpMessageContext.notifyContainerAboutLogin(
+                new CredentialValidationResult(new WrappingCallerPrincipal(userFromClaims(claims)), claims.getRoles()));
+        }
+        String[] basicCredentials = parseBasicAuthorization(authHeader);
+        if (basicCredentials != null) {
+            name = basicCredentials[0];
+            password = basicCredentials[1];
         }
         if (name != null && password != null) {
-            CredentialValidationResult validationResult = identityStore.validate(new UsernamePasswordCredential(name, password));
+            String clientAddress = request.getRemoteAddr();
+            long retryAfter = loginThrottle.retryAfterSeconds(name, clientAddress);
+            if (retryAfter > 0) {
+                return responseTooManyRequests(response, retryAfter);
+            }
+            CredentialValidationResult validationResult;
+            try {
+                validationResult = identityStore.validateWithinTimeout(new UsernamePasswordCredential(name, password));
+            }
+            catch (RejectedExecutionException e) {
+                // the password could not be checked (hashing pool saturated):  not the caller's fault, so not 401
+                return responseServiceUnavailable(response, PASSWORD_HASHING_RETRY_AFTER_SECONDS);
+            }
             if (validationResult.getStatus() == VALID) {
+                loginThrottle.recordSuccess(name, clientAddress);
                 String validationResultStr = String.format("valid result: callerGroups=%s, callerPrincipal=%s",
                     validationResult.getCallerGroups(), validationResult.getCallerPrincipal().getName());
                 servletContext.log(validationResultStr);
                 result = httpMessageContext.notifyContainerAboutLogin(validationResult);
             }
             else {
+                if (validationResult.getStatus() == INVALID) {
+                    loginThrottle.recordFailure(name, clientAddress);
+                }
                 result = httpMessageContext.responseUnauthorized();
             }
         }
         return result;
     }
+
+    /**
+     * @param authHeader the Authorization header (may be null)
+     * @return {username, password} of a Basic Authorization header, null if it is not one
+     */
+    public static String[] parseBasicAuthorization(String authHeader) {
+        if (authHeader == null) {
+            return null;
+        }
+        boolean startsWithBasic = authHeader.toLowerCase().startsWith(BASIC_AUTH.toLowerCase());
+        if (!startsWithBasic) {
+            return null;
+        }
+        String b64Token = authHeader.substring(BASIC_AUTH.length() + 1, authHeader.length());
+        //                                              ^^^^^^^^^^^ account for space between BASIC and base64-string
+        byte[] token = Base64.getDecoder().decode(b64Token);
+        String tmp = new String(token);
+        String[] tokenFields = tmp.split(":");
+        return tokenFields.length == 2 ? tokenFields : null;
+    }
+
+    /**
+     * Refuse a throttled login attempt without any database or PBKDF2 work
+     */
+    protected AuthenticationStatus responseTooManyRequests(HttpServletResponse response, long retryAfterSeconds)
+        throws AuthenticationException {
+        try {
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+            response.sendError(Status.TOO_MANY_REQUESTS.getStatusCode());
+        }
+        catch (IOException e) {
+            throw new AuthenticationException(e);
+        }
+        return AuthenticationStatus.SEND_FAILURE;
+    }
+
+    /**
+     * Refuse a login attempt that cannot be checked now, without counting it as a failure
+     */
+    protected AuthenticationStatus responseServiceUnavailable(HttpServletResponse response, long retryAfterSeconds)
+        throws AuthenticationException {
+        try {
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+            response.sendError(Status.SERVICE_UNAVAILABLE.getStatusCode());
+        }
+        catch (IOException e) {
+            throw new AuthenticationException(e);
+        }
+        return AuthenticationStatus.SEND_FAILURE;
+    }
+
+    protected AuthenticatedUser userFromClaims(TokenClaims claims) {
+        return new AuthenticatedUser(claims.getUserId(), claims.getUsername(), claims.getPhysicianId(), claims.getRoles());
+    }
 }
\ No newline at end of file
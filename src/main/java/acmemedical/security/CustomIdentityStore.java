@@ -7,19 +7,32 @@
  */
 package acmemedical.security;
 
+import static acmemedical.utility.MyConstants.PASSWORD_HASHING_TIMEOUT_SECONDS;
 import static java.util.Collections.emptySet;
 import static jakarta.security.enterprise.identitystore.CredentialValidationResult.INVALID_RESULT;
+import static jakarta.security.enterprise.identitystore.CredentialValidationResult.NOT_VALIDATED_RESULT;
 
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
+import jakarta.annotation.Resource;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Typed;
 import jakarta.inject.Inject;
 import jakarta.security.enterprise.credential.CallerOnlyCredential;
 import jakarta.security.enterprise.credential.UsernamePasswordCredential;
-import jakarta.security.enterprise.identitystore.Pbkdf2PasswordHash;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.glassfish.soteria.WrappingCallerPrincipal;
 
 import acmemedical.entity.SecurityRole;
@@ -32,11 +45,22 @@ import jakarta.security.enterprise.identitystore.IdentityStore;
 @Typed(CustomIdentityStore.class)
 public class CustomIdentityStore implements IdentityStore {
 
+    private static final Logger LOG = LogManager.getLogger();
+
     @Inject
     protected CustomIdentityStoreJPAHelper jpaHelper;
 
     @Inject
-    protected Pbkdf2PasswordHash pbAndjPasswordHash;
+    protected PasswordHashingService hashingService;
+
+    @Inject
+    protected VerifiedCredentialCache credentialCache;
+
+    @Inject
+    protected LoginThrottle loginThrottle;
+
+    @Resource
+    protected TransactionSynchronizationRegistry transactionRegistry;
 
     @Override
     public CredentialValidationResult validate(Credential credential) {
@@ -44,37 +68,12 @@ public class CustomIdentityStore implements IdentityStore {
         CredentialValidationResult result = INVALID_RESULT;
 
         if (credential instanceof UsernamePasswordCredential) {
-            String callerName = ((UsernamePasswordCredential)credential).getCaller();
-            String credentialPassword = ((UsernamePasswordCredential)credential).getPasswordAsString();
-            SecurityUser user = jpaHelper.findUserByName(callerName);
-            if (user != null) {
-                String pwHash = user.getPwHash();
-                /*
-                 * pwHash is actually a multifield String with ':' as the field separator:
-                 *   <algorithm>:<iterations>:<base64(salt)>:<base64(hash)>
-                 *
-                 *   Pbkdf2PasswordHash.Algorithm (String identifier)
-                 *     "PBKDF2WithHmacSHA224" - too small don't use,
-                 *     "PBKDF2WithHmacSHA256" - default,
-                 *     "PBKDF2WithHmacSHA384" - meh
-                 *     "PBKDF2WithHmacSHA512" - better security - more CPU: maybe not watch/phone, tablet Ok
-                 *
-                 *  Pbkdf2PasswordHash.Iterations (integer)
-                 *     1024 - minimum (too small don't use)
-                 *     2048 - default
-                 *   I have seen 20,000 up to 50,000 in production
-                 *
-                 */
-                try {
-                    boolean verified = pbAndjPasswordHash.verify(credentialPassword.toCharArray(), pwHash);
-                    if (verified) {
-                        Set<String> rolesForUser = jpaHelper.findRoleNamesForUser(callerName);
-                        result = new CredentialValidationResult(new WrappingCallerPrincipal(user), rolesForUser);
-                    }
-                }
-                catch (Exception e) {
-                    // e.printStackTrace();
-                }
+            try {
+                result = validateWithinTimeout((UsernamePasswordCredential)credential);
+            }
+            // could not check (pool saturated, timed out):  not the caller's fault, so not INVALID
+            catch (RejectedExecutionException e) {
+                result = NOT_VALIDATED_RESULT;
             }
         }
         // Check if the credential was CallerOnlyCredential
@@ -89,6 +88,146 @@ public class CustomIdentityStore implements IdentityStore {
         return result;
     }
 
+    /**
+     * For callers that cannot suspend (the authentication mechanism):  wait for {@link #validateAsync} -
+     * the PBKDF2 work itself still runs on (and is bounded by) the hashing pool, not on this thread.
+     *
+     * @throws RejectedExecutionException if the hashing pool is saturated, or did not verify the password
+     * within {@code PASSWORD_HASHING_TIMEOUT_SECONDS} - the caller should answer 503 and Retry-After
+     */
+    public CredentialValidationResult validateWithinTimeout(UsernamePasswordCredential credential) {
+        try {
+            return validateAsync(credential).get(PASSWORD_HASHING_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("interrupted while waiting for password verification", e);
+        }
+        catch (TimeoutException e) {
+            LOG.debug("password verification did not complete in {} s", PASSWORD_HASHING_TIMEOUT_SECONDS);
+            throw new RejectedExecutionException("password verification timed out", e);
+        }
+        catch (ExecutionException e) {
+            // validateAsync only fails when the hashing pool rejected the work
+            if (e.getCause() instanceof RejectedExecutionException rejected) {
+                throw rejected;
+            }
+            LOG.warn("password verification of {} failed", credential.getCaller(), e.getCause());
+            return INVALID_RESULT;
+        }
+    }
+
+    /**
+     * Cache check and user lookup happen on the calling thread, the password verification on the
+     * {@link PasswordHashingService} pool.  The future fails with a {@link java.util.concurrent.RejectedExecutionException}
+     * when that pool is saturated;  any other failure of the verification (e.g. a malformed pw_hash) is
+     * logged and answered with INVALID_RESULT, like a wrong password.
+     */
+    public CompletableFuture<CredentialValidationResult> validateAsync(UsernamePasswordCredential credential) {
+        String callerName = credential.getCaller();
+        String credentialPassword = credential.getPasswordAsString();
+        CredentialValidationResult cachedResult = credentialCache.get(callerName, credentialPassword);
+        if (cachedResult != null) {
+            return CompletableFuture.completedFuture(cachedResult);
+        }
+        if (loginThrottle.isUnknownUser(callerName)) {
+            // looked up moments ago and not there - don't ask the database again
+            return CompletableFuture.completedFuture(INVALID_RESULT);
+        }
+        // captured before the user is read:  if it is invalidated from here on, the result is not cached
+        long generation = credentialCache.generation();
+        SecurityUser user = jpaHelper.findUserForAuthentication(callerName);
+        if (user == null) {
+            loginThrottle.recordUnknownUser(callerName);
+            return CompletableFuture.completedFuture(INVALID_RESULT);
+        }
+        // roles are resolved here, where the persistence context is available - not on the hashing pool
+        Set<String> rolesForUser = jpaHelper.findRoleNamesForUser(callerName);
+        String pwHash = user.getPwHash();
+        /*
+         * pwHash is actually a multifield String with ':' as the field separator:
+         *   <algorithm>:<iterations>:<base64(salt)>:<base64(hash)>
+         *
+         *   Pbkdf2PasswordHash.Algorithm (String identifier)
+         *     "PBKDF2WithHmacSHA224" - too small don't use,
+         *     "PBKDF2WithHmacSHA256" - default,
+         *     "PBKDF2WithHmacSHA384" - meh
+         *     "PBKDF2WithHmacSHA512" - better security - more CPU: maybe not watch/phone, tablet Ok
+         *
+         *  Pbkdf2PasswordHash.Iterations (integer)
+         *     1024 - minimum (too small don't use)
+         *     2048 - default
+         *   I have seen 20,000 up to 50,000 in production
+         *
+         */
+        return hashingService.verify(credentialPassword.toCharArray(), pwHash)
+            .thenApply(verified -> {
+                if (!verified) {
+                    return INVALID_RESULT;
+                }
+                CredentialValidationResult result = new CredentialValidationResult(
+                    new WrappingCallerPrincipal(AuthenticatedUser.of(user, rolesForUser)), rolesForUser);
+                credentialCache.put(callerName, credentialPassword, result, generation);
+                return result;
+            })
+            .exceptionally(t -> {
+                Throwable cause = PasswordHashingService.unwrap(t);
+                if (cause instanceof RejectedExecutionException) {
+                    throw new CompletionException(cause);
+                }
+                LOG.warn("password verification of {} failed", callerName, cause);
+                return INVALID_RESULT;
+            });
+    }
+
+    /**
+     * @return the generation to capture before a verification whose outcome outlives the request
+     * (see {@link VerifiedCredentialCache#generation()})
+     */
+    public long generation() {
+        return credentialCache.generation();
+    }
+
+    /**
+     * Forget the user's cached credentials, its cached role names and that it was unknown.  Must be called
+     * when a user's password or roles change outside of a JPA update of the SecurityUser itself
+     * (see {@link SecurityUserListener})
+     */
+    public void invalidate(String username) {
+        credentialCache.invalidate(username);
+        jpaHelper.evictRoleNames(username);
+        loginThrottle.forgetUnknownUser(username);
+    }
+
+    /**
+     * For write paths that change (or remove) a user in a transaction:  invalidate now and once more when
+     * the transaction is over, so that an authentication that still read the old row - and cached it -
+     * while the transaction was open cannot outlive the change
+     */
+    public void invalidateAfterCompletion(String username) {
+        invalidate(username);
+        if (transactionRegistry.getTransactionKey() == null) {
+            return;
+        }
+        transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    invalidate(username);
+                }
+            }
+        });
+    }
+
+    public void invalidateAll() {
+        credentialCache.invalidateAll();
+        jpaHelper.evictAllRoleNames();
+    }
+
     protected Set<String> getRolesNamesForSecurityRoles(Set<SecurityRole> roles) {
         Set<String> roleNames = emptySet();
         if (!roles.isEmpty()) {
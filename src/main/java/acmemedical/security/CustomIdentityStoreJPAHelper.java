@@ -9,27 +9,43 @@ package acmemedical.security;
 
 import static acmemedical.utility.MyConstants.PARAM1;
 import static acmemedical.utility.MyConstants.PU_NAME;
+import static acmemedical.utility.MyConstants.ROLE_NAMES_CACHE_MAX_ENTRIES;
 
 import static java.util.Collections.emptySet;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import acmemedical.ejb.QueryDefinition;
+import acmemedical.ejb.QueryRegistry;
 import acmemedical.entity.SecurityRole;
 import acmemedical.entity.SecurityUser;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Lock;
+import jakarta.ejb.LockType;
 import jakarta.ejb.Singleton;
+import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 import jakarta.transaction.Transactional;
 
+/**
+ * Called on every authenticated request, so (like ACMEMedicalService) it must not serialize
+ * callers behind the default container-managed WRITE lock
+ */
 @SuppressWarnings("unused")
-
 @Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.CONTAINER)
+@Lock(LockType.READ)
 public class CustomIdentityStoreJPAHelper {
 
     private static final Logger LOG = LogManager.getLogger();
@@ -37,12 +53,85 @@ public class CustomIdentityStoreJPAHelper {
     @PersistenceContext(name = PU_NAME)
     protected EntityManager em;
 
+    @Inject
+    protected VerifiedCredentialCache credentialCache;
+
+    /*
+     * username -> role names; roles change very rarely, so once known they save the JOIN on user_has_role.
+     * Least recently used names are dropped beyond ROLE_NAMES_CACHE_MAX_ENTRIES, and a user's entry is
+     * evicted together with its cached credentials (see CustomIdentityStore#invalidate)
+     */
+    protected final Map<String, Set<String>> roleNamesCache = Collections.synchronizedMap(
+        new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Set<String>> eldest) {
+                return size() > ROLE_NAMES_CACHE_MAX_ENTRIES;
+            }
+        });
+
     public SecurityUser findUserByName(String username) {
         LOG.debug("find a SecurityUser by name = {}", username);
+        return findSingleUser(QueryRegistry.USER_BY_NAME, username);
+    }
+
+    /**
+     * Load everything authentication needs - the user, its physician and its roles - in one query.
+     * If the role names of this user are already cached the roles are not joined at all.
+     */
+    public SecurityUser findUserForAuthentication(String username) {
+        LOG.debug("find a SecurityUser (for authentication) by name = {}", username);
+        if (roleNamesCache.containsKey(username)) {
+            return findUserByName(username);
+        }
+        long generation = credentialCache.generation();
+        SecurityUser user = findSingleUser(QueryRegistry.USER_WITH_ROLES_BY_NAME, username);
+        if (user != null) {
+            cacheRoleNames(username, toRoleNames(user.getRoles()), generation);
+        }
+        return user;
+    }
+
+    public Set<String> findRoleNamesForUser(String username) {
+        LOG.debug("find Roles For Username={}", username);
+        Set<String> roleNames = roleNamesCache.get(username);
+        if (roleNames == null) {
+            roleNames = emptySet();
+            long generation = credentialCache.generation();
+            SecurityUser securityUser = findSingleUser(QueryRegistry.USER_WITH_ROLES_BY_NAME, username);
+            if (securityUser != null) {
+                roleNames = toRoleNames(securityUser.getRoles());
+                cacheRoleNames(username, roleNames, generation);
+            }
+        }
+        return roleNames;
+    }
+
+    /**
+     * Like {@link VerifiedCredentialCache#put}:  role names read before the user was invalidated are not kept
+     */
+    protected void cacheRoleNames(String username, Set<String> roleNames, long generation) {
+        synchronized (roleNamesCache) {
+            if (!credentialCache.isInvalidatedSince(username, generation)) {
+                roleNamesCache.put(username, roleNames);
+            }
+        }
+    }
+
+    public void evictRoleNames(String username) {
+        roleNamesCache.remove(username);
+    }
+
+    public void evictAllRoleNames() {
+        roleNamesCache.clear();
+    }
+
+    protected SecurityUser findSingleUser(QueryDefinition<SecurityUser> namedQuery, String username) {
         SecurityUser user = null;
         try {
-            TypedQuery<SecurityUser> query = em.createNamedQuery("SecurityUser.userByName", SecurityUser.class);
-            query.setParameter("param1", username);
+            TypedQuery<SecurityUser> query = namedQuery.create(em);
+            query.setParameter(PARAM1, username);
             user = query.getSingleResult();
         } catch (NoResultException e) {
             LOG.debug("No SecurityUser found for username = {}", username);
@@ -50,14 +139,8 @@ public class CustomIdentityStoreJPAHelper {
         return user;
     }
 
-    public Set<String> findRoleNamesForUser(String username) {
-        LOG.debug("find Roles For Username={}", username);
-        Set<String> roleNames = emptySet();
-        SecurityUser securityUser = findUserByName(username);
-        if (securityUser != null) {
-            roleNames = securityUser.getRoles().stream().map(s -> s.getRoleName()).collect(Collectors.toSet());
-        }
-        return roleNames;
+    protected Set<String> toRoleNames(Set<SecurityRole> roles) {
+        return roles.stream().map(SecurityRole::getRoleName).collect(Collectors.toUnmodifiableSet());
     }
 
     @Transactional
@@ -0,0 +1,204 @@
+/********************************************************************************************************
+ * File:  LoginThrottle.java Course Materials CST 8277
+ *
+ */
+package acmemedical.security;
+
+import static acmemedical.utility.MyConstants.LOGIN_BACKOFF_BASE_SECONDS;
+import static acmemedical.utility.MyConstants.LOGIN_BACKOFF_MAX_SECONDS;
+import static acmemedical.utility.MyConstants.LOGIN_CLIENT_FAILURES_BEFORE_BACKOFF;
+import static acmemedical.utility.MyConstants.LOGIN_FAILURE_WINDOW_SECONDS;
+import static acmemedical.utility.MyConstants.LOGIN_THROTTLE_MAX_ENTRIES;
+import static acmemedical.utility.MyConstants.LOGIN_UNKNOWN_USER_TTL_SECONDS;
+import static acmemedical.utility.MyConstants.LOGIN_USER_FAILURES_BEFORE_BACKOFF;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Cheap, in-memory defence against credential stuffing, consulted <i>before</i> any database or
+ * PBKDF2 work is done for a login attempt:
+ * <ul>
+ * <li>a negative cache of usernames that recently turned out not to exist</li>
+ * <li>failure counters per (username, client address) pair and per client address;  once a counter
+ * passes its threshold further attempts are refused for an exponentially growing period (capped), and
+ * a counter that has seen no failure for a while is forgotten</li>
+ * </ul>
+ * There is deliberately no counter per username alone:  it would let anyone lock a user (admin, say)
+ * out by sending it wrong passwords from anywhere.  The price is that an attacker spread over many
+ * addresses gets a few guesses per user from each of them before it is slowed down - those guesses
+ * still each cost a PBKDF2 verification on the bounded hashing pool, and the owner of the account,
+ * coming from another address, is never refused.
+ * <p>
+ * The maps are bounded;  when full (and nothing has expired) new keys are simply not tracked.
+ */
+@ApplicationScoped
+public class LoginThrottle {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private static final long UNKNOWN_USER_TTL_NANOS = TimeUnit.SECONDS.toNanos(LOGIN_UNKNOWN_USER_TTL_SECONDS);
+    private static final long FAILURE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(LOGIN_FAILURE_WINDOW_SECONDS);
+
+    protected static final class Failures {
+        final int count;
+        final long lastFailureAt;
+        final long blockedUntil;
+
+        Failures(int count, long lastFailureAt, long blockedUntil) {
+            this.count = count;
+            this.lastFailureAt = lastFailureAt;
+            this.blockedUntil = blockedUntil;
+        }
+
+        boolean isExpired(long now) {
+            return now - lastFailureAt >= FAILURE_WINDOW_NANOS && now - blockedUntil >= 0;
+        }
+    }
+
+    // username -> expiry (System.nanoTime())
+    protected final Map<String, Long> unknownUsers = new ConcurrentHashMap<>();
+    // userKey(username, client address) -> failures
+    protected final Map<String, Failures> userFailures = new ConcurrentHashMap<>();
+    protected final Map<String, Failures> clientFailures = new ConcurrentHashMap<>();
+
+    protected final LongAdder unknownUserHits = new LongAdder();
+    protected final LongAdder failedLogins = new LongAdder();
+    protected final LongAdder throttledLogins = new LongAdder();
+
+    /**
+     * @return true if the username was looked up recently and did not exist
+     */
+    public boolean isUnknownUser(String username) {
+        Long expiresAt = unknownUsers.get(username);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (System.nanoTime() - expiresAt >= 0) {
+            unknownUsers.remove(username, expiresAt);
+            return false;
+        }
+        unknownUserHits.increment();
+        return true;
+    }
+
+    public void recordUnknownUser(String username) {
+        long now = System.nanoTime();
+        if (unknownUsers.size() >= LOGIN_THROTTLE_MAX_ENTRIES) {
+            unknownUsers.values().removeIf(expiresAt -> now - expiresAt >= 0);
+            if (unknownUsers.size() >= LOGIN_THROTTLE_MAX_ENTRIES) {
+                return;
+            }
+        }
+        unknownUsers.put(username, now + UNKNOWN_USER_TTL_NANOS);
+    }
+
+    /**
+     * Called when a SecurityUser is created (or changed) so that a new user is not refused as 'unknown'
+     */
+    public void forgetUnknownUser(String username) {
+        if (username != null) {
+            unknownUsers.remove(username);
+        }
+    }
+
+    /**
+     * @return 0 if an attempt for this username from this client may proceed, otherwise the number of
+     * seconds (rounded up) until it may be retried
+     */
+    public long retryAfterSeconds(String username, String clientAddress) {
+        long now = System.nanoTime();
+        long blockedFor = Math.max(remainingNanos(userFailures, userKey(username, clientAddress), now),
+            remainingNanos(clientFailures, clientAddress, now));
+        if (blockedFor <= 0) {
+            return 0;
+        }
+        throttledLogins.increment();
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(blockedFor + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    public void recordFailure(String username, String clientAddress) {
+        failedLogins.increment();
+        long now = System.nanoTime();
+        Failures user = recordFailure(userFailures, userKey(username, clientAddress), LOGIN_USER_FAILURES_BEFORE_BACKOFF, now);
+        recordFailure(clientFailures, clientAddress, LOGIN_CLIENT_FAILURES_BEFORE_BACKOFF, now);
+        if (user != null && user.count >= LOGIN_USER_FAILURES_BEFORE_BACKOFF) {
+            LOG.warn("{} failed logins for {} from {} - backing off", user.count, username, clientAddress);
+        }
+    }
+
+    /**
+     * A successful login clears the user's failure counter for this client (but not the client's)
+     */
+    public void recordSuccess(String username, String clientAddress) {
+        String key = userKey(username, clientAddress);
+        if (key != null) {
+            userFailures.remove(key);
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        long now = System.nanoTime();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("unknownUsers", unknownUsers.size());
+        stats.put("unknownUserHits", unknownUserHits.sum());
+        stats.put("trackedUsers", userFailures.size());
+        stats.put("blockedUsers", userFailures.values().stream().filter(f -> now - f.blockedUntil < 0).count());
+        stats.put("trackedClients", clientFailures.size());
+        stats.put("blockedClients", clientFailures.values().stream().filter(f -> now - f.blockedUntil < 0).count());
+        stats.put("failedLogins", failedLogins.sum());
+        stats.put("throttledLogins", throttledLogins.sum());
+        stats.put("maxSize", LOGIN_THROTTLE_MAX_ENTRIES);
+        return stats;
+    }
+
+    protected String userKey(String username, String clientAddress) {
+        return username == null ? null : username + '@' + clientAddress;
+    }
+
+    protected long remainingNanos(Map<String, Failures> failures, String key, long now) {
+        if (key == null) {
+            return 0;
+        }
+        Failures f = failures.get(key);
+        if (f == null) {
+            return 0;
+        }
+        if (f.isExpired(now)) {
+            failures.remove(key, f);
+            return 0;
+        }
+        return f.blockedUntil - now;
+    }
+
+    protected Failures recordFailure(Map<String, Failures> failures, String key, int threshold, long now) {
+        if (key == null) {
+            return null;
+        }
+        if (!failures.containsKey(key) && failures.size() >= LOGIN_THROTTLE_MAX_ENTRIES) {
+            failures.values().removeIf(f -> f.isExpired(now));
+            if (failures.size() >= LOGIN_THROTTLE_MAX_ENTRIES) {
+                return null;
+            }
+        }
+        return failures.compute(key, (k, previous) -> {
+            int count = previous == null || previous.isExpired(now) ? 1 : previous.count + 1;
+            long blockedUntil = now;
+            if (count >= threshold) {
+                // 1, 2, 4, 8 ... seconds, capped
+                int doublings = Math.min(count - threshold, 30);
+                long backoffSeconds = Math.min(LOGIN_BACKOFF_BASE_SECONDS << doublings, LOGIN_BACKOFF_MAX_SECONDS);
+                blockedUntil = now + TimeUnit.SECONDS.toNanos(backoffSeconds);
+            }
+            return new Failures(count, now, blockedUntil);
+        });
+    }
+}
@@ -0,0 +1,127 @@
+/********************************************************************************************************
+ * File:  PasswordHashingService.java Course Materials CST 8277
+ *
+ */
+package acmemedical.security;
+
+import static acmemedical.utility.MyConstants.DEFAULT_KEY_SIZE;
+import static acmemedical.utility.MyConstants.DEFAULT_PROPERTY_ALGORITHM;
+import static acmemedical.utility.MyConstants.DEFAULT_PROPERTY_ITERATIONS;
+import static acmemedical.utility.MyConstants.DEFAULT_SALT_SIZE;
+import static acmemedical.utility.MyConstants.PASSWORD_HASHING_POOL_SIZE;
+import static acmemedical.utility.MyConstants.PASSWORD_HASHING_QUEUE_CAPACITY;
+import static acmemedical.utility.MyConstants.PROPERTY_ALGORITHM;
+import static acmemedical.utility.MyConstants.PROPERTY_ITERATIONS;
+import static acmemedical.utility.MyConstants.PROPERTY_KEY_SIZE;
+import static acmemedical.utility.MyConstants.PROPERTY_SALT_SIZE;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.security.enterprise.identitystore.Pbkdf2PasswordHash;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * All PBKDF2 work (generate for new users, verify for logins) runs here, on a small fixed pool of
+ * container-managed threads with a bounded queue, so that a burst of logins or physician creations
+ * cannot tie up the HTTP worker threads.  When the queue is full the work is rejected immediately
+ * (the returned future fails with {@link RejectedExecutionException}) rather than piling up.
+ */
+@ApplicationScoped
+public class PasswordHashingService {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    @Inject
+    protected Pbkdf2PasswordHash pbAndjPasswordHash;
+
+    @Resource
+    protected ManagedThreadFactory threadFactory;
+
+    protected ArrayBlockingQueue<Runnable> queue;
+    protected ThreadPoolExecutor executor;
+
+    protected final LongAdder submitted = new LongAdder();
+    protected final LongAdder rejected = new LongAdder();
+    protected final LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0);
+
+    @PostConstruct
+    protected void init() {
+        // Parameters are set once, before any thread can use the (from then on read-only) hasher
+        Map<String, String> pbAndjProperties = new HashMap<>();
+        pbAndjProperties.put(PROPERTY_ALGORITHM, DEFAULT_PROPERTY_ALGORITHM);
+        pbAndjProperties.put(PROPERTY_ITERATIONS, DEFAULT_PROPERTY_ITERATIONS);
+        pbAndjProperties.put(PROPERTY_SALT_SIZE, DEFAULT_SALT_SIZE);
+        pbAndjProperties.put(PROPERTY_KEY_SIZE, DEFAULT_KEY_SIZE);
+        pbAndjPasswordHash.initialize(pbAndjProperties);
+
+        queue = new ArrayBlockingQueue<>(PASSWORD_HASHING_QUEUE_CAPACITY);
+        executor = new ThreadPoolExecutor(PASSWORD_HASHING_POOL_SIZE, PASSWORD_HASHING_POOL_SIZE,
+            0L, TimeUnit.MILLISECONDS, queue, threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public CompletableFuture<String> generate(char[] password) {
+        return submit(() -> pbAndjPasswordHash.generate(password));
+    }
+
+    public CompletableFuture<Boolean> verify(char[] password, String pwHash) {
+        return submit(() -> pbAndjPasswordHash.verify(password, pwHash));
+    }
+
+    protected <T> CompletableFuture<T> submit(Supplier<T> work) {
+        submitted.increment();
+        try {
+            CompletableFuture<T> future = CompletableFuture.supplyAsync(work, executor);
+            maxQueueDepth.accumulate(queue.size());
+            return future;
+        }
+        catch (RejectedExecutionException e) {
+            rejected.increment();
+            LOG.warn("password hashing queue full ({} waiting), rejecting request", queue.size());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * @return the real failure behind the {@link CompletionException} wrapper of a dependent stage
+     */
+    public static Throwable unwrap(Throwable t) {
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("poolSize", executor.getPoolSize());
+        stats.put("activeThreads", executor.getActiveCount());
+        stats.put("queueDepth", queue.size());
+        stats.put("maxQueueDepth", maxQueueDepth.get());
+        stats.put("queueCapacity", PASSWORD_HASHING_QUEUE_CAPACITY);
+        stats.put("submitted", submitted.sum());
+        stats.put("completed", executor.getCompletedTaskCount());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+}
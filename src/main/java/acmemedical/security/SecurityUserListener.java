@@ -0,0 +1,43 @@
+/********************************************************************************************************
+ * File:  SecurityUserListener.java Course Materials CST 8277
+ *
+ */
+package acmemedical.security;
+
+import jakarta.inject.Inject;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+import acmemedical.entity.SecurityRole;
+import acmemedical.entity.SecurityUser;
+
+/**
+ * Keeps the authentication caches honest:  once a SecurityUser's pw_hash or roles have been written
+ * (or the user/role is gone) nothing that was cached for it may be used to authenticate again, and a
+ * newly created user must no longer be remembered as 'unknown' by the {@link LoginThrottle}.
+ * <p>
+ * Note:  SecurityUser is not versioned, so Hibernate does not fire @PostUpdate when <i>only</i> its
+ * roles collection changes - code that edits roles of an existing user must call
+ * {@link CustomIdentityStore#invalidateAfterCompletion(String)} itself.
+ */
+public class SecurityUserListener {
+
+    @Inject
+    protected CustomIdentityStore identityStore;
+
+    // JPA allows only one callback method per lifecycle event in a listener class
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void securityEntityChanged(Object entity) {
+        if (entity instanceof SecurityUser user) {
+            // the callbacks run at flush:  what is read (and cached) until the commit must go as well
+            identityStore.invalidateAfterCompletion(user.getUsername());
+        }
+        else if (entity instanceof SecurityRole) {
+            // a renamed/removed role affects every user holding it
+            identityStore.invalidateAll();
+        }
+    }
+}
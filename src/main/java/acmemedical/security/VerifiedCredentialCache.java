@@ -0,0 +1,225 @@
+/********************************************************************************************************
+ * File:  VerifiedCredentialCache.java Course Materials CST 8277
+ *
+ */
+package acmemedical.security;
+
+import static acmemedical.utility.MyConstants.CREDENTIAL_CACHE_DIGEST_ALGORITHM;
+import static acmemedical.utility.MyConstants.CREDENTIAL_CACHE_MAX_ENTRIES;
+import static acmemedical.utility.MyConstants.CREDENTIAL_CACHE_TTL_SECONDS;
+import static acmemedical.utility.MyConstants.CREDENTIAL_INVALIDATION_RETENTION_SECONDS;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.security.enterprise.identitystore.CredentialValidationResult;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Bounded, TTL-evicting cache of recently verified username/password pairs.
+ * <p>
+ * The presented password is never stored:  the key is the username plus an HMAC of the password,
+ * computed with a random per-JVM secret, so a heap dump does not reveal (or allow offline guessing of)
+ * any password.  A hit lets {@link CustomIdentityStore} skip both the JPA lookups and the
+ * (deliberately expensive) PBKDF2 verification.
+ * <p>
+ * Every invalidation is stamped with a generation;  a verification captures {@link #generation()} before
+ * it reads the user and its result is only cached if the user has not been invalidated since, so a
+ * verification that read the old pw_hash cannot re-insert it after a password change or delete.
+ */
+@ApplicationScoped
+public class VerifiedCredentialCache {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private static final long TTL_NANOS = TimeUnit.SECONDS.toNanos(CREDENTIAL_CACHE_TTL_SECONDS);
+    private static final long RETENTION_NANOS = TimeUnit.SECONDS.toNanos(CREDENTIAL_INVALIDATION_RETENTION_SECONDS);
+
+    protected static final class Entry {
+        final String username;
+        final CredentialValidationResult result;
+        final long expiresAt;
+
+        Entry(String username, CredentialValidationResult result, long expiresAt) {
+            this.username = username;
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+
+    protected record Invalidation(long generation, long at) {
+    }
+
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder misses = new LongAdder();
+    protected final LongAdder evictions = new LongAdder();
+    protected final LongAdder invalidations = new LongAdder();
+
+    // access-ordered, so the eldest entry is the least recently used one;  guarded by itself
+    protected final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > CREDENTIAL_CACHE_MAX_ENTRIES) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    protected final AtomicLong generations = new AtomicLong();
+    protected final Map<String, Invalidation> invalidatedUsers = new ConcurrentHashMap<>();
+    protected volatile long invalidatedAllGeneration;
+
+    private final SecretKeySpec digestKey;
+
+    // javax.crypto.Mac is not thread-safe, so every request thread gets its own instance
+    private final ThreadLocal<Mac> digest = ThreadLocal.withInitial(this::newMac);
+
+    public VerifiedCredentialCache() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        digestKey = new SecretKeySpec(secret, CREDENTIAL_CACHE_DIGEST_ALGORITHM);
+    }
+
+    /**
+     * @return the cached (VALID) result for this username/password pair, or null on a miss
+     */
+    public CredentialValidationResult get(String username, String password) {
+        String key = keyFor(username, password);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (!entry.isExpired(System.nanoTime())) {
+                    hits.increment();
+                    return entry.result;
+                }
+                entries.remove(key);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * @return the current generation - to be captured before the user is read for a verification
+     */
+    public long generation() {
+        return generations.get();
+    }
+
+    /**
+     * @return true if the user was invalidated after the given {@link #generation()} was captured
+     */
+    public boolean isInvalidatedSince(String username, long generation) {
+        if (invalidatedAllGeneration > generation) {
+            return true;
+        }
+        Invalidation invalidation = invalidatedUsers.get(username);
+        return invalidation != null && invalidation.generation() > generation;
+    }
+
+    /**
+     * Cache a result verified against the user as read at {@code generation};  does nothing if the user
+     * has been invalidated since
+     */
+    public void put(String username, String password, CredentialValidationResult result, long generation) {
+        String key = keyFor(username, password);
+        Entry entry = new Entry(username, result, System.nanoTime() + TTL_NANOS);
+        // invalidate() stamps the user before it takes this lock to remove its entries, so an entry
+        // either sees the stamp here or is removed there
+        synchronized (entries) {
+            if (!isInvalidatedSince(username, generation)) {
+                entries.put(key, entry);
+            }
+        }
+    }
+
+    /**
+     * Forget every cached credential for the user - called whenever its pw_hash or roles change
+     * (or the user is removed)
+     */
+    public void invalidate(String username) {
+        if (username == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        invalidatedUsers.put(username, new Invalidation(generations.incrementAndGet(), now));
+        if (invalidatedUsers.size() > CREDENTIAL_CACHE_MAX_ENTRIES) {
+            // only stamps that no verification (or token) still in flight can be older than
+            invalidatedUsers.values().removeIf(i -> now - i.at() > RETENTION_NANOS);
+        }
+        boolean removed;
+        synchronized (entries) {
+            removed = entries.values().removeIf(e -> username.equals(e.username));
+        }
+        if (removed) {
+            invalidations.increment();
+            LOG.debug("invalidated cached credentials for {}", username);
+        }
+    }
+
+    public void invalidateAll() {
+        invalidatedAllGeneration = generations.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+        }
+        invalidations.increment();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        stats.put("size", size);
+        stats.put("maxSize", CREDENTIAL_CACHE_MAX_ENTRIES);
+        stats.put("ttlSeconds", CREDENTIAL_CACHE_TTL_SECONDS);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    protected String keyFor(String username, String password) {
+        byte[] mac = digest.get().doFinal(password.getBytes(StandardCharsets.UTF_8));
+        return username + ':' + Base64.getEncoder().encodeToString(mac);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(CREDENTIAL_CACHE_DIGEST_ALGORITHM);
+            mac.init(digestKey);
+            return mac;
+        }
+        catch (GeneralSecurityException e) {
+            throw new IllegalStateException("cannot create " + CREDENTIAL_CACHE_DIGEST_ALGORITHM, e);
+        }
+    }
+}
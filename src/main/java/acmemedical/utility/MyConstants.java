@@ -51,12 +51,38 @@ public interface MyConstants {
     public static final String RESOURCE_PATH_PHYSICIAN_ID_PATH =  "/{" + PHYSICIAN_ID_RESOURCE_NAME + "}";
     public static final String TRAINING_ID_RESOURCE_NAME = "training_id";
     public static final String RESOURCE_PATH_TRAINING_ID_PATH =  "/{" + TRAINING_ID_RESOURCE_NAME + "}";
+    public static final String METRICS_RESOURCE_NAME = "metrics";
+    public static final String CREDENTIAL_CACHE_METRICS_PATH = "credentialcache";
+    public static final String PASSWORD_HASHING_METRICS_PATH = "passwordhashing";
+    public static final String LOGIN_THROTTLE_METRICS_PATH = "loginthrottle";
+    public static final String SECOND_LEVEL_CACHE_METRICS_PATH = "secondlevelcache";
+    public static final String QUERY_METRICS_PATH = "queries";
+    public static final String SQL_METRICS_PATH = "sql";
+    public static final String SQL_METRICS_ENABLED_QUERY_PARAM = "enabled";
+    public static final String SQL_METRICS_HEADERS_QUERY_PARAM = "headers";
+    // per-request persistence work, on responses when switched on (see metrics/sql)
+    public static final String SQL_COUNT_HEADER = "X-SQL-Count";
+    public static final String DB_TIME_HEADER = "X-DB-Time";
+
+    // Keyset paging of collection resources:  ?limit=n&after=<id of the last row of the previous page>
+    // (for prescriptions the cursor is "<physicianId>:<patientId>").  Every list is paged:  a GET without
+    // 'limit' answers the first DEFAULT_PAGE_SIZE rows (and a Link to the rest), not the whole collection
+    public static final String PAGE_LIMIT_QUERY_PARAM = "limit";
+    public static final String PAGE_AFTER_QUERY_PARAM = "after";
+    public static final String PAGE_CURSOR_SEPARATOR = ":";
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    // ?stream=true:  the whole collection (from 'after' on, no limit) as one JSON array that is written while
+    // it is read;  the output is flushed and the persistence context cleared every STREAM_BATCH_SIZE rows
+    public static final String STREAM_QUERY_PARAM = "stream";
+    public static final int STREAM_BATCH_SIZE = 500;
     
     //REST constants for peertutor 
     public static final String MEDICINE_RESOURCE_NAME =  "medicine";
     public static final String MEDICINE_ID_RESOURCE_NAME =  "medicine_id";
     public static final String PATIENT_ID_RESOURCE_NAME = "patient_id";
     public static final String PRESCRIPTION_RESOURCE_PATH_ID_PATH = "physician/{physician_id}/patient/{patient_id}";
+    public static final String PRESCRIPTION_MEDICINE_RESOURCE_PATH = "medicine/{medicine_id}";
     public static final String PRESCRIPTION_RESOURCE_PATH_CREATE_PATH = "physician/{physician_id}/patient/{patient_id}/medicine/{medicine_id}";
 
     //Security constants
@@ -87,8 +113,88 @@ public interface MyConstants {
     public static final String PROPERTY_KEY_SIZE = "Pbkdf2PasswordHash.KeySizeBytes";
     public static final String DEFAULT_KEY_SIZE = "32";
 
+    // Bulk import ('patient/bulk', 'medicine/bulk'):  one JSON object per line, written in chunks of
+    // BULK_IMPORT_CHUNK_SIZE rows per transaction (a multiple of ID_BLOCK_SIZE / the JDBC batch size)
+    public static final String BULK_RESOURCE_PATH = "bulk";
+    public static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+    public static final int BULK_IMPORT_CHUNK_SIZE = 500;
+    public static final int BULK_IMPORT_MAX_REPORTED_ERRORS = 1000;
+    // most keys in the IN-list of one set-based UPDATE (a power of 2:  IN-lists are padded, see persistence.xml)
+    public static final int BULK_UPDATE_MAX_KEYS = 1024;
+
+    // Partitioned export ('export/{table}' and the nightly job, see acmemedical.ejb.PartitionedExport):
+    // every partition (a key range) is read on its own connection by one of EXPORT_WORKERS threads - keep
+    // it well below the maximum size of the JDBC pool (32 unless configured otherwise)
+    public static final String EXPORT_RESOURCE_NAME = "export";
+    public static final String EXPORT_TABLE_ELEMENT = "table";
+    public static final String EXPORT_TABLE_PATH = "{" + EXPORT_TABLE_ELEMENT + "}";
+    public static final String EXPORT_FORMAT_QUERY_PARAM = "format";
+    public static final String GZIP_MEDIA_TYPE = "application/gzip";
+    public static final String EXPORT_PARTITIONS_HEADER = "X-Export-Partitions";
+    public static final int EXPORT_WORKERS = Integer.getInteger("acmemedical.export.workers", 4);
+    public static final int EXPORT_PARTITIONS_PER_WORKER = 4;
+    public static final int EXPORT_QUEUE_CAPACITY = 64;
+    public static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+    public static final String EXPORT_DIRECTORY_PROPERTY = "acmemedical.export.dir";
+    public static final String EXPORT_NIGHTLY_FORMAT_PROPERTY = "acmemedical.export.format";
+
+    // PBKDF2 work runs on its own bounded pool (see acmemedical.security.PasswordHashingService),
+    // never on the HTTP worker threads;  when the queue is full new work is rejected (HTTP 503)
+    public static final int PASSWORD_HASHING_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    public static final int PASSWORD_HASHING_QUEUE_CAPACITY = 64;
+    public static final long PASSWORD_HASHING_TIMEOUT_SECONDS = 5;
+    public static final long PASSWORD_HASHING_RETRY_AFTER_SECONDS = 1;
+
+    // Failed-login throttling (see acmemedical.security.LoginThrottle):  after the given number of
+    // failures attempts are refused (HTTP 429) for 1, 2, 4 ... seconds, up to the maximum;  the 'user'
+    // failures are those of one username from one client address
+    public static final long LOGIN_UNKNOWN_USER_TTL_SECONDS = 60;
+    public static final int LOGIN_USER_FAILURES_BEFORE_BACKOFF = 3;
+    public static final int LOGIN_CLIENT_FAILURES_BEFORE_BACKOFF = 10;
+    public static final long LOGIN_BACKOFF_BASE_SECONDS = 1;
+    public static final long LOGIN_BACKOFF_MAX_SECONDS = 300;
+    public static final long LOGIN_FAILURE_WINDOW_SECONDS = 900;
+    public static final int LOGIN_THROTTLE_MAX_ENTRIES = 10_000;
+
+    // Successfully verified credentials are remembered for a short while so that PBKDF2 does not
+    // have to run on every single request (see acmemedical.security.VerifiedCredentialCache)
+    public static final int CREDENTIAL_CACHE_MAX_ENTRIES = 10_000;
+    public static final long CREDENTIAL_CACHE_TTL_SECONDS = 300;
+    public static final String CREDENTIAL_CACHE_DIGEST_ALGORITHM = "HmacSHA256";
+    // users whose role names are kept (see acmemedical.security.CustomIdentityStoreJPAHelper)
+    public static final int ROLE_NAMES_CACHE_MAX_ENTRIES = 10_000;
+
+    // Bearer tokens issued by the 'credential' resource (see acmemedical.security.BearerTokenService)
+    public static final String BEARER_AUTH = "Bearer";
+    public static final String TOKEN_SIGNATURE_ALGORITHM = "HmacSHA256";
+    public static final long TOKEN_TTL_SECONDS = 3600;
+    public static final String TOKEN_USERNAME_FORM_PARAM = "username";
+    public static final String TOKEN_PASSWORD_FORM_PARAM = "password";
+    // how long a user's invalidation stamp is kept once there are more than CREDENTIAL_CACHE_MAX_ENTRIES:
+    // at least as long as any token (or cached credential) issued before the invalidation lives
+    public static final long CREDENTIAL_INVALIDATION_RETENTION_SECONDS = Math.max(TOKEN_TTL_SECONDS, CREDENTIAL_CACHE_TTL_SECONDS);
+
     //JPA constants
     public static final String PU_NAME = "acmemedical-PU";
     public static final String PARAM1 = "param1";
+    public static final String PARAM2 = "param2";
+    public static final String PARAM3 = "param3";
+    public static final String PARAM4 = "param4";
+    public static final String PARAM5 = "param5";
+    public static final String PARAM6 = "param6";
+    // Ids of PojoBase entities come from the 'id_generator' table, one row per entity table, a block
+    // of ID_BLOCK_SIZE at a time (pooled-lo) - an INSERT no longer has to run immediately to learn its id,
+    // so inserts can be JDBC-batched.  Keep it equal to 'hibernate.jdbc.batch_size' in persistence.xml
+    public static final String ID_GENERATOR_NAME = "pojo_id_generator";
+    public static final String ID_GENERATOR_TABLE = "id_generator";
+    public static final String ID_BLOCK_SIZE = "50";
+    // JDBC fetch size of streamed (scrolled) queries:  only with Integer.MIN_VALUE does MySQL Connector/J
+    // hand out rows as they arrive instead of reading the whole result set into memory first
+    public static final int STREAM_FETCH_SIZE = Integer.MIN_VALUE;
+
+    // SQL logging ('org.hibernate.SQL' in log4j2.xml) is sampled per request:  one request in
+    // SQL_LOG_SAMPLE_RATE gets SQL_LOG_CONTEXT_KEY=true in its ThreadContext and only those log their SQL
+    public static final String SQL_LOG_CONTEXT_KEY = "sqlLog";
+    public static final int SQL_LOG_SAMPLE_RATE = 100;
 
 }
@@ -20,7 +20,7 @@ USE `acmemedical`;
 -- ------------------------------------------------------------------------
 
 CREATE TABLE IF NOT EXISTS `physician` (
-  `id` INT NOT NULL AUTO_INCREMENT,
+  `id` INT NOT NULL,
   `first_name` VARCHAR(50) NOT NULL,
   `last_name` VARCHAR(50) NOT NULL,
   `created` DATETIME NULL,
@@ -33,7 +33,7 @@ CREATE TABLE IF NOT EXISTS `physician` (
 -- Table `medical_school`
 -- -----------------------------------------------------
 CREATE TABLE IF NOT EXISTS `medical_school` (
-  `school_id` INT NOT NULL AUTO_INCREMENT,
+  `school_id` INT NOT NULL,
   `name` VARCHAR(100) NOT NULL,
   `public` BIT(1) NOT NULL,
   `created` DATETIME NULL,
@@ -47,7 +47,7 @@ CREATE TABLE IF NOT EXISTS `medical_school` (
 -- Table `medical_training`
 -- -----------------------------------------------------
 CREATE TABLE IF NOT EXISTS `medical_training` (
-  `training_id` INT NOT NULL AUTO_INCREMENT,
+  `training_id` INT NOT NULL,
   `school_id` INT NOT NULL,
   `start_date` DATETIME NOT NULL,
   `end_date` DATETIME NOT NULL,
@@ -65,7 +65,7 @@ CREATE TABLE IF NOT EXISTS `medical_training` (
 -- Table `medical_certificate`
 -- -----------------------------------------------------
 CREATE TABLE IF NOT EXISTS `medical_certificate` (
-  `certificate_id` INT NOT NULL AUTO_INCREMENT,
+  `certificate_id` INT NOT NULL,
   `physician_id` INT NOT NULL,
   `training_id` INT NULL,
   `signed` BIT(1) NOT NULL,
@@ -92,7 +92,7 @@ CREATE TABLE IF NOT EXISTS `medical_certificate` (
 -- Table `medicine`
 -- -----------------------------------------------------
 CREATE TABLE IF NOT EXISTS `medicine` (
-  `medicine_id` INT NOT NULL AUTO_INCREMENT,
+  `medicine_id` INT NOT NULL,
   `drug_name` VARCHAR(50) NOT NULL,
   `manufacturer_name` VARCHAR(50) NOT NULL,
   `dosage_information` VARCHAR(100) NOT NULL,
@@ -106,7 +106,7 @@ CREATE TABLE IF NOT EXISTS `medicine` (
 -- Table `patient`
 -- -----------------------------------------------------
 CREATE TABLE IF NOT EXISTS `patient` (
-  `patient_id` INT NOT NULL AUTO_INCREMENT,
+  `patient_id` INT NOT NULL,
   `first_name` VARCHAR(50) NOT NULL,
   `last_name` VARCHAR(50) NOT NULL,
   `year_of_birth` INT NOT NULL,
@@ -152,6 +152,17 @@ CREATE TABLE IF NOT EXISTS `prescription` (
     ON UPDATE NO ACTION
 );
 
+-- -----------------------------------------------------
+-- Table `id_generator`
+-- Id blocks for the PojoBase entities (see PojoBase.id), one row per entity table;  `next_val` is
+-- the first id of the next unallocated block
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `id_generator` (
+  `segment_name` VARCHAR(255) NOT NULL,
+  `next_val` BIGINT NOT NULL,
+  PRIMARY KEY (`segment_name`)
+);
+
 -- Table for SecurityUser
 
 CREATE TABLE IF NOT EXISTS `security_user` (
@@ -38,9 +38,20 @@ INSERT INTO `security_role` (`role_id`, `name`)
 -- value for `password_hash` column computed by PBKDF2HashGenerator
 --   user 'admin', password 'admin'
 --   user 'cst8277', password '8277'
+--   user 'corrupt_hash' has a malformed hash:  authenticating as it must fail with 401, not 500
 INSERT INTO `security_user` (`user_id`, `password_hash`, `username`, `physician_id`)
-  VALUES (1, 'PBKDF2WithHmacSHA256:2048:hYKwYbuwalL2mbXT3Lx8QgJuTWT8GgZcGljMPEW+TZA=:6GmiBW47QsKVgqF7wzt/wjQAMDd0RVMok3M8WPu8Y1U=', 'admin', null), (2, 'PBKDF2WithHmacSHA256:2048:ZJC4ipE7LQOZzOQyd2ch7VOxHJWwrVfDFTbo9H+U5Fw=:j5Wulo/tVmolv8hqu0k5ejTOPEMbzviQXStg/0/c6Qo=', 'cst8277', 1);
+  VALUES (1, 'PBKDF2WithHmacSHA256:2048:hYKwYbuwalL2mbXT3Lx8QgJuTWT8GgZcGljMPEW+TZA=:6GmiBW47QsKVgqF7wzt/wjQAMDd0RVMok3M8WPu8Y1U=', 'admin', null), (2, 'PBKDF2WithHmacSHA256:2048:ZJC4ipE7LQOZzOQyd2ch7VOxHJWwrVfDFTbo9H+U5Fw=:j5Wulo/tVmolv8hqu0k5ejTOPEMbzviQXStg/0/c6Qo=', 'cst8277', 1),
+  (3, 'PBKDF2WithHmacSHA256:not-a-number:corrupt', 'corrupt_hash', null);
 
 --  data for table `user_has_role`
 INSERT INTO `user_has_role` (`user_id`, `role_id`)
-  VALUES (1,1), (2,2);
+  VALUES (1,1), (2,2), (3,2);
+
+-- data for table `id_generator`:  ids handed out by Hibernate start after the rows above
+INSERT INTO `id_generator` (`segment_name`, `next_val`)
+  SELECT 'physician', COALESCE(MAX(`id`), 0) + 1 FROM `physician`
+  UNION ALL SELECT 'medical_school', COALESCE(MAX(`school_id`), 0) + 1 FROM `medical_school`
+  UNION ALL SELECT 'medical_training', COALESCE(MAX(`training_id`), 0) + 1 FROM `medical_training`
+  UNION ALL SELECT 'medical_certificate', COALESCE(MAX(`certificate_id`), 0) + 1 FROM `medical_certificate`
+  UNION ALL SELECT 'medicine', COALESCE(MAX(`medicine_id`), 0) + 1 FROM `medicine`
+  UNION ALL SELECT 'patient', COALESCE(MAX(`patient_id`), 0) + 1 FROM `patient`;
@@ -0,0 +1,443 @@
+/********************************************************************************************************
+ * File:  LoadGenerator.java
+ * Course Materials CST 8277
+ *
+ * Note:  this is NOT a JUnit test (the name does not match the surefire includes), run it by hand
+ *        against a deployed application, e.g. from the IDE or with:
+ *        mvn -Ptest test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=acmemedical.LoadGenerator
+ *
+ */
+package acmemedical;
+
+import static acmemedical.utility.MyConstants.APPLICATION_API_VERSION;
+import static acmemedical.utility.MyConstants.APPLICATION_CONTEXT_ROOT;
+import static acmemedical.utility.MyConstants.DEFAULT_ADMIN_USER;
+import static acmemedical.utility.MyConstants.DEFAULT_ADMIN_USER_PASSWORD;
+import static acmemedical.utility.MyConstants.DEFAULT_USER;
+import static acmemedical.utility.MyConstants.DEFAULT_USER_PASSWORD;
+import static acmemedical.utility.MyConstants.MEDICAL_CERTIFICATE_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.MEDICAL_SCHOOL_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.MEDICAL_TRAINING_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.MEDICINE_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.PATIENT_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.PHYSICIAN_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.PRESCRIPTION_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.PRESCRIPTION_RESOURCE_PATH_ID_PATH;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriBuilder;
+
+import org.glassfish.jersey.client.authentication.HttpAuthenticationFeature;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import acmemedical.entity.Medicine;
+
+/**
+ * Drives a mix of admin and user traffic across all resources with N concurrent clients at a target
+ * rate, and reports latency percentiles (p50/p99/p99.9) and error rates per endpoint.
+ * <p>
+ * The clients are set up as in {@link TestACMEMedicalSystem} (same URI, Jackson provider and Basic
+ * credentials of both roles).  At a target rate every client has a schedule of send times and latency is
+ * measured from the scheduled time, so a stalled server shows up as latency instead of as fewer
+ * requests.  Every response that is not 2xx or 304 - or an exception - counts as an error.
+ * <p>
+ * The report is printed and written as JSON (endpoints sorted by name) so that reports of two builds can
+ * be diffed.  Every request of the warm-up must succeed as well:  otherwise the run is refused, since an
+ * endpoint that always fails (a wrong path, a missing row) would only measure the error path.
+ * <p>
+ * With {@code load.scaling} the same mix is run unthrottled for 1, 2, 4 ... up to {@code load.clients}
+ * clients, one report per client count:  with the service beans under {@code @Lock(LockType.READ)} the
+ * requests/second should grow with the clients until the server's cores (or the DB pool) are saturated;
+ * under a container-managed WRITE lock it stays flat at single-client throughput.
+ * <p>
+ * System properties (all optional):
+ * <ul>
+ * <li>{@code load.host} / {@code load.port} - where the application is deployed (localhost:8080)</li>
+ * <li>{@code load.clients} - concurrent clients (2 x available processors)</li>
+ * <li>{@code load.rate} - target requests/second of all clients together, 0 for as fast as possible (200)</li>
+ * <li>{@code load.seconds} - measurement time (30), after {@code load.warmupSeconds} (5) not recorded</li>
+ * <li>{@code load.adminShare} - fraction of the requests made as admin, the rest as user (0.3)</li>
+ * <li>{@code load.scaling} - measure throughput for a growing number of clients instead (false)</li>
+ * <li>{@code load.report} - the JSON report (target/load-report.json)</li>
+ * </ul>
+ */
+public class LoadGenerator {
+
+    /**
+     * One unit of traffic:  a single request, or a few that belong together (create, then delete)
+     */
+    interface Operation {
+        void run(WebTarget webTarget, Recorder recorder);
+    }
+
+    /**
+     * @param weight relative frequency among the operations of the same role
+     */
+    record WeightedOperation(int weight, Operation operation) {
+    }
+
+    static WeightedOperation get(int weight, String path) {
+        return new WeightedOperation(weight, (webTarget, recorder) ->
+            recorder.time("GET " + path, webTarget.path(path), target -> target.request().get()));
+    }
+
+    static final List<WeightedOperation> ADMIN_OPERATIONS = List.of(
+        get(4, PHYSICIAN_RESOURCE_NAME),
+        get(4, PHYSICIAN_RESOURCE_NAME + "/1"),
+        get(4, PATIENT_RESOURCE_NAME),
+        get(4, PATIENT_RESOURCE_NAME + "/1"),
+        get(4, MEDICINE_RESOURCE_NAME),
+        get(4, MEDICINE_RESOURCE_NAME + "/1"),
+        get(3, MEDICAL_SCHOOL_RESOURCE_NAME),
+        get(3, MEDICAL_SCHOOL_RESOURCE_NAME + "/1"),
+        get(3, MEDICAL_TRAINING_RESOURCE_NAME),
+        get(3, MEDICAL_TRAINING_RESOURCE_NAME + "/1"),
+        get(3, MEDICAL_CERTIFICATE_RESOURCE_NAME),
+        get(3, MEDICAL_CERTIFICATE_RESOURCE_NAME + "/1"),
+        get(3, PRESCRIPTION_RESOURCE_NAME),
+        get(3, UriBuilder.fromPath(PRESCRIPTION_RESOURCE_NAME).path(PRESCRIPTION_RESOURCE_PATH_ID_PATH).build(1, 1).toString()),
+        new WeightedOperation(1, LoadGenerator::createAndDeleteMedicine)
+    );
+
+    static final List<WeightedOperation> USER_OPERATIONS = List.of(
+        // the default user is linked to physician 1
+        get(2, PHYSICIAN_RESOURCE_NAME + "/1"),
+        get(4, PATIENT_RESOURCE_NAME),
+        get(4, PATIENT_RESOURCE_NAME + "/1"),
+        get(4, MEDICINE_RESOURCE_NAME),
+        get(4, MEDICINE_RESOURCE_NAME + "/1"),
+        get(3, MEDICAL_SCHOOL_RESOURCE_NAME),
+        get(3, MEDICAL_SCHOOL_RESOURCE_NAME + "/1"),
+        get(3, MEDICAL_TRAINING_RESOURCE_NAME),
+        get(3, MEDICAL_TRAINING_RESOURCE_NAME + "/1")
+    );
+
+    static void createAndDeleteMedicine(WebTarget webTarget, Recorder recorder) {
+        Medicine newMedicine = new Medicine();
+        newMedicine.setMedicine("Load", "Load Generator Inc", "as needed");
+        Medicine created = recorder.time("POST " + MEDICINE_RESOURCE_NAME, webTarget.path(MEDICINE_RESOURCE_NAME),
+            target -> target.request().post(Entity.json(newMedicine)), Medicine.class);
+        if (created != null) {
+            recorder.time("DELETE " + MEDICINE_RESOURCE_NAME + "/{id}", webTarget.path(MEDICINE_RESOURCE_NAME + "/" + created.getId()),
+                target -> target.request().delete());
+        }
+    }
+
+    /**
+     * Latencies and outcomes of one endpoint
+     */
+    static class Samples {
+        long[] nanos = new long[1024];
+        int count;
+        int errors;
+        final Map<Integer, Integer> statuses = new TreeMap<>();
+
+        void add(long latency, int status, boolean error) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = latency;
+            statuses.merge(status, 1, Integer::sum);
+            if (error) {
+                errors++;
+            }
+        }
+
+        void addAll(Samples other) {
+            if (count + other.count > nanos.length) {
+                nanos = Arrays.copyOf(nanos, Math.max(2 * nanos.length, count + other.count));
+            }
+            System.arraycopy(other.nanos, 0, nanos, count, other.count);
+            count += other.count;
+            errors += other.errors;
+            other.statuses.forEach((status, n) -> statuses.merge(status, n, Integer::sum));
+        }
+    }
+
+    /**
+     * Records the requests of one client thread (no sharing, merged at the end)
+     */
+    static class Recorder {
+        final Map<String, Samples> endpoints = new HashMap<>();
+        /** "endpoint status" -> count of the failed requests of the warm-up */
+        final Map<String, Integer> warmupFailures = new TreeMap<>();
+        /** scheduled send time of the next request (0:  when it is actually sent) */
+        long scheduledStart;
+        boolean recording;
+
+        void time(String endpoint, WebTarget target, Function<WebTarget, Response> call) {
+            time(endpoint, target, call, null);
+        }
+
+        /**
+         * @return the entity of a successful response as {@code entityType}, otherwise (and if no type
+         * is asked for) null
+         */
+        <T> T time(String endpoint, WebTarget target, Function<WebTarget, Response> call, Class<T> entityType) {
+            long start = scheduledStart != 0 ? scheduledStart : System.nanoTime();
+            scheduledStart = 0;
+            int status = 0;
+            T entity = null;
+            try (Response response = call.apply(target)) {
+                status = response.getStatus();
+                if (entityType != null && status / 100 == 2) {
+                    entity = response.readEntity(entityType);
+                } else {
+                    response.readEntity(String.class);
+                }
+            }
+            catch (RuntimeException e) {
+                // no status:  recorded as 0
+            }
+            long latency = System.nanoTime() - start;
+            boolean error = status == 0 || !(status / 100 == 2 || status == 304);
+            if (recording) {
+                endpoints.computeIfAbsent(endpoint, e -> new Samples()).add(latency, status, error);
+            }
+            else if (error) {
+                warmupFailures.merge(endpoint + " " + status, 1, Integer::sum);
+            }
+            return entity;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = System.getProperty("load.host", TestACMEMedicalSystem.HOST);
+        int port = Integer.getInteger("load.port", TestACMEMedicalSystem.PORT);
+        int clients = Integer.getInteger("load.clients", 2 * Runtime.getRuntime().availableProcessors());
+        int rate = Integer.getInteger("load.rate", 200);
+        int seconds = Integer.getInteger("load.seconds", 30);
+        int warmupSeconds = Integer.getInteger("load.warmupSeconds", 5);
+        double adminShare = Double.parseDouble(System.getProperty("load.adminShare", "0.3"));
+        boolean scaling = Boolean.getBoolean("load.scaling");
+        File reportFile = new File(System.getProperty("load.report", "target/load-report.json"));
+
+        URI uri = UriBuilder
+            .fromUri(APPLICATION_CONTEXT_ROOT + APPLICATION_API_VERSION)
+            .scheme(TestACMEMedicalSystem.HTTP_SCHEMA)
+            .host(host)
+            .port(port)
+            .build();
+        HttpAuthenticationFeature adminAuth = HttpAuthenticationFeature.basic(DEFAULT_ADMIN_USER, DEFAULT_ADMIN_USER_PASSWORD);
+        HttpAuthenticationFeature userAuth = HttpAuthenticationFeature.basic(DEFAULT_USER, DEFAULT_USER_PASSWORD);
+
+        Map<String, Object> report;
+        if (scaling) {
+            // as fast as possible, for a growing number of clients
+            List<Map<String, Object>> runs = new ArrayList<>();
+            for (int n = 1; n <= clients; n *= 2) {
+                System.out.printf("%d clients, unthrottled, %ds (+%ds warm-up), %.0f%% admin%n", n, seconds, warmupSeconds,
+                    adminShare * 100);
+                Map<String, Object> run = new LinkedHashMap<>();
+                run.put("clients", n);
+                run.putAll(report(measure(uri, adminAuth, userAuth, n, 0, seconds, warmupSeconds, adminShare), seconds));
+                runs.add(run);
+            }
+            report = new LinkedHashMap<>();
+            report.put("runs", runs);
+        } else {
+            System.out.printf("%d clients, %s, %ds (+%ds warm-up), %.0f%% admin%n", clients,
+                rate > 0 ? rate + " req/s" : "unthrottled", seconds, warmupSeconds, adminShare * 100);
+            report = report(measure(uri, adminAuth, userAuth, clients, rate, seconds, warmupSeconds, adminShare), seconds);
+        }
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("uri", uri.toString());
+        settings.put("clients", clients);
+        settings.put("rate", scaling ? 0 : rate);
+        settings.put("seconds", seconds);
+        settings.put("adminShare", adminShare);
+        settings.put("scaling", scaling);
+        report.put("settings", settings);
+
+        File reportDir = reportFile.getAbsoluteFile().getParentFile();
+        if (reportDir != null) {
+            reportDir.mkdirs();
+        }
+        writeReport(reportFile, report);
+        System.out.println("report written to " + reportFile);
+    }
+
+    /**
+     * @return the merged samples of all clients, by endpoint
+     * @throws IllegalStateException if a request failed during the warm-up
+     */
+    static Map<String, Samples> measure(URI uri, HttpAuthenticationFeature adminAuth, HttpAuthenticationFeature userAuth,
+        int clients, int rate, int seconds, int warmupSeconds, double adminShare) throws InterruptedException {
+        List<Recorder> recorders = run(uri, adminAuth, userAuth, clients, rate, seconds, warmupSeconds, adminShare);
+        Map<String, Integer> warmupFailures = new TreeMap<>();
+        Map<String, Samples> endpoints = new TreeMap<>();
+        for (Recorder recorder : recorders) {
+            recorder.warmupFailures.forEach((failure, n) -> warmupFailures.merge(failure, n, Integer::sum));
+            recorder.endpoints.forEach((endpoint, samples) -> endpoints.computeIfAbsent(endpoint, e -> new Samples()).addAll(samples));
+        }
+        if (!warmupFailures.isEmpty()) {
+            throw new IllegalStateException("requests failed during the warm-up (endpoint status=count) - no report: "
+                + warmupFailures);
+        }
+        return endpoints;
+    }
+
+    static List<Recorder> run(URI uri, HttpAuthenticationFeature adminAuth, HttpAuthenticationFeature userAuth, int clients,
+        int rate, int seconds, int warmupSeconds, double adminShare) throws InterruptedException {
+        List<Recorder> recorders = new ArrayList<>();
+        List<Client> openClients = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        CountDownLatch start = new CountDownLatch(1);
+        long[] times = new long[3]; // start, end of warm-up, end
+        // every client sends at 1/clients of the total rate, the clients staggered over one interval
+        long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(clients) / rate : 0;
+        for (int i = 0; i < clients; i++) {
+            Client admin = ClientBuilder.newClient().register(MyObjectMapperProvider.class).register(adminAuth);
+            Client user = ClientBuilder.newClient().register(MyObjectMapperProvider.class).register(userAuth);
+            openClients.add(admin);
+            openClients.add(user);
+            WebTarget adminTarget = admin.target(uri);
+            WebTarget userTarget = user.target(uri);
+            Recorder recorder = new Recorder();
+            recorders.add(recorder);
+            long offset = interval * i / clients;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    long next = times[0] + offset;
+                    for (long now = System.nanoTime(); now < times[2]; now = System.nanoTime()) {
+                        if (interval > 0) {
+                            if (next > now) {
+                                LockSupport.parkNanos(next - now);
+                            }
+                            recorder.scheduledStart = next;
+                            next += interval;
+                        }
+                        recorder.recording = recorder.scheduledStart >= times[1] || System.nanoTime() >= times[1];
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        if (random.nextDouble() < adminShare) {
+                            pick(ADMIN_OPERATIONS, random).run(adminTarget, recorder);
+                        } else {
+                            pick(USER_OPERATIONS, random).run(userTarget, recorder);
+                        }
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        times[0] = System.nanoTime();
+        times[1] = times[0] + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        times[2] = times[1] + TimeUnit.SECONDS.toNanos(seconds);
+        start.countDown();
+        pool.shutdown();
+        boolean finished = pool.awaitTermination(warmupSeconds + seconds + 60L, TimeUnit.SECONDS);
+        if (!finished) {
+            // a client is stuck in a request:  interrupt it, abort its connections and give up on the run
+            pool.shutdownNow();
+            openClients.forEach(Client::close);
+            if (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+                System.err.println("clients still running after shutdownNow - their threads are abandoned");
+            }
+            // the recorders of clients that did not finish may still be written to - never merge them
+            throw new IllegalStateException("clients did not finish " + (warmupSeconds + seconds + 60)
+                + "s after the start - no report");
+        }
+        openClients.forEach(Client::close);
+        return recorders;
+    }
+
+    static Operation pick(List<WeightedOperation> operations, ThreadLocalRandom random) {
+        int total = 0;
+        for (WeightedOperation operation : operations) {
+            total += operation.weight();
+        }
+        int n = random.nextInt(total);
+        for (WeightedOperation operation : operations) {
+            n -= operation.weight();
+            if (n < 0) {
+                return operation.operation();
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    static Map<String, Object> report(Map<String, Samples> endpoints, int seconds) {
+        Map<String, Object> byEndpoint = new LinkedHashMap<>();
+        long requests = 0;
+        long errors = 0;
+        System.out.printf("%-36s %9s %8s %8s %10s %10s %10s %10s%n", "endpoint", "requests", "errors", "error%",
+            "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, Samples> entry : endpoints.entrySet()) {
+            Samples samples = entry.getValue();
+            long[] sorted = Arrays.copyOf(samples.nanos, samples.count);
+            Arrays.sort(sorted);
+            double errorRate = samples.count == 0 ? 0.0 : (double) samples.errors / samples.count;
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("requests", samples.count);
+            stats.put("errors", samples.errors);
+            stats.put("errorRate", errorRate);
+            stats.put("p50Millis", millis(percentile(sorted, 0.50)));
+            stats.put("p99Millis", millis(percentile(sorted, 0.99)));
+            stats.put("p999Millis", millis(percentile(sorted, 0.999)));
+            stats.put("maxMillis", millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+            stats.put("statuses", samples.statuses);
+            byEndpoint.put(entry.getKey(), stats);
+            requests += samples.count;
+            errors += samples.errors;
+            System.out.printf("%-36s %9d %8d %8.2f %10.2f %10.2f %10.2f %10.2f%n", entry.getKey(), samples.count,
+                samples.errors, errorRate * 100, stats.get("p50Millis"), stats.get("p99Millis"), stats.get("p999Millis"),
+                stats.get("maxMillis"));
+        }
+        System.out.printf("%d requests (%.1f req/s), %d errors%n", requests, requests / (double) seconds, errors);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("requests", requests);
+        report.put("requestsPerSecond", requests / (double) seconds);
+        report.put("errors", errors);
+        report.put("endpoints", byEndpoint);
+        return report;
+    }
+
+    /**
+     * Nearest-rank percentile of sorted samples
+     */
+    static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    static double millis(long nanos) {
+        // 3 decimals:  sub-millisecond differences are noise between two runs anyway
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+    static void writeReport(File reportFile, Map<String, Object> report) throws IOException {
+        ObjectMapper mapper = MyObjectMapperProvider.defaultObjectMapper.copy()
+            .enable(SerializationFeature.INDENT_OUTPUT)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        mapper.writeValue(reportFile, report);
+    }
+}
@@ -9,10 +9,15 @@ package acmemedical;
 
 import static acmemedical.utility.MyConstants.APPLICATION_API_VERSION;
 import static acmemedical.utility.MyConstants.APPLICATION_CONTEXT_ROOT;
+import static acmemedical.utility.MyConstants.BULK_RESOURCE_PATH;
 import static acmemedical.utility.MyConstants.DEFAULT_ADMIN_USER;
 import static acmemedical.utility.MyConstants.DEFAULT_ADMIN_USER_PASSWORD;
 import static acmemedical.utility.MyConstants.DEFAULT_USER;
+import static acmemedical.utility.MyConstants.DEFAULT_PAGE_SIZE;
 import static acmemedical.utility.MyConstants.DEFAULT_USER_PASSWORD;
+import static acmemedical.utility.MyConstants.EXPORT_FORMAT_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.EXPORT_PARTITIONS_HEADER;
+import static acmemedical.utility.MyConstants.EXPORT_RESOURCE_NAME;
 import static acmemedical.utility.MyConstants.PHYSICIAN_RESOURCE_NAME;
 import static acmemedical.utility.MyConstants.PATIENT_RESOURCE_NAME;
 import static acmemedical.utility.MyConstants.MEDICINE_RESOURCE_NAME;
@@ -20,20 +25,59 @@ import static acmemedical.utility.MyConstants.MEDICAL_SCHOOL_RESOURCE_NAME;
 import static acmemedical.utility.MyConstants.MEDICAL_TRAINING_RESOURCE_NAME;
 import static acmemedical.utility.MyConstants.MEDICAL_CERTIFICATE_RESOURCE_NAME;
 import static acmemedical.utility.MyConstants.PRESCRIPTION_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.MAX_PAGE_SIZE;
+import static acmemedical.utility.MyConstants.METRICS_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.NDJSON_MEDIA_TYPE;
+import static acmemedical.utility.MyConstants.CREDENTIAL_CACHE_METRICS_PATH;
+import static acmemedical.utility.MyConstants.CREDENTIAL_RESOURCE_NAME;
+import static acmemedical.utility.MyConstants.PASSWORD_HASHING_METRICS_PATH;
+import static acmemedical.utility.MyConstants.LOGIN_THROTTLE_METRICS_PATH;
+import static acmemedical.utility.MyConstants.PAGE_AFTER_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.PAGE_LIMIT_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.QUERY_METRICS_PATH;
+import static acmemedical.utility.MyConstants.SECOND_LEVEL_CACHE_METRICS_PATH;
+import static acmemedical.utility.MyConstants.SQL_COUNT_HEADER;
+import static acmemedical.utility.MyConstants.SQL_METRICS_ENABLED_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.SQL_METRICS_HEADERS_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.SQL_METRICS_PATH;
+import static acmemedical.utility.MyConstants.STREAM_BATCH_SIZE;
+import static acmemedical.utility.MyConstants.STREAM_QUERY_PARAM;
+import static acmemedical.utility.MyConstants.TOKEN_PASSWORD_FORM_PARAM;
+import static acmemedical.utility.MyConstants.TOKEN_USERNAME_FORM_PARAM;
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
 import static org.hamcrest.collection.IsEmptyCollection.empty;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.lang.invoke.MethodHandles;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import jakarta.ws.rs.client.Client;
 import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.client.Invocation;
 import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.Form;
 import jakarta.ws.rs.core.GenericType;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Link;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriBuilder;
 
@@ -51,6 +95,7 @@ import org.junit.jupiter.api.TestMethodOrder;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 
+import acmemedical.entity.DurationAndStatus;
 import acmemedical.entity.Physician;
 import acmemedical.entity.Patient;
 import acmemedical.entity.Medicine;
@@ -58,6 +103,7 @@ import acmemedical.entity.MedicalSchool;
 import acmemedical.entity.MedicalTraining;
 import acmemedical.entity.MedicalCertificate;
 import acmemedical.entity.Prescription;
+import acmemedical.entity.PrescriptionPK;
 import acmemedical.entity.PublicSchool;
 import acmemedical.entity.PrivateSchool;
 
@@ -97,6 +143,122 @@ public class TestACMEMedicalSystem {
         webTarget = client.target(uri);
     }
 
+    /**
+     * A target of its own for each role:  a client keeps only the first HttpAuthenticationFeature
+     * registered on it, so one shared target cannot send requests as two different users
+     */
+    protected WebTarget target(HttpAuthenticationFeature auth) {
+        return ClientBuilder.newClient().register(MyObjectMapperProvider.class).register(new LoggingFeature())
+            .target(uri).register(auth);
+    }
+
+    protected Patient createPatient(String lastName) {
+        Patient newPatient = new Patient();
+        newPatient.setFirstName("Test");
+        newPatient.setLastName(lastName);
+        newPatient.setYear(1990);
+        newPatient.setAddress("1 Test St");
+        newPatient.setHeight(170);
+        newPatient.setWeight(70);
+        newPatient.setSmoker((byte) 0);
+        Response response = target(adminAuth).path(PATIENT_RESOURCE_NAME).request().post(jakarta.ws.rs.client.Entity.json(newPatient));
+        assertThat(response.getStatus(), is(200));
+        return response.readEntity(Patient.class);
+    }
+
+    protected Medicine createMedicine(String drugName) {
+        Medicine newMedicine = new Medicine();
+        newMedicine.setDrugName(drugName);
+        newMedicine.setManufacturerName("Test Labs");
+        newMedicine.setDosageInformation("once");
+        Response response = target(adminAuth).path(MEDICINE_RESOURCE_NAME).request().post(jakarta.ws.rs.client.Entity.json(newMedicine));
+        assertThat(response.getStatus(), is(200));
+        return response.readEntity(Medicine.class);
+    }
+
+    protected void createPrescription(int physicianId, int patientId, int medicineId) {
+        Prescription newPrescription = new Prescription();
+        newPrescription.setNumberOfRefills(1);
+        newPrescription.setPrescriptionInformation("test");
+        Response response = target(adminAuth)
+            .path(PRESCRIPTION_RESOURCE_NAME + "/physician/" + physicianId + "/patient/" + patientId + "/medicine/" + medicineId)
+            .request()
+            .post(jakarta.ws.rs.client.Entity.json(newPrescription));
+        assertThat(response.getStatus(), is(200));
+        response.close();
+    }
+
+    /**
+     * @return number of patients imported (all of them:  every row is valid)
+     */
+    protected int bulkImportPatients(int count, String lastName) {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            ndjson.append("{\"firstName\":\"Bulk").append(i).append("\",\"lastName\":\"").append(lastName)
+                .append("\",\"year\":1990,\"address\":\"1 Bulk St\",\"height\":170,\"weight\":70,\"smoker\":0}\n");
+        }
+        Response response = target(adminAuth)
+            .path(PATIENT_RESOURCE_NAME + "/" + BULK_RESOURCE_PATH)
+            .request()
+            .post(jakarta.ws.rs.client.Entity.entity(ndjson.toString(), NDJSON_MEDIA_TYPE));
+        assertThat(response.getStatus(), is(200));
+        Map<String, Object> report = response.readEntity(new GenericType<Map<String, Object>>(){});
+        return ((Number) report.get("imported")).intValue();
+    }
+
+    /**
+     * Switch the X-SQL-Count/X-DB-Time response headers on (with the recording behind them) or off
+     */
+    protected void sqlHeaders(boolean on) {
+        WebTarget metrics = target(adminAuth).path(METRICS_RESOURCE_NAME + "/" + SQL_METRICS_PATH);
+        if (on) {
+            metrics = metrics.queryParam(SQL_METRICS_ENABLED_QUERY_PARAM, true);
+        }
+        Response switched = metrics
+            .queryParam(SQL_METRICS_HEADERS_QUERY_PARAM, on)
+            .request()
+            .put(jakarta.ws.rs.client.Entity.text(""));
+        assertThat(switched.getStatus(), is(200));
+        switched.close();
+    }
+
+    /**
+     * PUT as admin, unconditionally if ifMatch is null
+     */
+    protected Response put(String path, String ifMatch, Object entity) {
+        Invocation.Builder request = target(adminAuth).path(path).request();
+        if (ifMatch != null) {
+            request = request.header(HttpHeaders.IF_MATCH, ifMatch);
+        }
+        return request.put(jakarta.ws.rs.client.Entity.json(entity));
+    }
+
+    /**
+     * @return the representation of a successful PUT, which must come with the ETag of its version
+     */
+    protected Map<String, Object> assertUpdated(Response response) {
+        assertThat(response.getStatus(), is(200));
+        Map<String, Object> representation = response.readEntity(new GenericType<Map<String, Object>>(){});
+        assertThat(response.getEntityTag().getValue(), is(representation.get("version").toString()));
+        return representation;
+    }
+
+    /**
+     * @return the lines of the gunzipped export of a table
+     */
+    protected List<String> export(String table, String format) throws IOException {
+        Response response = target(adminAuth)
+            .path(EXPORT_RESOURCE_NAME + "/" + table)
+            .queryParam(EXPORT_FORMAT_QUERY_PARAM, format)
+            .request()
+            .get();
+        assertThat(response.getStatus(), is(200));
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(response.readEntity(InputStream.class)), StandardCharsets.UTF_8))) {
+            return lines.lines().collect(Collectors.toList());
+        }
+    }
+
     @Test
     public void test01_all_physicians_with_adminrole() throws JsonMappingException, JsonProcessingException {
         Response response = webTarget
@@ -791,4 +953,792 @@ public class TestACMEMedicalSystem {
         assertThat(readPatient.getLastName(), is("Patient"));
         assertThat(readPatient.getYear(), is(1995));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void test56_credential_cache_metrics_with_adminrole() throws JsonMappingException, JsonProcessingException {
+        // the admin credentials were verified by earlier tests, so they must be served from the cache by now
+        webTarget.register(adminAuth).path(PHYSICIAN_RESOURCE_NAME + "/1").request().get().close();
+        Response response = webTarget
+            .register(adminAuth)
+            .path(METRICS_RESOURCE_NAME + "/" + CREDENTIAL_CACHE_METRICS_PATH)
+            .request()
+            .get();
+        assertThat(response.getStatus(), is(200));
+        Map<String, Object> metrics = response.readEntity(new GenericType<Map<String, Object>>(){});
+        assertThat(((Number) metrics.get("hits")).longValue(), is(greaterThan(0L)));
+    }
+
+    @Test
+    public void test57_credential_cache_metrics_with_userrole() throws JsonMappingException, JsonProcessingException {
+        Response response = webTarget
+            .register(userAuth)
+            .path(METRICS_RESOURCE_NAME + "/" + CREDENTIAL_CACHE_METRICS_PATH)
+            .request()
+            .get();
+        assertThat(response.getStatus(), is(403));
+    }
+
+    @Test
+    public void test58_bearer_token_for_userrole() throws JsonMappingException, JsonProcessingException {
+        Form credentials = new Form()
+            .param(TOKEN_USERNAME_FORM_PARAM, DEFAULT_USER)
+            .param(TOKEN_PASSWORD_FORM_PARAM, DEFAULT_USER_PASSWORD);
+        Response tokenResponse = webTarget
+            .path(CREDENTIAL_RESOURCE_NAME)
+            .request()
+            .post(jakarta.ws.rs.client.Entity.form(credentials));
+        assertThat(tokenResponse.getStatus(), is(200));
+        Map<String, Object> token = tokenResponse.readEntity(new GenericType<Map<String, Object>>(){});
+
+        Response response = webTarget
+            .path(PHYSICIAN_RESOURCE_NAME + "/1")
+            .request()
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token.get("access_token"))
+            .get();
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.readEntity(Physician.class).getLastName(), is("Smith"));
+    }
+
+    @Test
+    public void test59_bearer_token_wrong_password() throws JsonMappingException, JsonProcessingException {
+        Form credentials = new Form()
+            .param(TOKEN_USERNAME_FORM_PARAM, DEFAULT_USER)
+            .param(TOKEN_PASSWORD_FORM_PARAM, "wrong");
+        Response response = webTarget
+            .path(CREDENTIAL_RESOURCE_NAME)
+            .request()
+            .post(jakarta.ws.rs.client.Entity.form(credentials));
+        assertThat(response.getStatus(), is(401));
+    }
+
+    @Test
+    public void test60_password_hashing_metrics_with_adminrole() throws JsonMappingException, JsonProcessingException {
+        Response response = webTarget
+            .register(adminAuth)
+            .path(METRICS_RESOURCE_NAME + "/" + PASSWORD_HASHING_METRICS_PATH)
+            .request()
+            .get();
+        assertThat(response.getStatus(), is(200));
+        Map<String, Object> metrics = response.readEntity(new GenericType<Map<String, Object>>(){});
+        // every PBKDF2 verification so far went through the hashing pool
+        assertThat(((Number) metrics.get("submitted")).longValue(), is(greaterThan(0L)));
+        assertThat(((Number) metrics.get("rejected")).longValue(), is(0L));
+    }
+
+    @Test
+    public void test61_unknown_user_is_remembered() throws JsonMappingException, JsonProcessingException {
+        Form credentials = new Form()
+            .param(TOKEN_USERNAME_FORM_PARAM, "no.such.user")
+            .param(TOKEN_PASSWORD_FORM_PARAM, "whatever");
+        for (int i = 0; i < 2; i++) {
+            Response response = webTarget
+                .path(CREDENTIAL_RESOURCE_NAME)
+                .request()
+                .post(jakarta.ws.rs.client.Entity.form(credentials));
+            assertThat(response.getStatus(), is(401));
+        }
+        Response response = webTarget
+            .register(adminAuth)
+            .path(METRICS_RESOURCE_NAME + "/" + LOGIN_THROTTLE_METRICS_PATH)
+            .request()
+            .get();
+        assertThat(response.getStatus(), is(200));
+        Map<String, Object> metrics = response.readEntity(new GenericType<Map<String, Object>>(){});
+        // the second attempt was answered from the negative cache
+        assertThat(((Number) metrics.get("unknownUserHits")).longValue(), is(greaterThan(0L)));
+    }
+
+    @Test
+    public void test62_get_patients_keyset_pages() throws JsonMappingException, JsonProcessingException {
+        // make sure there are at least two patients, whatever earlier tests deleted
+        for (String lastName : new String[] {"PageOne", "PageTwo"}) {
+            Patient newPatient = new Patient();
+            newPatient.setFirstName("Keyset");
+            newPatient.setLastName(lastName);
+            newPatient.setYear(1995);
+            newPatient.setAddress("1 Paging Rd");
+            newPatient.setHeight(170);
+            newPatient.setWeight(70);
+            newPatient.setSmoker((byte) 0);
+            webTarget.register(adminAuth).path(PATIENT_RESOURCE_NAME).request()
+                .post(jakarta.ws.rs.client.Entity.json(newPatient)).close();
+        }
+        Response response = webTarget
+            .register(adminAuth)
+            .path(PATIENT_RESOURCE_NAME)
+            .queryParam(PAGE_LIMIT_QUERY_PARAM, 1)
+            .request()
+            .get();
+        assertThat(response.getStatus(), is(200));
+        List<Patient> firstPage = response.readEntity(new GenericType<List<Patient>>(){});
+        assertThat(firstPage, hasSize(1));
+        // a full page links to the next one
+        Link next = response.getLink("next");
+        assertThat(next, is(notNullValue()));
+
+        Response nextResponse = ClientBuilder.newClient().register(MyObjectMapperProvider.class)
+            .target(next).register(adminAuth).request().get();
+        assertThat(nextResponse.getStatus(), is(200));
+        List<Patient> secondPage = nextResponse.readEntity(new GenericType<List<Patient>>(){});
+        assertThat(secondPage, hasSize(1));
+        assertThat(secondPage.get(0).getId(), is(greaterThan(firstPage.get(0).getId())));
+    }
+
+    @Test
+    public void test63_get_prescriptions_composite_cursor() throws JsonMappingException, JsonProcessingException {
+        // at least two prescriptions, whatever earlier tests deleted
+        Medicine medicine = createMedicine("Cursor");
+        for (String lastName : new String[] {"CursorOne", "CursorTwo"}) {
+            createPrescription(1, createPatient(lastName).getId(), medicine.getId());
+        }
+        List<Prescription> all = target(adminAuth)
+            .path(PRESCRIPTION_RESOURCE_NAME)
+            .queryParam(PAGE_LIMIT_QUERY_PARAM, MAX_PAGE_SIZE)
+            .request()
+            .get()
+            .readEntity(new GenericType<List<Prescription>>(){});
+        assertThat(all.size(), is(greaterThan(1)));
+        // in (physician_id, patient_id) order
+        for (int i = 1; i < all.size(); i++) {
+            PrescriptionPK previous = all.get(i - 1).getId();
+            PrescriptionPK current = all.get(i).getId();
+            assertThat(previous.getPhysicianId() < current.getPhysicianId()
+                || (previous.getPhysicianId() == current.getPhysicianId() && previous.getPatientId() < current.getPatientId()), is(true));
+        }
+
+        PrescriptionPK cursor = all.get(0).getId();
+        Response response = target(adminAuth)
+            .path(PRESCRIPTION_RESOURCE_NAME)
+            .queryParam(PAGE_LIMIT_QUERY_PARAM, 1)
+            .queryParam(PAGE_AFTER_QUERY_PARAM, cursor.getPhysicianId() + ":" + cursor.getPatientId())
+            .request()
+            .get();
+        assertThat(response.getStatus(), is(200));
+        List<Prescription> page = response.readEntity(new GenericType<List<Prescription>>(){});
+        // the key strictly after the cursor, i.e. the second prescription
+        assertThat(page, hasSize(1));
+        assertThat(page.get(0).getId().getPhysicianId(), is(all.get(1).getId().getPhysicianId()));
+        assertThat(page.get(0).getId().getPatientId(), is(all.get(1).getId().getPatientId()));
+
+        Response badCursor = target(adminAuth)
+            .path(PRESCRIPTION_RESOURCE_NAME)
+            .queryParam(PAGE_AFTER_QUERY_PARAM, "1")
+            .request()
+            .get();
+        assertThat(badCursor.getStatus(), is(400));
+    }
+
+    @Test
+    public void test64_second_level_cache_metrics() throws JsonMappingException, JsonProcessingException {
+        Medicine newMedicine = new Medicine();
+        newMedicine.setDrugName("Cached");
+        newMedicine.setManufacturerName("L2 Labs");
+        newMedicine.setDosageInformation("once");
+        Medicine medicine = webTarget.register(adminAuth).path(MEDICINE_RESOURCE_NAME).request()
+            .post(jakarta.ws.rs.client.Entity.json(newMedicine)).readEntity(Medicine.class);
+        // read it twice - at least the second read is served from the second-level cache
+        for (int i = 0; i < 2; i++) {
+            webTarget.register(adminAuth).path(MEDICINE_RESOURCE_NAME + "/" + medicine.getId()).request().get().close();
+        }
+        Response response = webTarget
+            .register(adminAuth)
+            .path(METRICS_RESOURCE_NAME + "/" + SECOND_LEVEL_CACHE_METRICS_PATH)
+            .request()
+            .get();
+        assertThat(response.getStatus(), is(200));
+        Map<String, Object> metrics = response.readEntity(new GenericType<Map<String, Object>>(){});
+        assertThat(((Number) metrics.get("hits")).longValue(), is(greaterThan(0L)));
+    }
+
+    @Test
+    public void test65_query_plan_cache_metrics() throws JsonMappingException, JsonProcessingException {
+        webTarget.register(adminAuth).path(PHYSICIAN_RESOURCE_NAME).request().get().close();
+        Response response = webTarget
+            .register(adminAuth)
+            .path(METRICS_RESOURCE_NAME + "/" + QUERY_METRICS_PATH)
+            .request()
+            .get();
+        assertThat(response.getStatus(), is(200));
+        Map<String, Object> metrics = response.readEntity(new GenericType<Map<String, Object>>(){});
+        // every registered query was compiled at deployment, so later executions reuse the cached plans
+        assertThat(((Number) metrics.get("registeredQueries")).intValue(), is(greaterThan(0)));
+        assertThat(((Number) metrics.get("planCacheHits")).longValue(), is(greaterThan(0L)));
+    }
+
+    @Test
+    public void test66_bulk_import_patients_reports_bad_rows() throws JsonMappingException, JsonProcessingException {
+        String ndjson =
+            "{\"firstName\":\"Bulk\",\"lastName\":\"One\",\"year\":1990,\"address\":\"1 Bulk St\",\"height\":170,\"weight\":70,\"smoker\":0}\n" +
+            "{\"firstName\":\"Bulk\",\"year\":1991,\"address\":\"2 Bulk St\",\"height\":171,\"weight\":71,\"smoker\":0}\n" +
+            "{\"firstName\":\"Bulk\",\"lastName\":\"Three\",\"year\":1992,\"address\":\"3 Bulk St\",\"height\":172,\"weight\":72,\"smoker\":1}\n";
+        Response response = webTarget
+            .register(adminAuth)
+            .path(PATIENT_RESOURCE_NAME + "/" + BULK_RESOURCE_PATH)
+            .request()
+            .post(jakarta.ws.rs.client.Entity.entity(ndjson, NDJSON_MEDIA_TYPE));
+        assertThat(response.getStatus(), is(200));
+        Map<String, Object> report = response.readEntity(new GenericType<Map<String, Object>>(){});
+        assertThat(((Number) report.get("received")).intValue(), is(3));
+        assertThat(((Number) report.get("imported")).intValue(), is(2));
+        assertThat(((Number) report.get("rejected")).intValue(), is(1));
+        // the row without a last name is the one reported
+        List<Map<String, Object>> errors = (List<Map<String, Object>>) report.get("errors");
+        assertThat(((Number) errors.get(0).get("row")).intValue(), is(2));
+    }
+
+    @Test
+    public void test67_bulk_set_medicine_for_prescriptions() throws JsonMappingException, JsonProcessingException {
+        Medicine newMedicine = new Medicine();
+        newMedicine.setDrugName("Bulk");
+        newMedicine.setManufacturerName("Set Based Inc");
+        newMedicine.setDosageInformation("as needed");
+        Medicine medicine = webTarget.register(adminAuth).path(MEDICINE_RESOURCE_NAME).request()
+            .post(jakarta.ws.rs.client.Entity.json(newMedicine)).readEntity(Medicine.class);
+        // unknown keys are simply not updated
+        List<Map<String, Integer>> keys = List.of(Map.of("physicianId", 0, "patientId", 0));
+        Response response = webTarget
+            .register(adminAuth)
+            .path(PRESCRIPTION_RESOURCE_NAME + "/medicine/" + medicine.getId())
+            .request()
+            .put(jakarta.ws.rs.client.Entity.json(keys));
+        assertThat(response.getStatus(), is(200));
+        Map<String, Object> result = response.readEntity(new GenericType<Map<String, Object>>(){});
+        assertThat(((Number) result.get("updated")).intValue(), is(0));
+
+        Response noMedicine = webTarget
+            .register(adminAuth)
+            .path(PRESCRIPTION_RESOURCE_NAME + "/medicine/" + Integer.MAX_VALUE)
+            .request()
+            .put(jakarta.ws.rs.client.Entity.json(keys));
+        assertThat(noMedicine.getStatus(), is(404));
+    }
+
+    @Test
+    public void test68_rendering_runs_no_lazy_loads() throws JsonMappingException, JsonProcessingException {
+        // lazy loading outside a transaction is off:  if rendering touched an association that the
+        // endpoint did not fetch, these requests would fail with a 500
+        PublicSchool newMedicalSchool = new PublicSchool();
+        newMedicalSchool.setName("Fetch Plan Medical School " + System.currentTimeMillis());
+        MedicalSchool medicalSchool = target(adminAuth).path(MEDICAL_SCHOOL_RESOURCE_NAME).request()
+            .post(jakarta.ws.rs.client.Entity.json(newMedicalSchool)).readEntity(MedicalSchool.class);
+        for (int i = 0; i < 2; i++) {
+            Response added = target(adminAuth)
+                .path(MEDICAL_SCHOOL_RESOURCE_NAME + "/" + medicalSchool.getId() + "/medicaltraining")
+                .request()
+                .post(jakarta.ws.rs.client.Entity.json(new MedicalTraining()));
+            assertThat(added.getStatus(), is(200));
+        }
+
+        sqlHeaders(true);
+        try {
+            // the school and its trainings in one statement - not one more per training
+            Response response = target(adminAuth)
+                .path(MEDICAL_SCHOOL_RESOURCE_NAME + "/" + medicalSchool.getId())
+                .request()
+                .get();
+            assertThat(response.getStatus(), is(200));
+            assertThat(response.getHeaderString(SQL_COUNT_HEADER), is("1"));
+            assertThat(response.readEntity(MedicalSchool.class).getMedicalTrainings(), hasSize(2));
+
+            // a page:  the (possibly cached) page query, then the trainings of the whole page
+            Response schools = target(adminAuth).path(MEDICAL_SCHOOL_RESOURCE_NAME).request().get();
+            assertThat(schools.getStatus(), is(200));
+            assertThat(Integer.parseInt(schools.getHeaderString(SQL_COUNT_HEADER)), lessThanOrEqualTo(2));
+
+            assertThat(target(adminAuth).path(MEDICAL_CERTIFICATE_RESOURCE_NAME).request().get().getStatus(), is(200));
+        }
+        finally {
+            sqlHeaders(false);
+        }
+    }
+
+    @Test
+    public void test69_read_projections_render_like_entities() throws JsonMappingException, JsonProcessingException {
+        Medicine newMedicine = new Medicine();
+        newMedicine.setDrugName("Projected");
+        newMedicine.setManufacturerName("Read Only Inc");
+        newMedicine.setDosageInformation("once a day");
+        Medicine medicine = target(adminAuth).path(MEDICINE_RESOURCE_NAME).request()
+            .post(jakarta.ws.rs.client.Entity.json(newMedicine)).readEntity(Medicine.class);
+
+        Response response = target(userAuth)
+            .path(MEDICINE_RESOURCE_NAME + "/" + medicine.getId())
+            .request()
+            .get();
+        assertThat(response.getStatus(), is(200));
+        Map<String, Object> view = response.readEntity(new GenericType<Map<String, Object>>(){});
+        assertThat(((Number) view.get("id")).intValue(), is(medicine.getId()));
+        assertThat(view.get("drugName"), is("Projected"));
+        assertThat(view.get("dosageInformation"), is("once a day"));
+
+        assertThat(target(userAuth).path(MEDICINE_RESOURCE_NAME + "/" + Integer.MAX_VALUE).request().get().getStatus(), is(404));
+        assertThat(target(userAuth).path(MEDICAL_TRAINING_RESOURCE_NAME).request().get().getStatus(), is(200));
+        assertThat(target(adminAuth).path(PRESCRIPTION_RESOURCE_NAME).request().get().getStatus(), is(200));
+    }
+
+    @Test
+    public void test70_update_physician_with_if_match() throws JsonMappingException, JsonProcessingException {
+        Physician newPhysician = new Physician();
+        newPhysician.setFirstName("Version");
+        newPhysician.setLastName("Checked");
+        Physician physician = webTarget.register(adminAuth).path(PHYSICIAN_RESOURCE_NAME).request()
+            .post(jakarta.ws.rs.client.Entity.json(newPhysician)).readEntity(Physician.class);
+        String etag = "\"" + physician.getVersion() + "\"";
+
+        newPhysician.setLastName("Updated");
+        Response response = webTarget
+            .register(adminAuth)
+            .path(PHYSICIAN_RESOURCE_NAME + "/" + physician.getId())
+            .request()
+            .header(HttpHeaders.IF_MATCH, etag)
+            .put(jakarta.ws.rs.client.Entity.json(newPhysician));
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.getEntityTag().getValue(), is(Integer.toString(physician.getVersion() + 1)));
+        assertThat(response.readEntity(Physician.class).getLastName(), is("Updated"));
+
+        // a second writer that read the same version loses
+        Response stale = webTarget
+            .register(adminAuth)
+            .path(PHYSICIAN_RESOURCE_NAME + "/" + physician.getId())
+            .request()
+            .header(HttpHeaders.IF_MATCH, etag)
+            .put(jakarta.ws.rs.client.Entity.json(newPhysician));
+        assertThat(stale.getStatus(), is(412));
+
+        Response missing = webTarget
+            .register(adminAuth)
+            .path(PHYSICIAN_RESOURCE_NAME + "/" + Integer.MAX_VALUE)
+            .request()
+            .header(HttpHeaders.IF_MATCH, etag)
+            .put(jakarta.ws.rs.client.Entity.json(newPhysician));
+        assertThat(missing.getStatus(), is(404));
+    }
+
+    @Test
+    public void test71_conditional_get_answers_304() throws JsonMappingException, JsonProcessingException {
+        Medicine newMedicine = new Medicine();
+        newMedicine.setDrugName("Tagged");
+        newMedicine.setManufacturerName("Not Modified Inc");
+        newMedicine.setDosageInformation("twice a day");
+        Medicine medicine = target(adminAuth).path(MEDICINE_RESOURCE_NAME).request()
+            .post(jakarta.ws.rs.client.Entity.json(newMedicine)).readEntity(Medicine.class);
+
+        Response response = target(userAuth).path(MEDICINE_RESOURCE_NAME + "/" + medicine.getId()).request().get();
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.getEntityTag().getValue(), is(Integer.toString(medicine.getVersion())));
+        Response notModified = target(userAuth)
+            .path(MEDICINE_RESOURCE_NAME + "/" + medicine.getId())
+            .request()
+            .header(HttpHeaders.IF_NONE_MATCH, response.getEntityTag().toString())
+            .get();
+        assertThat(notModified.getStatus(), is(304));
+
+        Response page = target(userAuth).path(MEDICINE_RESOURCE_NAME).request().get();
+        assertThat(page.getStatus(), is(200));
+        Response pageNotModified = target(userAuth)
+            .path(MEDICINE_RESOURCE_NAME)
+            .request()
+            .header(HttpHeaders.IF_NONE_MATCH, page.getEntityTag().toString())
+            .get();
+        assertThat(pageNotModified.getStatus(), is(304));
+    }
+
+    @Test
+    public void test72_sql_statistics_headers_and_metrics() throws JsonMappingException, JsonProcessingException {
+        Response reset = target(adminAuth).path(METRICS_RESOURCE_NAME + "/" + SQL_METRICS_PATH).request().delete();
+        assertThat(reset.getStatus(), is(204));
+        sqlHeaders(true);
+        try {
+            // patients are not in the second-level cache:  a page is read with at least one statement
+            Response response = target(userAuth).path(PATIENT_RESOURCE_NAME).request().get();
+            assertThat(response.getStatus(), is(200));
+            assertThat(Integer.parseInt(response.getHeaderString(SQL_COUNT_HEADER)), greaterThan(0));
+            response.close();
+
+            // a streamed body is read while it is written:  its statements count for the endpoint
+            Response streamed = target(userAuth).path(PATIENT_RESOURCE_NAME).queryParam(STREAM_QUERY_PARAM, true).request().get();
+            assertThat(streamed.getStatus(), is(200));
+            streamed.readEntity(String.class);
+
+            Response metrics = target(adminAuth).path(METRICS_RESOURCE_NAME + "/" + SQL_METRICS_PATH).request().get();
+            assertThat(metrics.getStatus(), is(200));
+            Map<String, Object> sql = metrics.readEntity(new GenericType<Map<String, Object>>() {});
+            Map<String, Map<String, Object>> endpoints = (Map<String, Map<String, Object>>) sql.get("endpoints");
+            Map<String, Object> patients = endpoints.get("GET PatientResource.getPatients");
+            assertThat(patients, notNullValue());
+            assertThat(((Number) patients.get("requests")).intValue(), is(2));
+            // more than the paged request alone:  the streamed one was counted too
+            assertThat(((Number) patients.get("statements")).intValue(),
+                greaterThan(Integer.parseInt(response.getHeaderString(SQL_COUNT_HEADER))));
+        }
+        finally {
+            sqlHeaders(false);
+        }
+    }
+
+    @Test
+    public void test73_stream_all_patients_as_one_array() throws JsonMappingException, JsonProcessingException {
+        Response page = webTarget.register(userAuth).path(PATIENT_RESOURCE_NAME).request().get();
+        assertThat(page.getStatus(), is(200));
+        List<Patient> patients = page.readEntity(new GenericType<List<Patient>>() {});
+
+        Response streamed = webTarget
+            .register(userAuth)
+            .path(PATIENT_RESOURCE_NAME)
+            .queryParam(STREAM_QUERY_PARAM, true)
+            .request()
+            .get();
+        assertThat(streamed.getStatus(), is(200));
+        List<Patient> streamedPatients = streamed.readEntity(new GenericType<List<Patient>>() {});
+        // the test data is smaller than a page
+        assertThat(streamedPatients, hasSize(patients.size()));
+    }
+
+    @Test
+    public void test74_export_tables_as_gzip() throws IOException {
+        Response forbidden = target(userAuth).path(EXPORT_RESOURCE_NAME + "/" + PATIENT_RESOURCE_NAME).request().get();
+        assertThat(forbidden.getStatus(), is(403));
+
+        // every patient GET patient?stream=true answers, no more and no fewer
+        List<Patient> patients = target(adminAuth).path(PATIENT_RESOURCE_NAME).queryParam(STREAM_QUERY_PARAM, true)
+            .request().get().readEntity(new GenericType<List<Patient>>() {});
+        List<Integer> patientIds = patients.stream().map(Patient::getId).sorted().collect(Collectors.toList());
+
+        List<String> csv = export(PATIENT_RESOURCE_NAME, "csv");
+        assertThat(csv.get(0), is("id,version,firstName,lastName,year,address,height,weight,smoker"));
+        assertThat(csv.stream().skip(1).map(line -> Integer.valueOf(line.substring(0, line.indexOf(','))))
+            .sorted().collect(Collectors.toList()), is(patientIds));
+
+        List<String> ndjson = export(PATIENT_RESOURCE_NAME, "ndjson");
+        List<Integer> ndjsonIds = new ArrayList<>();
+        for (String line : ndjson) {
+            ndjsonIds.add(((Number) MyObjectMapperProvider.defaultObjectMapper.readValue(line, Map.class).get("id")).intValue());
+        }
+        Collections.sort(ndjsonIds);
+        assertThat(ndjsonIds, is(patientIds));
+
+        List<Map<String, Object>> prescriptions = target(adminAuth).path(PRESCRIPTION_RESOURCE_NAME)
+            .queryParam(STREAM_QUERY_PARAM, true).request().get().readEntity(new GenericType<List<Map<String, Object>>>() {});
+        List<String> prescriptionCsv = export(PRESCRIPTION_RESOURCE_NAME, "csv");
+        assertThat(prescriptionCsv.get(0), is("physicianId,patientId,version,numberOfRefills,prescriptionInformation"));
+        assertThat(prescriptionCsv, hasSize(prescriptions.size() + 1));
+        assertThat(export(PRESCRIPTION_RESOURCE_NAME, "ndjson"), hasSize(prescriptions.size()));
+
+        Response unknownTable = target(adminAuth).path(EXPORT_RESOURCE_NAME + "/" + MEDICINE_RESOURCE_NAME).request().get();
+        assertThat(unknownTable.getStatus(), is(404));
+        Response unknownFormat = target(adminAuth)
+            .path(EXPORT_RESOURCE_NAME + "/" + PATIENT_RESOURCE_NAME)
+            .queryParam(EXPORT_FORMAT_QUERY_PARAM, "xml")
+            .request()
+            .get();
+        assertThat(unknownFormat.getStatus(), is(400));
+    }
+
+    @Test
+    public void test75_unpaged_list_is_truncated_with_next_link() throws JsonMappingException, JsonProcessingException {
+        assertThat(bulkImportPatients(DEFAULT_PAGE_SIZE + 1, "Truncated"), is(DEFAULT_PAGE_SIZE + 1));
+
+        // no 'limit':  the first DEFAULT_PAGE_SIZE patients only, and a link to the rest
+        Response response = target(userAuth).path(PATIENT_RESOURCE_NAME).request().get();
+        assertThat(response.getStatus(), is(200));
+        List<Patient> patients = response.readEntity(new GenericType<List<Patient>>(){});
+        assertThat(patients, hasSize(DEFAULT_PAGE_SIZE));
+        Link next = response.getLink("next");
+        assertThat(next, is(notNullValue()));
+        assertThat(next.getUri().getQuery(), containsString(PAGE_AFTER_QUERY_PARAM + "=" + patients.get(DEFAULT_PAGE_SIZE - 1).getId()));
+    }
+
+    @Test
+    public void test76_set_medicine_for_existing_prescriptions() throws JsonMappingException, JsonProcessingException {
+        Medicine medicine = createMedicine("Single");
+        Patient patient = createPatient("SetMedicine");
+        createPrescription(1, patient.getId(), medicine.getId());
+
+        // one prescription:  its medicine is updated in place
+        Medicine changes = new Medicine();
+        changes.setDrugName("Single Updated");
+        changes.setManufacturerName("Test Labs");
+        changes.setDosageInformation("twice");
+        Response response = target(adminAuth)
+            .path(PHYSICIAN_RESOURCE_NAME + "/1/patient/" + patient.getId() + "/medicine")
+            .request()
+            .put(jakarta.ws.rs.client.Entity.json(changes));
+        assertThat(response.getStatus(), is(200));
+        Medicine updated = response.readEntity(Medicine.class);
+        assertThat(updated.getId(), is(medicine.getId()));
+        assertThat(updated.getDrugName(), is("Single Updated"));
+
+        // no such prescription
+        Response missing = target(adminAuth)
+            .path(PHYSICIAN_RESOURCE_NAME + "/1/patient/" + Integer.MAX_VALUE + "/medicine")
+            .request()
+            .put(jakarta.ws.rs.client.Entity.json(changes));
+        assertThat(missing.getStatus(), is(404));
+
+        // many prescriptions:  the real key is updated, the unknown one is not
+        Medicine bulk = createMedicine("Bulk Target");
+        List<Map<String, Integer>> keys = List.of(
+            Map.of("physicianId", 1, "patientId", patient.getId()),
+            Map.of("physicianId", 0, "patientId", 0));
+        Response bulkResponse = target(adminAuth)
+            .path(PRESCRIPTION_RESOURCE_NAME + "/medicine/" + bulk.getId())
+            .request()
+            .put(jakarta.ws.rs.client.Entity.json(keys));
+        assertThat(bulkResponse.getStatus(), is(200));
+        Map<String, Object> result = bulkResponse.readEntity(new GenericType<Map<String, Object>>(){});
+        assertThat(((Number) result.get("updated")).intValue(), is(1));
+    }
+
+    @Test
+    public void test77_delete_physician_with_children_and_user() throws JsonMappingException, JsonProcessingException {
+        Physician newPhysician = new Physician();
+        newPhysician.setFirstName("Deleted");
+        newPhysician.setLastName("Physician" + System.currentTimeMillis());
+        Response created = target(adminAuth).path(PHYSICIAN_RESOURCE_NAME).request()
+            .post(jakarta.ws.rs.client.Entity.json(newPhysician));
+        assertThat(created.getStatus(), is(200));
+        Physician physician = created.readEntity(Physician.class);
+        Patient patient = createPatient("OfDeletedPhysician");
+        createPrescription(physician.getId(), patient.getId(), createMedicine("OfDeletedPhysician").getId());
+
+        // the physician's own user can log in ...
+        HttpAuthenticationFeature physicianAuth = HttpAuthenticationFeature.basic(
+            "user_" + newPhysician.getFirstName() + "." + newPhysician.getLastName(), DEFAULT_USER_PASSWORD);
+        assertThat(target(physicianAuth).path(PHYSICIAN_RESOURCE_NAME + "/" + physician.getId()).request().get().getStatus(), is(200));
+
+        Response response = target(adminAuth).path(PHYSICIAN_RESOURCE_NAME + "/" + physician.getId()).request().delete();
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.readEntity(Physician.class).getId(), is(physician.getId()));
+
+        // ... and not any more:  the user is gone and no cached verification lets it in
+        assertThat(target(physicianAuth).path(PHYSICIAN_RESOURCE_NAME + "/" + physician.getId()).request().get().getStatus(), is(401));
+        assertThat(target(adminAuth).path(PHYSICIAN_RESOURCE_NAME + "/" + physician.getId()).request().get().getStatus(), is(404));
+        // the prescription went with the physician, the patient stayed
+        assertThat(target(adminAuth).path(PHYSICIAN_RESOURCE_NAME + "/" + physician.getId() + "/patient/" + patient.getId() + "/medicine")
+            .request().put(jakarta.ws.rs.client.Entity.json(new Medicine())).getStatus(), is(404));
+        assertThat(target(adminAuth).path(PATIENT_RESOURCE_NAME + "/" + patient.getId()).request().get().getStatus(), is(200));
+
+        assertThat(target(adminAuth).path(PHYSICIAN_RESOURCE_NAME + "/" + physician.getId()).request().delete().getStatus(), is(404));
+    }
+
+    @Test
+    public void test78_delete_patient_with_prescriptions() throws JsonMappingException, JsonProcessingException {
+        Patient patient = createPatient("DeletedPatient");
+        createPrescription(1, patient.getId(), createMedicine("OfDeletedPatient").getId());
+
+        Response response = target(adminAuth).path(PATIENT_RESOURCE_NAME + "/" + patient.getId()).request().delete();
+        assertThat(response.getStatus(), is(200));
+        assertThat(target(adminAuth).path(PATIENT_RESOURCE_NAME + "/" + patient.getId()).request().get().getStatus(), is(404));
+        // the prescription went with the patient, the physician stayed
+        assertThat(target(adminAuth).path(PHYSICIAN_RESOURCE_NAME + "/1/patient/" + patient.getId() + "/medicine")
+            .request().put(jakarta.ws.rs.client.Entity.json(new Medicine())).getStatus(), is(404));
+        assertThat(target(adminAuth).path(PHYSICIAN_RESOURCE_NAME + "/1").request().get().getStatus(), is(200));
+    }
+
+    @Test
+    public void test79_delete_medical_school_with_trainings() throws JsonMappingException, JsonProcessingException {
+        PublicSchool newMedicalSchool = new PublicSchool();
+        newMedicalSchool.setName("Deleted Medical School " + System.currentTimeMillis());
+        MedicalSchool medicalSchool = target(adminAuth).path(MEDICAL_SCHOOL_RESOURCE_NAME).request()
+            .post(jakarta.ws.rs.client.Entity.json(newMedicalSchool)).readEntity(MedicalSchool.class);
+        Response added = target(adminAuth)
+            .path(MEDICAL_SCHOOL_RESOURCE_NAME + "/" + medicalSchool.getId() + "/medicaltraining")
+            .request()
+            .post(jakarta.ws.rs.client.Entity.json(new MedicalTraining()));
+        assertThat(added.getStatus(), is(200));
+
+        Response response = target(adminAuth).path(MEDICAL_SCHOOL_RESOURCE_NAME + "/" + medicalSchool.getId()).request().delete();
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.readEntity(MedicalSchool.class).getMedicalTrainings(), hasSize(1));
+        assertThat(target(adminAuth).path(MEDICAL_SCHOOL_RESOURCE_NAME + "/" + medicalSchool.getId()).request().get().getStatus(), is(404));
+    }
+
+    @Test
+    public void test80_put_answers_with_representation_and_etag() throws JsonMappingException, JsonProcessingException {
+        LocalDateTime now = LocalDateTime.now();
+        PublicSchool newMedicalSchool = new PublicSchool();
+        newMedicalSchool.setName("Put Medical School " + System.currentTimeMillis());
+        MedicalSchool medicalSchool = target(adminAuth).path(MEDICAL_SCHOOL_RESOURCE_NAME).request()
+            .post(jakarta.ws.rs.client.Entity.json(newMedicalSchool)).readEntity(MedicalSchool.class);
+        String schoolPath = MEDICAL_SCHOOL_RESOURCE_NAME + "/" + medicalSchool.getId();
+        String staleSchool = "\"" + medicalSchool.getVersion() + "\"";
+        newMedicalSchool.setName(newMedicalSchool.getName() + " Renamed");
+        // unconditional:  200 with the representation, like a conditional PUT - a school is rendered with
+        // its trainings, so it gets no tag and If-Match takes the version of the body
+        Response schoolResponse = put(schoolPath, null, newMedicalSchool);
+        assertThat(schoolResponse.getStatus(), is(200));
+        assertThat(schoolResponse.getEntityTag(), is(nullValue()));
+        Map<String, Object> school = schoolResponse.readEntity(new GenericType<Map<String, Object>>(){});
+        assertThat(school.get("name"), is(newMedicalSchool.getName()));
+        assertThat(put(schoolPath, staleSchool, newMedicalSchool).getStatus(), is(412));
+        assertThat(put(schoolPath, "\"" + school.get("version") + "\"", newMedicalSchool).getStatus(), is(200));
+        assertThat(put(MEDICAL_SCHOOL_RESOURCE_NAME + "/" + Integer.MAX_VALUE, null, newMedicalSchool).getStatus(), is(404));
+
+        MedicalTraining newMedicalTraining = new MedicalTraining();
+        MedicalTraining medicalTraining = target(adminAuth).path(MEDICAL_TRAINING_RESOURCE_NAME).request()
+            .post(jakarta.ws.rs.client.Entity.json(newMedicalTraining)).readEntity(MedicalTraining.class);
+        String trainingPath = MEDICAL_TRAINING_RESOURCE_NAME + "/" + medicalTraining.getId();
+        DurationAndStatus durationAndStatus = new DurationAndStatus();
+        durationAndStatus.setDurationAndStatus(now.minusYears(1), now, "+");
+        newMedicalTraining.setDurationAndStatus(durationAndStatus);
+        Map<String, Object> training = assertUpdated(put(trainingPath, null, newMedicalTraining));
+        assertThat(((Map<?, ?>) training.get("durationAndStatus")).get("active"), is(1));
+        assertThat(put(trainingPath, "\"" + medicalTraining.getVersion() + "\"", newMedicalTraining).getStatus(), is(412));
+        assertUpdated(put(trainingPath, "\"" + training.get("version") + "\"", newMedicalTraining));
+        assertThat(put(MEDICAL_TRAINING_RESOURCE_NAME + "/" + Integer.MAX_VALUE, null, newMedicalTraining).getStatus(), is(404));
+
+        MedicalCertificate newMedicalCertificate = new MedicalCertificate();
+        MedicalCertificate medicalCertificate = target(adminAuth).path(MEDICAL_CERTIFICATE_RESOURCE_NAME).request()
+            .post(jakarta.ws.rs.client.Entity.json(newMedicalCertificate)).readEntity(MedicalCertificate.class);
+        String certificatePath = MEDICAL_CERTIFICATE_RESOURCE_NAME + "/" + medicalCertificate.getId();
+        newMedicalCertificate.setSigned((byte) 1);
+        Map<String, Object> certificate = assertUpdated(put(certificatePath, null, newMedicalCertificate));
+        assertThat(certificate.get("signed"), is(1));
+        assertThat(put(certificatePath, "\"" + medicalCertificate.getVersion() + "\"", newMedicalCertificate).getStatus(), is(412));
+        assertUpdated(put(certificatePath, "\"" + certificate.get("version") + "\"", newMedicalCertificate));
+        assertThat(put(MEDICAL_CERTIFICATE_RESOURCE_NAME + "/" + Integer.MAX_VALUE, null, newMedicalCertificate).getStatus(), is(404));
+
+        Patient patient = createPatient("PutPrescription");
+        createPrescription(1, patient.getId(), createMedicine("PutPrescription").getId());
+        String prescriptionPath = PRESCRIPTION_RESOURCE_NAME + "/physician/1/patient/" + patient.getId();
+        String stalePrescription = target(adminAuth).path(prescriptionPath).request().get().getEntityTag().toString();
+        Prescription newPrescription = new Prescription();
+        newPrescription.setNumberOfRefills(3);
+        newPrescription.setPrescriptionInformation("updated");
+        Map<String, Object> prescription = assertUpdated(put(prescriptionPath, null, newPrescription));
+        assertThat(prescription.get("numberOfRefills"), is(3));
+        assertThat(put(prescriptionPath, stalePrescription, newPrescription).getStatus(), is(412));
+        prescription = assertUpdated(put(prescriptionPath, "\"" + prescription.get("version") + "\"", newPrescription));
+        // a new medicine is part of the same versioned update:  one increment, and checked against If-Match
+        int version = ((Number) prescription.get("version")).intValue();
+        newPrescription.setMedicine(createMedicine("PutPrescriptionOther"));
+        prescription = assertUpdated(put(prescriptionPath, "\"" + version + "\"", newPrescription));
+        assertThat(((Number) prescription.get("version")).intValue(), is(version + 1));
+        assertThat(put(prescriptionPath, "\"" + version + "\"", newPrescription).getStatus(), is(412));
+        assertThat(put(PRESCRIPTION_RESOURCE_NAME + "/physician/1/patient/" + Integer.MAX_VALUE, null, newPrescription).getStatus(), is(404));
+    }
+
+    @Test
+    public void test81_stream_crosses_batches() throws JsonMappingException, JsonProcessingException {
+        String lastName = "Streamed" + System.currentTimeMillis();
+        assertThat(bulkImportPatients(STREAM_BATCH_SIZE + 1, lastName), is(STREAM_BATCH_SIZE + 1));
+
+        Response streamed = target(userAuth).path(PATIENT_RESOURCE_NAME).queryParam(STREAM_QUERY_PARAM, true).request().get();
+        assertThat(streamed.getStatus(), is(200));
+        List<Patient> patients = streamed.readEntity(new GenericType<List<Patient>>() {});
+        // every row once, in id order, across the flush (and persistence context clear) between batches
+        assertThat(patients.size(), greaterThan(STREAM_BATCH_SIZE));
+        for (int i = 1; i < patients.size(); i++) {
+            assertThat(patients.get(i).getId(), greaterThan(patients.get(i - 1).getId()));
+        }
+        assertThat(patients.stream().filter(p -> lastName.equals(p.getLastName())).count(), is((long) STREAM_BATCH_SIZE + 1));
+    }
+
+    @Test
+    public void test82_stream_prescriptions_after_key() throws JsonMappingException, JsonProcessingException {
+        Medicine medicine = createMedicine("StreamedAfter");
+        Patient first = createPatient("StreamedAfter");
+        Patient second = createPatient("StreamedAfter");
+        createPrescription(1, first.getId(), medicine.getId());
+        createPrescription(1, second.getId(), medicine.getId());
+
+        Response streamed = target(adminAuth)
+            .path(PRESCRIPTION_RESOURCE_NAME)
+            .queryParam(STREAM_QUERY_PARAM, true)
+            .queryParam(PAGE_AFTER_QUERY_PARAM, "1:" + first.getId())
+            .request()
+            .get();
+        assertThat(streamed.getStatus(), is(200));
+        List<Map<String, Object>> prescriptions = streamed.readEntity(new GenericType<List<Map<String, Object>>>() {});
+        // everything after (1, first) in key order:  (1, second) comes next
+        Map<?, ?> next = (Map<?, ?>) prescriptions.get(0).get("id");
+        assertThat(((Number) next.get("physicianId")).intValue(), is(1));
+        assertThat(((Number) next.get("patientId")).intValue(), is(second.getId()));
+        for (Map<String, Object> prescription : prescriptions) {
+            Map<?, ?> id = (Map<?, ?>) prescription.get("id");
+            int physicianId = ((Number) id.get("physicianId")).intValue();
+            int patientId = ((Number) id.get("patientId")).intValue();
+            assertThat(physicianId > 1 || patientId > first.getId(), is(true));
+        }
+
+        Response badCursor = target(adminAuth)
+            .path(PRESCRIPTION_RESOURCE_NAME)
+            .queryParam(STREAM_QUERY_PARAM, true)
+            .queryParam(PAGE_AFTER_QUERY_PARAM, "1")
+            .request()
+            .get();
+        assertThat(badCursor.getStatus(), is(400));
+    }
+
+    @Test
+    public void test83_bearer_token_refused_after_user_is_deleted() throws JsonMappingException, JsonProcessingException {
+        Physician newPhysician = new Physician();
+        newPhysician.setFirstName("Token");
+        newPhysician.setLastName("Holder" + System.currentTimeMillis());
+        Response created = target(adminAuth).path(PHYSICIAN_RESOURCE_NAME).request()
+            .post(jakarta.ws.rs.client.Entity.json(newPhysician));
+        assertThat(created.getStatus(), is(200));
+        Physician physician = created.readEntity(Physician.class);
+
+        Form credentials = new Form()
+            .param(TOKEN_USERNAME_FORM_PARAM, "user_" + newPhysician.getFirstName() + "." + newPhysician.getLastName())
+            .param(TOKEN_PASSWORD_FORM_PARAM, DEFAULT_USER_PASSWORD);
+        Response tokenResponse = webTarget
+            .path(CREDENTIAL_RESOURCE_NAME)
+            .request()
+            .post(jakarta.ws.rs.client.Entity.form(credentials));
+        assertThat(tokenResponse.getStatus(), is(200));
+        String bearer = "Bearer " + tokenResponse.readEntity(new GenericType<Map<String, Object>>(){}).get("access_token");
+        assertThat(webTarget.path(PHYSICIAN_RESOURCE_NAME + "/" + physician.getId()).request()
+            .header(HttpHeaders.AUTHORIZATION, bearer).get().getStatus(), is(200));
+
+        assertThat(target(adminAuth).path(PHYSICIAN_RESOURCE_NAME + "/" + physician.getId()).request().delete().getStatus(), is(200));
+
+        // the token is still signed and unexpired, but its user is gone
+        assertThat(webTarget.path(PHYSICIAN_RESOURCE_NAME + "/" + physician.getId()).request()
+            .header(HttpHeaders.AUTHORIZATION, bearer).get().getStatus(), is(401));
+    }
+
+    @Test
+    public void test84_malformed_password_hash_is_unauthorized() throws JsonMappingException, JsonProcessingException {
+        // seeded with a pw_hash that cannot be parsed:  that is a failed login, not a server error
+        HttpAuthenticationFeature corruptAuth = HttpAuthenticationFeature.basic("corrupt_hash", DEFAULT_USER_PASSWORD);
+        Response response = target(corruptAuth).path(PHYSICIAN_RESOURCE_NAME + "/1").request().get();
+        assertThat(response.getStatus(), is(401));
+
+        Form credentials = new Form()
+            .param(TOKEN_USERNAME_FORM_PARAM, "corrupt_hash")
+            .param(TOKEN_PASSWORD_FORM_PARAM, DEFAULT_USER_PASSWORD);
+        Response tokenResponse = webTarget
+            .path(CREDENTIAL_RESOURCE_NAME)
+            .request()
+            .post(jakarta.ws.rs.client.Entity.form(credentials));
+        assertThat(tokenResponse.getStatus(), is(401));
+    }
+
+    @Test
+    public void test85_export_partitions_prescriptions_of_one_physician() throws IOException {
+        // every prescription has the same leading key (physician 1):  only the data can split them
+        Medicine medicine = createMedicine("Partitioned");
+        for (String lastName : List.of("PartitionedA", "PartitionedB", "PartitionedC")) {
+            createPrescription(1, createPatient(lastName).getId(), medicine.getId());
+        }
+        Response response = target(adminAuth)
+            .path(EXPORT_RESOURCE_NAME + "/" + PRESCRIPTION_RESOURCE_NAME)
+            .queryParam(EXPORT_FORMAT_QUERY_PARAM, "csv")
+            .request()
+            .get();
+        assertThat(response.getStatus(), is(200));
+        assertThat(Integer.parseInt(response.getHeaderString(EXPORT_PARTITIONS_HEADER)), greaterThan(1));
+        response.close();
+
+        // each prescription in exactly one partition
+        List<Map<String, Object>> prescriptions = target(adminAuth).path(PRESCRIPTION_RESOURCE_NAME)
+            .queryParam(STREAM_QUERY_PARAM, true).request().get().readEntity(new GenericType<List<Map<String, Object>>>() {});
+        List<String> csv = export(PRESCRIPTION_RESOURCE_NAME, "csv");
+        List<String> keys = csv.stream().skip(1).map(line -> line.substring(0, line.indexOf(',', line.indexOf(',') + 1)))
+            .distinct().collect(Collectors.toList());
+        assertThat(csv, hasSize(prescriptions.size() + 1));
+        assertThat(keys, hasSize(prescriptions.size()));
+    }
+}